@@ -0,0 +1,120 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.benchmark;
+
+import java.io.File;
+
+import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.osm.GeoSourceOSM_Neighborhood;
+import org.graphstream.geography.osm.GeoSourceOSM_RoadNetwork;
+
+/**
+ * Access to the data files bundled with the project and construction of the
+ * sources used by the benchmarks.
+ * 
+ * The data directory defaults to the "data" directory of the project (seen from
+ * the benchmark directory) and can be changed with the "gs.geography.data"
+ * system property.
+ * 
+ * @author Merwan Achibet
+ */
+public class BenchmarkData {
+
+	/**
+	 * The neighborhood radius used by the neighborhood benchmarks.
+	 */
+	public static final double RADIUS = 0.0003;
+
+	/**
+	 * Give the path to a data file.
+	 * 
+	 * @param fileName
+	 *            The name of the file in the data directory.
+	 * @return The path to the file.
+	 */
+	public static String path(String fileName) {
+
+		String directory = System.getProperty("gs.geography.data", "../data");
+
+		File file = new File(directory, fileName);
+
+		if(!file.exists())
+			throw new RuntimeException("missing data file : " + file.getAbsolutePath());
+
+		return file.getPath();
+	}
+
+	/**
+	 * Instantiate the source corresponding to a use case.
+	 * 
+	 * @param useCase
+	 *            "neighborhood" or "roads".
+	 * @param timed
+	 *            True to read the three timed snapshots of the use case, false
+	 *            to read the single file.
+	 * @return A silent source, ready to be read.
+	 */
+	public static GeoSource source(String useCase, boolean timed) {
+
+		GeoSource source;
+
+		if(useCase.equals("neighborhood")) {
+
+			if(timed)
+				source = new GeoSourceOSM_Neighborhood(RADIUS, path("neighborhood_t0.osm"), path("neighborhood_t1.osm"), path("neighborhood_t2.osm"));
+			else
+				source = new GeoSourceOSM_Neighborhood(RADIUS, path("neighborhood.osm"));
+		}
+		else if(useCase.equals("roads")) {
+
+			if(timed)
+				source = new GeoSourceOSM_RoadNetwork(path("roads_t0.osm"), path("roads_t1.osm"), path("roads_t2.osm"));
+			else
+				source = new GeoSourceOSM_RoadNetwork(path("roads.osm"));
+
+			((GeoSourceOSM_RoadNetwork)source).getRoadAttributeFilter().addAttribute("highway");
+		}
+		else {
+
+			throw new IllegalArgumentException("unknown use case : " + useCase);
+		}
+
+		if(timed)
+			source.timeDependsOnFile();
+
+		source.getMetrics().setVerbose(false);
+		source.getMetrics().setMaxMessagesPerSecond(0);
+
+		return source;
+	}
+
+}
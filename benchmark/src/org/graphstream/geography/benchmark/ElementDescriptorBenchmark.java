@@ -0,0 +1,125 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.graphstream.geography.Aggregator;
+import org.graphstream.geography.ElementDescriptor;
+import org.graphstream.geography.osm.GeoSourceOSM_Neighborhood;
+import org.graphstream.geography.osm.GeoSourceOSM_RoadNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the descriptor matching test on all the entries of an
+ * OpenStreetMap file.
+ * 
+ * @author Merwan Achibet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ElementDescriptorBenchmark {
+
+	/**
+	 * The descriptor: "building" (type and key/value test) or "road" (type and
+	 * key test).
+	 */
+	@Param({"building", "road"})
+	public String descriptorName;
+
+	protected ElementDescriptor descriptor;
+
+	protected Aggregator aggregator;
+
+	protected ArrayList<nu.xom.Element> xmlElements;
+
+	@Setup
+	public void setup() throws Exception {
+
+		String fileName = BenchmarkData.path("neighborhood.osm");
+
+		if(this.descriptorName.equals("building")) {
+
+			GeoSourceOSM_Neighborhood source = new GeoSourceOSM_Neighborhood(BenchmarkData.RADIUS, fileName);
+
+			this.descriptor = source.getBuildingDescriptor();
+			this.aggregator = source.getAggregator();
+		}
+		else {
+
+			GeoSourceOSM_RoadNetwork source = new GeoSourceOSM_RoadNetwork(fileName);
+
+			this.descriptor = source.getRoadDescriptor();
+			this.aggregator = source.getAggregator();
+		}
+
+		// The way entries are read once, only the matching is measured.
+
+		nu.xom.Element xmlRoot = new nu.xom.Builder().build(new File(fileName)).getRootElement();
+
+		nu.xom.Elements ways = xmlRoot.getChildElements("way");
+
+		this.xmlElements = new ArrayList<nu.xom.Element>();
+
+		for(int i = 0, l = ways.size(); i < l; ++i)
+			this.xmlElements.add(ways.get(i));
+	}
+
+	@Benchmark
+	public int matches() {
+
+		int matched = 0;
+
+		for(int i = 0, l = this.xmlElements.size(); i < l; ++i)
+			if(this.descriptor.matches(this.xmlElements.get(i), this.aggregator))
+				++matched;
+
+		return matched;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.PipelinedPlayback;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.SingleGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Playback of all the time steps of the two OpenStreetMap use cases into an
+ * in-memory graph, which measures the event generation of nextEvents(), either
+ * sequentially or pipelined.
+ * 
+ * The sources are read before each invocation so that only the playback is
+ * measured.
+ * 
+ * @author Merwan Achibet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(1)
+public class PlaybackBenchmark {
+
+	@Param({"neighborhood", "roads"})
+	public String useCase;
+
+	@Param({"false", "true"})
+	public boolean timed;
+
+	protected GeoSource source;
+
+	protected Graph graph;
+
+	@Setup(Level.Invocation)
+	public void setup() {
+
+		this.source = BenchmarkData.source(this.useCase, this.timed);
+
+		this.source.read();
+
+		this.graph = new SingleGraph("playback", false, true);
+
+		this.source.addSink(this.graph);
+	}
+
+	@Benchmark
+	public Graph play() {
+
+		this.source.end();
+
+		return this.graph;
+	}
+
+	@Benchmark
+	public Graph playPipelined() {
+
+		new PipelinedPlayback(this.source, 2).end();
+
+		return this.graph;
+	}
+
+}
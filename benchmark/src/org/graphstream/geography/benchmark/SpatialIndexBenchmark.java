@@ -0,0 +1,170 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementShape;
+import org.graphstream.geography.Point;
+import org.graphstream.geography.index.SpatialIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insertion in and querying of the spatial index with uniformly distributed
+ * points.
+ * 
+ * @author Merwan Achibet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialIndexBenchmark {
+
+	/**
+	 * The number of points in the index.
+	 */
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	@Param({"QUADTREE", "RTREE", "GRID"})
+	public SpatialIndex.Type type;
+
+	/**
+	 * The number of queries per invocation of the query benchmark.
+	 */
+	protected static final int QUERIES = 1000;
+
+	protected double[] xs;
+
+	protected double[] ys;
+
+	protected Element[] elements;
+
+	protected ArrayList<ElementShape> shapes;
+
+	protected SpatialIndex index;
+
+	@Setup
+	public void setup() {
+
+		Random random = new Random(12345);
+
+		this.xs = new double[this.size];
+		this.ys = new double[this.size];
+		this.elements = new Element[this.size];
+
+		this.shapes = new ArrayList<ElementShape>();
+
+		for(int i = 0; i < this.size; ++i) {
+
+			this.xs[i] = random.nextDouble();
+			this.ys[i] = random.nextDouble();
+
+			this.elements[i] = new Element(Integer.toString(i));
+
+			Point point = new Point(this.elements[i]);
+			point.setPosition(this.xs[i], this.ys[i]);
+
+			this.shapes.add(point);
+		}
+
+		this.index = insert();
+	}
+
+	/**
+	 * Fill a new index with all the points.
+	 * 
+	 * @return The index.
+	 */
+	protected SpatialIndex insert() {
+
+		SpatialIndex index = SpatialIndex.create(this.type);
+
+		index.setDistanceOffset(0.000001);
+
+		for(int i = 0; i < this.size; ++i)
+			index.addPoint(this.elements[i], this.xs[i], this.ys[i]);
+
+		return index;
+	}
+
+	@Benchmark
+	public SpatialIndex insertAll() {
+
+		return insert();
+	}
+
+	@Benchmark
+	public SpatialIndex bulkLoadAll() {
+
+		SpatialIndex index = SpatialIndex.create(this.type);
+
+		index.bulkLoad(this.shapes);
+
+		return index;
+	}
+
+	@Benchmark
+	public int queryExactPositions() {
+
+		int found = 0;
+
+		for(int i = 0; i < QUERIES; ++i) {
+
+			int p = (i * 7919) % this.size;
+
+			ArrayList<Element> elements = this.index.getElementsAt(this.xs[p], this.ys[p]);
+
+			if(elements != null)
+				found += elements.size();
+		}
+
+		return found;
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementShape;
+import org.graphstream.geography.Point;
+import org.graphstream.geography.index.SpatialIndex;
+import org.graphstream.geography.index.SpatialIndexSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Nearest neighbour queries on a spatial index snapshot shared by all the
+ * benchmark threads, to check that the throughput scales with the number of
+ * readers (run with -t 1, -t 2, -t 4...).
+ * 
+ * @author Merwan Achibet
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SpatialIndexSnapshotBenchmark {
+
+	/**
+	 * The number of points in the index.
+	 */
+	@Param({"100000"})
+	public int size;
+
+	@Param({"QUADTREE", "RTREE"})
+	public SpatialIndex.Type type;
+
+	protected SpatialIndexSnapshot snapshot;
+
+	@Setup
+	public void setup() {
+
+		Random random = new Random(12345);
+
+		ArrayList<ElementShape> shapes = new ArrayList<ElementShape>();
+
+		for(int i = 0; i < this.size; ++i) {
+
+			Point point = new Point(new Element(Integer.toString(i)));
+			point.setPosition(random.nextDouble(), random.nextDouble());
+
+			shapes.add(point);
+		}
+
+		SpatialIndex index = SpatialIndex.create(this.type);
+
+		index.bulkLoad(shapes);
+
+		this.snapshot = index.snapshot();
+	}
+
+	/**
+	 * The buffers of each reader thread.
+	 */
+	@State(Scope.Thread)
+	public static class Reader {
+
+		public Random random = new Random();
+
+		public Element[] elements = new Element[8];
+	}
+
+	@Benchmark
+	public int queryNearest(Reader reader) {
+
+		return this.snapshot.getNearestElements(reader.random.nextDouble(), reader.random.nextDouble(), 8, reader.elements, null);
+	}
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.generator.SyntheticDataGenerator;
+import org.graphstream.geography.osm.GeoSourceOSM_Neighborhood;
+import org.graphstream.geography.osm.GeoSourceOSM_RoadNetwork;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Complete read of synthetic snapshots of growing size, to observe how the
+ * import scales. The data set is generated once per trial in the temporary
+ * directory, with a fixed seed.
+ * 
+ * @author Merwan Achibet
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyntheticReadBenchmark {
+
+	/**
+	 * The number of buildings and of road intersections.
+	 */
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	@Param({"neighborhood", "roads"})
+	public String useCase;
+
+	@Param({"3"})
+	public int snapshots;
+
+	@Param({"0.05"})
+	public double churn;
+
+	protected String[] fileNames;
+
+	protected GeoSource source;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+
+		String prefix = new File(System.getProperty("java.io.tmpdir"), "gs-geography-synthetic-" + this.size).getPath();
+
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(this.size, this.size, this.snapshots, this.churn, 12345);
+
+		this.fileNames = generator.writeOSM(prefix);
+	}
+
+	@Setup(Level.Invocation)
+	public void setup() {
+
+		if(this.useCase.equals("neighborhood")) {
+
+			this.source = new GeoSourceOSM_Neighborhood(BenchmarkData.RADIUS, this.fileNames);
+		}
+		else {
+
+			this.source = new GeoSourceOSM_RoadNetwork(this.fileNames);
+
+			((GeoSourceOSM_RoadNetwork)this.source).getRoadAttributeFilter().addAttribute("highway");
+		}
+
+		this.source.timeDependsOnFile();
+
+		this.source.getMetrics().setVerbose(false);
+		this.source.getMetrics().setMaxMessagesPerSecond(0);
+	}
+
+	@Benchmark
+	public GeoSource read() {
+
+		this.source.read();
+
+		return this.source;
+	}
+
+}
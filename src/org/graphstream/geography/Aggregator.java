@@ -36,6 +36,8 @@ import java.util.HashMap;
 import java.util.List;
 
 import org.graphstream.geography.ElementShape.Type;
+import org.graphstream.geography.metrics.GeoSourceMetrics;
+import org.graphstream.geography.metrics.GeoSourceMetrics.Phase;
 
 /**
  * An aggregator is a format-specific reader that goes through all input files
@@ -93,15 +95,29 @@ public abstract class Aggregator {
 
 		ArrayList<FileDescriptor> fileDescriptors = this.source.getFileDescriptors();
 
+		GeoSourceMetrics metrics = this.source.getMetrics();
+
 		for(FileDescriptor fileDescriptor : fileDescriptors) {
 
 			this.currentFileName = fileDescriptor.getFileName();
 
+			long start = metrics.start();
+
 			open(fileDescriptor);
 
+			metrics.stop(Phase.OPEN, start);
+
+			start = metrics.start();
+
 			traverse(fileDescriptor);
 
+			metrics.stop(Phase.TRAVERSE, start);
+
+			start = metrics.start();
+
 			close(fileDescriptor);
+
+			metrics.stop(Phase.CLOSE, start);
 		}
 
 		return this.aggregate;
@@ -151,6 +167,8 @@ public abstract class Aggregator {
 		this.aggregate.add(id, date, o);
 
 		this.aggregate.setDescriptorUsed(id, descriptor);
+
+		this.source.getMetrics().matched(descriptor.getCategory());
 	}
 
 	/**
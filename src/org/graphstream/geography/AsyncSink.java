@@ -0,0 +1,760 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.graphstream.graph.implementations.AbstractElement.AttributeChangeEvent;
+import org.graphstream.stream.SourceBase.ElementType;
+import org.graphstream.stream.Sink;
+
+/**
+ * A sink that forwards the events it receives to another sink from its own
+ * worker thread.
+ * 
+ * The events wait in a bounded queue, so a slow sink (a file writer, a viewer,
+ * ...) does not hold back the source and the other sinks until its queue is
+ * full. What happens then depends on the overflow policy:
+ * <ul>
+ * <li>BLOCK: the source waits until the worker made room in the queue;</li>
+ * <li>COALESCE: a change of an attribute which previous change is still
+ * waiting in the queue replaces the value of the waiting event (the
+ * intermediate value is never seen by the sink). Other events wait for room as
+ * with BLOCK, so no structural event is ever lost.</li>
+ * </ul>
+ * 
+ * {@link #flush()} waits until the sink has processed all the events received
+ * so far. A geo source flushes its asynchronous sinks at the end of each time
+ * step (see {@link GeoSource#addAsyncSink(Sink, int, OverflowPolicy)}).
+ * 
+ * @author Merwan Achibet
+ */
+public class AsyncSink implements Sink {
+
+	/**
+	 * What to do when an event arrives and the queue is full.
+	 */
+	public static enum OverflowPolicy {
+		BLOCK, COALESCE
+	};
+
+	/**
+	 * An event waiting in the queue.
+	 */
+	protected static class Event {
+
+		EventBatch.Type type;
+
+		String sourceId;
+
+		long timeId;
+
+		/**
+		 * The node, edge (or null for the graph) concerned by the event.
+		 */
+		String elementId;
+
+		ElementType elementType;
+
+		String attribute;
+
+		AttributeChangeEvent change;
+
+		Object oldValue;
+
+		Object newValue;
+
+		String fromNodeId;
+
+		String toNodeId;
+
+		boolean directed;
+
+		double step;
+	}
+
+	/**
+	 * The sink receiving the events.
+	 */
+	protected Sink sink;
+
+	/**
+	 * The maximum number of events in the queue.
+	 */
+	protected int capacity;
+
+	/**
+	 * The overflow policy.
+	 */
+	protected OverflowPolicy policy;
+
+	/**
+	 * The events waiting to be forwarded.
+	 */
+	protected LinkedList<Event> queue;
+
+	/**
+	 * The last waiting change of each attribute, indexed by element type,
+	 * element and attribute (only used with the COALESCE policy). Changes are
+	 * only tracked while the queue is at least half full, since they can only
+	 * be merged when it is full.
+	 */
+	protected EnumMap<ElementType, HashMap<String, HashMap<String, Event>>> pendingChanges;
+
+	/**
+	 * Guards the queue and the counters.
+	 */
+	protected ReentrantLock lock;
+
+	protected Condition notEmpty;
+
+	protected Condition notFull;
+
+	protected Condition processed;
+
+	/**
+	 * Number of events put in the queue since the creation of the sink.
+	 */
+	protected long enqueuedCount;
+
+	/**
+	 * Number of events forwarded since the creation of the sink.
+	 */
+	protected long processedCount;
+
+	/**
+	 * Number of attribute changes merged into a waiting event.
+	 */
+	protected long coalescedCount;
+
+	/**
+	 * The error raised by the sink, reported by the next flush.
+	 */
+	protected RuntimeException failure;
+
+	/**
+	 * Is the sink closed?
+	 */
+	protected boolean closed;
+
+	/**
+	 * The worker thread.
+	 */
+	protected Thread worker;
+
+	/**
+	 * Did the worker thread stop?
+	 */
+	protected boolean stopped;
+
+	/**
+	 * Instantiate a new asynchronous sink and start its worker thread.
+	 * 
+	 * @param sink
+	 *            The sink receiving the events.
+	 * @param capacity
+	 *            The maximum number of waiting events.
+	 * @param policy
+	 *            The overflow policy.
+	 */
+	public AsyncSink(Sink sink, int capacity, OverflowPolicy policy) {
+
+		this.sink = sink;
+		this.capacity = capacity;
+		this.policy = policy;
+
+		this.queue = new LinkedList<Event>();
+
+		if(policy == OverflowPolicy.COALESCE) {
+
+			this.pendingChanges = new EnumMap<ElementType, HashMap<String, HashMap<String, Event>>>(ElementType.class);
+
+			for(ElementType elementType : ElementType.values())
+				this.pendingChanges.put(elementType, new HashMap<String, HashMap<String, Event>>());
+		}
+
+		this.lock = new ReentrantLock();
+		this.notEmpty = this.lock.newCondition();
+		this.notFull = this.lock.newCondition();
+		this.processed = this.lock.newCondition();
+
+		this.worker = new Thread(new Runnable() {
+
+			public void run() {
+
+				work();
+			}
+
+		}, "async sink " + sink);
+
+		this.worker.setDaemon(true);
+
+		this.worker.start();
+	}
+
+	/**
+	 * Give the sink receiving the events.
+	 * 
+	 * @return The sink.
+	 */
+	public Sink getSink() {
+
+		return this.sink;
+	}
+
+	/**
+	 * Give the overflow policy.
+	 * 
+	 * @return The policy.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+
+		return this.policy;
+	}
+
+	/**
+	 * Give the number of events waiting in the queue.
+	 * 
+	 * @return The number of events.
+	 */
+	public int getQueueSize() {
+
+		this.lock.lock();
+
+		try {
+
+			return this.queue.size();
+		}
+		finally {
+
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Give the number of attribute changes merged into a waiting event because
+	 * the queue was full.
+	 * 
+	 * @return The number of coalesced events.
+	 */
+	public long getCoalescedCount() {
+
+		this.lock.lock();
+
+		try {
+
+			return this.coalescedCount;
+		}
+		finally {
+
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Wait until all the events received so far have been forwarded to the
+	 * sink.
+	 * 
+	 * If the sink raised an error in the meantime, it is thrown again here. If
+	 * the worker thread stopped before forwarding all the events, an
+	 * IllegalStateException is thrown.
+	 */
+	public void flush() {
+
+		this.lock.lock();
+
+		try {
+
+			while(this.processedCount < this.enqueuedCount && this.failure == null && !this.stopped)
+				this.processed.await();
+
+			if(this.failure != null) {
+
+				RuntimeException failure = this.failure;
+
+				this.failure = null;
+
+				throw failure;
+			}
+
+			if(this.processedCount < this.enqueuedCount)
+				throw new IllegalStateException("the async sink worker stopped, " + (this.enqueuedCount - this.processedCount) + " events were not forwarded");
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException("flush interrupted");
+		}
+		finally {
+
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Forward the remaining events and stop the worker thread.
+	 */
+	public void close() {
+
+		flush();
+
+		this.lock.lock();
+
+		try {
+
+			this.closed = true;
+
+			this.notEmpty.signalAll();
+		}
+		finally {
+
+			this.lock.unlock();
+		}
+
+		try {
+
+			this.worker.join();
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Put an event in the queue, waiting for room if necessary.
+	 * 
+	 * An IllegalStateException is thrown if the sink is closed or if its
+	 * worker thread stopped, as the event would never be forwarded.
+	 * 
+	 * @param event
+	 *            The event.
+	 */
+	protected void enqueue(Event event) {
+
+		this.lock.lock();
+
+		try {
+
+			if(this.closed)
+				throw new IllegalStateException("the async sink is closed");
+
+			if(this.stopped)
+				throw new IllegalStateException("the async sink worker stopped");
+
+			if(this.pendingChanges != null && !coalesce(event))
+				return;
+
+			while(this.queue.size() >= this.capacity && !this.stopped)
+				this.notFull.await();
+
+			if(this.stopped)
+				throw new IllegalStateException("the async sink worker stopped");
+
+			this.queue.addLast(event);
+
+			++this.enqueuedCount;
+
+			this.notEmpty.signal();
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException("async sink interrupted");
+		}
+		finally {
+
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Apply the COALESCE policy to a new event. The lock must be held.
+	 * 
+	 * @param event
+	 *            The new event.
+	 * @return True if the event must still be put in the queue, false if it
+	 *         has been merged into a waiting event.
+	 */
+	protected boolean coalesce(Event event) {
+
+		// Only attribute changes can be merged, and only when the queue is
+		// full.
+
+		if(event.type == EventBatch.Type.ATTRIBUTE_CHANGED) {
+
+			HashMap<String, HashMap<String, Event>> elements = this.pendingChanges.get(event.elementType);
+
+			HashMap<String, Event> changes = elements.get(event.elementId);
+
+			Event pending = changes == null ? null : changes.get(event.attribute);
+
+			if(pending != null && event.change != AttributeChangeEvent.REMOVE && this.queue.size() >= this.capacity) {
+
+				pending.newValue = event.newValue;
+
+				++this.coalescedCount;
+
+				return false;
+			}
+
+			// The new event comes after the waiting one, so later changes can
+			// only be merged into the new one. A removal must not be merged at
+			// all.
+
+			if(event.change != AttributeChangeEvent.REMOVE && this.queue.size() >= this.capacity / 2) {
+
+				if(changes == null) {
+
+					changes = new HashMap<String, Event>();
+
+					elements.put(event.elementId, changes);
+				}
+
+				changes.put(event.attribute, event);
+			}
+			else if(pending != null) {
+
+				forgetPendingChange(pending);
+			}
+
+			return true;
+		}
+
+		// Later attribute changes of a removed element must come after its
+		// removal.
+
+		if(event.type == EventBatch.Type.NODE_REMOVED)
+			this.pendingChanges.get(ElementType.NODE).remove(event.elementId);
+		else if(event.type == EventBatch.Type.EDGE_REMOVED)
+			this.pendingChanges.get(ElementType.EDGE).remove(event.elementId);
+		else if(event.type == EventBatch.Type.GRAPH_CLEARED)
+			for(HashMap<String, HashMap<String, Event>> elements : this.pendingChanges.values())
+				elements.clear();
+
+		return true;
+	}
+
+	/**
+	 * Stop tracking an attribute change, if it is still the last waiting
+	 * change of its attribute. The lock must be held.
+	 * 
+	 * @param event
+	 *            The attribute change.
+	 */
+	protected void forgetPendingChange(Event event) {
+
+		HashMap<String, HashMap<String, Event>> elements = this.pendingChanges.get(event.elementType);
+
+		HashMap<String, Event> changes = elements.get(event.elementId);
+
+		if(changes == null || changes.get(event.attribute) != event)
+			return;
+
+		changes.remove(event.attribute);
+
+		if(changes.isEmpty())
+			elements.remove(event.elementId);
+	}
+
+	/**
+	 * Forward the events to the sink until the sink is closed.
+	 */
+	protected void work() {
+
+		try {
+
+			while(true) {
+
+				Event event;
+
+				this.lock.lock();
+
+				try {
+
+					while(this.queue.isEmpty() && !this.closed)
+						this.notEmpty.await();
+
+					if(this.queue.isEmpty())
+						return;
+
+					event = this.queue.removeFirst();
+
+					if(this.pendingChanges != null && event.type == EventBatch.Type.ATTRIBUTE_CHANGED)
+						forgetPendingChange(event);
+
+					this.notFull.signal();
+				}
+				catch (InterruptedException e) {
+
+					return;
+				}
+				finally {
+
+					this.lock.unlock();
+				}
+
+				// Forward the event without holding the lock.
+
+				RuntimeException failure = null;
+
+				try {
+
+					forward(event);
+				}
+				catch (RuntimeException e) {
+
+					failure = e;
+				}
+
+				this.lock.lock();
+
+				try {
+
+					++this.processedCount;
+
+					if(failure != null && this.failure == null)
+						this.failure = failure;
+
+					this.processed.signalAll();
+				}
+				finally {
+
+					this.lock.unlock();
+				}
+			}
+		}
+		finally {
+
+			// Wake up the threads waiting for room or for the events to be
+			// processed, they will not be.
+
+			this.lock.lock();
+
+			try {
+
+				this.stopped = true;
+
+				this.notFull.signalAll();
+				this.processed.signalAll();
+			}
+			finally {
+
+				this.lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Send an event to the sink.
+	 * 
+	 * @param event
+	 *            The event.
+	 */
+	protected void forward(Event event) {
+
+		switch(event.type) {
+		case NODE_ADDED:
+			this.sink.nodeAdded(event.sourceId, event.timeId, event.elementId);
+			break;
+		case NODE_REMOVED:
+			this.sink.nodeRemoved(event.sourceId, event.timeId, event.elementId);
+			break;
+		case EDGE_ADDED:
+			this.sink.edgeAdded(event.sourceId, event.timeId, event.elementId, event.fromNodeId, event.toNodeId, event.directed);
+			break;
+		case EDGE_REMOVED:
+			this.sink.edgeRemoved(event.sourceId, event.timeId, event.elementId);
+			break;
+		case GRAPH_CLEARED:
+			this.sink.graphCleared(event.sourceId, event.timeId);
+			break;
+		case STEP_BEGINS:
+			this.sink.stepBegins(event.sourceId, event.timeId, event.step);
+			break;
+		case ATTRIBUTE_CHANGED:
+			forwardAttribute(event);
+			break;
+		}
+	}
+
+	protected void forwardAttribute(Event event) {
+
+		switch(event.elementType) {
+		case NODE:
+			if(event.change == AttributeChangeEvent.ADD)
+				this.sink.nodeAttributeAdded(event.sourceId, event.timeId, event.elementId, event.attribute, event.newValue);
+			else if(event.change == AttributeChangeEvent.CHANGE)
+				this.sink.nodeAttributeChanged(event.sourceId, event.timeId, event.elementId, event.attribute, event.oldValue, event.newValue);
+			else
+				this.sink.nodeAttributeRemoved(event.sourceId, event.timeId, event.elementId, event.attribute);
+			break;
+		case EDGE:
+			if(event.change == AttributeChangeEvent.ADD)
+				this.sink.edgeAttributeAdded(event.sourceId, event.timeId, event.elementId, event.attribute, event.newValue);
+			else if(event.change == AttributeChangeEvent.CHANGE)
+				this.sink.edgeAttributeChanged(event.sourceId, event.timeId, event.elementId, event.attribute, event.oldValue, event.newValue);
+			else
+				this.sink.edgeAttributeRemoved(event.sourceId, event.timeId, event.elementId, event.attribute);
+			break;
+		case GRAPH:
+			if(event.change == AttributeChangeEvent.ADD)
+				this.sink.graphAttributeAdded(event.sourceId, event.timeId, event.attribute, event.newValue);
+			else if(event.change == AttributeChangeEvent.CHANGE)
+				this.sink.graphAttributeChanged(event.sourceId, event.timeId, event.attribute, event.oldValue, event.newValue);
+			else
+				this.sink.graphAttributeRemoved(event.sourceId, event.timeId, event.attribute);
+			break;
+		}
+	}
+
+	/*
+	 * Sink.
+	 */
+
+	protected Event event(EventBatch.Type type, String sourceId, long timeId, String elementId) {
+
+		Event event = new Event();
+
+		event.type = type;
+		event.sourceId = sourceId;
+		event.timeId = timeId;
+		event.elementId = elementId;
+
+		return event;
+	}
+
+	protected void attributeEvent(String sourceId, long timeId, ElementType elementType, String elementId, String attribute, AttributeChangeEvent change, Object oldValue, Object newValue) {
+
+		Event event = event(EventBatch.Type.ATTRIBUTE_CHANGED, sourceId, timeId, elementId);
+
+		event.elementType = elementType;
+		event.attribute = attribute;
+		event.change = change;
+		event.oldValue = oldValue;
+		event.newValue = newValue;
+
+		enqueue(event);
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+
+		enqueue(event(EventBatch.Type.NODE_ADDED, sourceId, timeId, nodeId));
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+
+		enqueue(event(EventBatch.Type.NODE_REMOVED, sourceId, timeId, nodeId));
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId, String fromNodeId, String toNodeId, boolean directed) {
+
+		Event event = event(EventBatch.Type.EDGE_ADDED, sourceId, timeId, edgeId);
+
+		event.fromNodeId = fromNodeId;
+		event.toNodeId = toNodeId;
+		event.directed = directed;
+
+		enqueue(event);
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+
+		enqueue(event(EventBatch.Type.EDGE_REMOVED, sourceId, timeId, edgeId));
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+
+		enqueue(event(EventBatch.Type.GRAPH_CLEARED, sourceId, timeId, null));
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+
+		Event event = event(EventBatch.Type.STEP_BEGINS, sourceId, timeId, null);
+
+		event.step = step;
+
+		enqueue(event);
+	}
+
+	public void graphAttributeAdded(String sourceId, long timeId, String attribute, Object value) {
+
+		attributeEvent(sourceId, timeId, ElementType.GRAPH, null, attribute, AttributeChangeEvent.ADD, null, value);
+	}
+
+	public void graphAttributeChanged(String sourceId, long timeId, String attribute, Object oldValue, Object newValue) {
+
+		attributeEvent(sourceId, timeId, ElementType.GRAPH, null, attribute, AttributeChangeEvent.CHANGE, oldValue, newValue);
+	}
+
+	public void graphAttributeRemoved(String sourceId, long timeId, String attribute) {
+
+		attributeEvent(sourceId, timeId, ElementType.GRAPH, null, attribute, AttributeChangeEvent.REMOVE, null, null);
+	}
+
+	public void nodeAttributeAdded(String sourceId, long timeId, String nodeId, String attribute, Object value) {
+
+		attributeEvent(sourceId, timeId, ElementType.NODE, nodeId, attribute, AttributeChangeEvent.ADD, null, value);
+	}
+
+	public void nodeAttributeChanged(String sourceId, long timeId, String nodeId, String attribute, Object oldValue, Object newValue) {
+
+		attributeEvent(sourceId, timeId, ElementType.NODE, nodeId, attribute, AttributeChangeEvent.CHANGE, oldValue, newValue);
+	}
+
+	public void nodeAttributeRemoved(String sourceId, long timeId, String nodeId, String attribute) {
+
+		attributeEvent(sourceId, timeId, ElementType.NODE, nodeId, attribute, AttributeChangeEvent.REMOVE, null, null);
+	}
+
+	public void edgeAttributeAdded(String sourceId, long timeId, String edgeId, String attribute, Object value) {
+
+		attributeEvent(sourceId, timeId, ElementType.EDGE, edgeId, attribute, AttributeChangeEvent.ADD, null, value);
+	}
+
+	public void edgeAttributeChanged(String sourceId, long timeId, String edgeId, String attribute, Object oldValue, Object newValue) {
+
+		attributeEvent(sourceId, timeId, ElementType.EDGE, edgeId, attribute, AttributeChangeEvent.CHANGE, oldValue, newValue);
+	}
+
+	public void edgeAttributeRemoved(String sourceId, long timeId, String edgeId, String attribute) {
+
+		attributeEvent(sourceId, timeId, ElementType.EDGE, edgeId, attribute, AttributeChangeEvent.REMOVE, null, null);
+	}
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography;
+
+/**
+ * The table producing the IDs of the edges sent by a geo source.
+ * 
+ * An edge is defined by the IDs of its two nodes and, optionally, the ID of the
+ * element it comes from (the road shaped by the edge for example). By default
+ * the edge ID is the concatenation of these IDs, which is readable but costs a
+ * string allocation per edge and inflates the output graph. The compact
+ * strategies number the edges instead, in decimal or in base 36, and keep the
+ * IDs they were made of in a table so that they can still be recovered.
+ * 
+ * As with composite IDs, an edge gets the same number each time it is sent
+ * again, whatever the way the time steps are played (seeks, undone steps,
+ * recomputed neighborhoods...), so the table only grows with the number of
+ * distinct edges. The numbers are never reused for other edges, so the IDs of
+ * the edges that have been removed from the output graph remain valid for the
+ * sinks that process the events later.
+ * 
+ * @author Merwan Achibet
+ */
+public class EdgeIdTable {
+
+	/**
+	 * The way edge IDs are built.
+	 */
+	public static enum Strategy {
+		COMPOSITE, NUMERIC, BASE36
+	}
+
+	/**
+	 * The current strategy.
+	 */
+	protected Strategy strategy;
+
+	/**
+	 * The ID of the element of each numbered edge, or null.
+	 */
+	protected String[] elementIds;
+
+	/**
+	 * The ID of the first node of each numbered edge.
+	 */
+	protected String[] fromNodeIds;
+
+	/**
+	 * The ID of the second node of each numbered edge.
+	 */
+	protected String[] toNodeIds;
+
+	/**
+	 * The number of numbered edges.
+	 */
+	protected int count;
+
+	/**
+	 * Open addressing table giving the number of an edge from the hash of its
+	 * IDs. Each slot holds the number plus one, or 0 if it is empty.
+	 */
+	protected int[] slots;
+
+	/**
+	 * Instantiate a new table with the composite strategy.
+	 */
+	public EdgeIdTable() {
+
+		this.strategy = Strategy.COMPOSITE;
+
+		this.elementIds = new String[0];
+		this.fromNodeIds = new String[0];
+		this.toNodeIds = new String[0];
+
+		this.slots = new int[16];
+	}
+
+	/**
+	 * Change the strategy. It cannot be changed once edges have been numbered.
+	 * 
+	 * @param strategy
+	 *            The strategy.
+	 */
+	public void setStrategy(Strategy strategy) {
+
+		if(this.count > 0 && strategy != this.strategy)
+			throw new IllegalStateException("the edge ID strategy cannot change once edges have been numbered");
+
+		this.strategy = strategy;
+	}
+
+	/**
+	 * Give the current strategy.
+	 * 
+	 * @return The strategy.
+	 */
+	public Strategy getStrategy() {
+
+		return this.strategy;
+	}
+
+	/**
+	 * Give the ID of an edge.
+	 * 
+	 * With the composite strategy, the ID is the element ID and the node IDs
+	 * separated by underscores, or the two node IDs side by side if there is no
+	 * element ID. Otherwise, it is the number of the edge if it was already
+	 * numbered, or the next number.
+	 * 
+	 * @param elementId
+	 *            The ID of the element the edge comes from, or null.
+	 * @param fromNodeId
+	 *            The ID of the first node.
+	 * @param toNodeId
+	 *            The ID of the second node.
+	 * @return The edge ID.
+	 */
+	public String newEdgeId(String elementId, String fromNodeId, String toNodeId) {
+
+		if(this.strategy == Strategy.COMPOSITE)
+			return elementId == null ? fromNodeId + toNodeId : elementId + "_" + fromNodeId + "_" + toNodeId;
+
+		// Keep the table at most half full.
+
+		if((this.count + 1) * 2 > this.slots.length)
+			rehash(this.slots.length * 2);
+
+		int mask = this.slots.length - 1;
+
+		int slot = hash(elementId, fromNodeId, toNodeId) & mask;
+
+		// Look for the edge among the numbered ones.
+
+		while(this.slots[slot] != 0) {
+
+			int number = this.slots[slot] - 1;
+
+			if(fromNodeId.equals(this.fromNodeIds[number]) && toNodeId.equals(this.toNodeIds[number]) && (elementId == null ? this.elementIds[number] == null : elementId.equals(this.elementIds[number])))
+				return toEdgeId(number);
+
+			slot = (slot + 1) & mask;
+		}
+
+		// Number the new edge.
+
+		if(this.count == this.fromNodeIds.length) {
+
+			int capacity = Math.max(16, this.count * 2);
+
+			this.elementIds = grow(this.elementIds, capacity);
+			this.fromNodeIds = grow(this.fromNodeIds, capacity);
+			this.toNodeIds = grow(this.toNodeIds, capacity);
+		}
+
+		this.elementIds[this.count] = elementId;
+		this.fromNodeIds[this.count] = fromNodeId;
+		this.toNodeIds[this.count] = toNodeId;
+
+		int number = this.count++;
+
+		this.slots[slot] = number + 1;
+
+		return toEdgeId(number);
+	}
+
+	/**
+	 * Give the ID of the element a numbered edge comes from.
+	 * 
+	 * @param edgeId
+	 *            The edge ID.
+	 * @return The element ID, or null if the edge has no element or is not
+	 *         numbered.
+	 */
+	public String getElementId(String edgeId) {
+
+		int number = toNumber(edgeId);
+
+		return number < 0 ? null : this.elementIds[number];
+	}
+
+	/**
+	 * Give the ID of the first node of a numbered edge.
+	 * 
+	 * @param edgeId
+	 *            The edge ID.
+	 * @return The node ID, or null if the edge is not numbered.
+	 */
+	public String getFromNodeId(String edgeId) {
+
+		int number = toNumber(edgeId);
+
+		return number < 0 ? null : this.fromNodeIds[number];
+	}
+
+	/**
+	 * Give the ID of the second node of a numbered edge.
+	 * 
+	 * @param edgeId
+	 *            The edge ID.
+	 * @return The node ID, or null if the edge is not numbered.
+	 */
+	public String getToNodeId(String edgeId) {
+
+		int number = toNumber(edgeId);
+
+		return number < 0 ? null : this.toNodeIds[number];
+	}
+
+	/**
+	 * Give the number of numbered edges.
+	 * 
+	 * @return The count.
+	 */
+	public int size() {
+
+		return this.count;
+	}
+
+	/**
+	 * Give the number of an edge ID, or -1 if it is not a numbered edge.
+	 * 
+	 * @param edgeId
+	 *            The edge ID.
+	 * @return The number.
+	 */
+	protected int toNumber(String edgeId) {
+
+		if(this.strategy == Strategy.COMPOSITE || edgeId == null)
+			return -1;
+
+		try {
+
+			int number = Integer.parseInt(edgeId, this.strategy == Strategy.NUMERIC ? 10 : 36);
+
+			return number >= 0 && number < this.count ? number : -1;
+		}
+		catch (NumberFormatException e) {
+
+			return -1;
+		}
+	}
+
+	/**
+	 * Give the edge ID of a number.
+	 * 
+	 * @param number
+	 *            The number.
+	 * @return The edge ID.
+	 */
+	protected String toEdgeId(int number) {
+
+		return this.strategy == Strategy.NUMERIC ? Integer.toString(number) : Integer.toString(number, 36);
+	}
+
+	/**
+	 * Hash the IDs of an edge.
+	 * 
+	 * @param elementId
+	 *            The ID of the element the edge comes from, or null.
+	 * @param fromNodeId
+	 *            The ID of the first node.
+	 * @param toNodeId
+	 *            The ID of the second node.
+	 * @return The hash.
+	 */
+	protected static int hash(String elementId, String fromNodeId, String toNodeId) {
+
+		int h = elementId == null ? 0 : elementId.hashCode();
+
+		h = 31 * h + fromNodeId.hashCode();
+		h = 31 * h + toNodeId.hashCode();
+
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Resize the open addressing table and put the numbered edges back in it.
+	 * 
+	 * @param capacity
+	 *            The new number of slots, a power of two.
+	 */
+	protected void rehash(int capacity) {
+
+		this.slots = new int[capacity];
+
+		int mask = capacity - 1;
+
+		for(int number = 0; number < this.count; ++number) {
+
+			int slot = hash(this.elementIds[number], this.fromNodeIds[number], this.toNodeIds[number]) & mask;
+
+			while(this.slots[slot] != 0)
+				slot = (slot + 1) & mask;
+
+			this.slots[slot] = number + 1;
+		}
+	}
+
+	protected static String[] grow(String[] array, int capacity) {
+
+		String[] grown = new String[capacity];
+
+		System.arraycopy(array, 0, grown, 0, array.length);
+
+		return grown;
+	}
+
+}
@@ -137,13 +137,13 @@ public class Element {
 
 			// Return the rebuilt element if the exact date is reached.
 
-			if(dateDiffPair.getKey() == date)
+			if(dateDiffPair.getKey().equals(date))
 				return rebuiltElement;
 		}
 
-		// Return null if the element has no diff.
+		// The element did not change since its last diff.
 
-		return null;
+		return rebuiltElement;
 	}
 
 	/**
@@ -165,7 +165,7 @@ public class Element {
 	 */
 	public String getId() {
 
-		return new String(this.id);
+		return this.id;
 	}
 
 	/**
@@ -291,10 +291,155 @@ public class Element {
 	 */
 	public boolean existsAtDate(Integer date) {
 
-		Integer birth = this.diffs.firstKey();
-		Integer death = this.diffs.lastKey();
+		// The element exists from its first diff until a deletion diff.
 
-		return date >= birth && date <= death;
+		Entry<Integer, ElementDiff> lastDiffBeforeDate = this.diffs.floorEntry(date);
+
+		if(lastDiffBeforeDate == null)
+			return false;
+
+		return lastDiffBeforeDate.getValue() == null || !lastDiffBeforeDate.getValue().isDeleted();
+	}
+
+	/**
+	 * Give the net changes of the element between two dates, as a single diff.
+	 * 
+	 * The diff is a base diff if the element did not exist at the first date
+	 * and a deletion diff if it does not exist anymore at the second date. The
+	 * dates do not need to be in chronological order.
+	 * 
+	 * @param fromDate
+	 *            The first date, or null to start from nothing.
+	 * @param toDate
+	 *            The second date, or null to end with nothing.
+	 * @return The diff leading from the first date to the second one, or null
+	 *         if the element is the same at both dates.
+	 */
+	public ElementDiff getDiffBetweenDates(Integer fromDate, Integer toDate) {
+
+		ElementView from = fromDate == null ? null : getElementViewAtDate(fromDate);
+		ElementView to = toDate == null ? null : getElementViewAtDate(toDate);
+
+		return getDiffBetweenViews(from, to);
+	}
+
+	/**
+	 * Compute the inverse of each diff of the element, so that the diff chain
+	 * can be played backward.
+	 * 
+	 * The diff chain is walked once, from the base to the last diff, while the
+	 * state of the element is rebuilt.
+	 */
+	public void computeInverseDiffs() {
+
+		ElementView previous = null;
+
+		for(ElementDiff diff : this.diffs.values()) {
+
+			if(diff == null)
+				continue;
+
+			ElementView next = diff.isDeleted() ? null : applyDiff(previous, diff);
+
+			diff.setInverse(getDiffBetweenViews(next, previous));
+
+			previous = next;
+		}
+	}
+
+	/**
+	 * Give the state of the element after a diff.
+	 * 
+	 * @param view
+	 *            The state before the diff (left untouched), or null if the
+	 *            element did not exist.
+	 * @param diff
+	 *            The diff.
+	 * @return The new state.
+	 */
+	protected ElementView applyDiff(ElementView view, ElementDiff diff) {
+
+		ElementView nextView = new ElementView(this);
+
+		if(view != null) {
+
+			nextView.attributes.putAll(view.attributes);
+			nextView.shape = view.shape;
+		}
+
+		if(diff.getRemovedAttributes() != null)
+			for(String key : diff.getRemovedAttributes())
+				nextView.removeAttribute(key);
+
+		if(diff.getChangedAttributes() != null)
+			nextView.attributes.putAll(diff.getChangedAttributes());
+
+		if(diff.getShape() != null)
+			nextView.shape = diff.getShape();
+
+		return nextView;
+	}
+
+	/**
+	 * Give the changes between two states of the element, as a single diff.
+	 * 
+	 * @param from
+	 *            The first state, or null if the element does not exist.
+	 * @param to
+	 *            The second state, or null if the element does not exist.
+	 * @return The diff leading from the first state to the second one, or null
+	 *         if the states are the same.
+	 */
+	protected ElementDiff getDiffBetweenViews(ElementView from, ElementView to) {
+
+		if(from == null && to == null)
+			return null;
+
+		// The element disappears.
+
+		if(to == null) {
+
+			ElementDiff deletionDiff = new ElementDiff(this);
+
+			deletionDiff.setDeleted();
+
+			return deletionDiff;
+		}
+
+		// The element appears.
+
+		if(from == null) {
+
+			ElementDiff baseDiff = new ElementDiff(this, true);
+
+			for(Entry<String, Object> keyValue : to.getAttributes().entrySet())
+				baseDiff.addChangedAttribute(keyValue.getKey(), keyValue.getValue());
+
+			baseDiff.setShape(to.getShape());
+
+			return baseDiff;
+		}
+
+		// The element changes.
+
+		ElementDiff diff = new ElementDiff(this, false);
+
+		for(String key : from.getAttributes().keySet())
+			if(!to.getAttributes().containsKey(key))
+				diff.addRemovedAttribute(key);
+
+		for(Entry<String, Object> keyValue : to.getAttributes().entrySet()) {
+
+			Object previousValue = from.getAttributes().get(keyValue.getKey());
+
+			if(!from.getAttributes().containsKey(keyValue.getKey()) || (previousValue == null ? keyValue.getValue() != null : !previousValue.equals(keyValue.getValue())))
+				diff.addChangedAttribute(keyValue.getKey(), keyValue.getValue());
+		}
+
+		if(to.getShape() != null && (from.getShape() == null || !to.getShape().equals(from.getShape())))
+			diff.setShape(to.getShape());
+
+		return diff.isEmpty() ? null : diff;
 	}
 
 	@Override
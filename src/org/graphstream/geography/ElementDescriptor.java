@@ -35,6 +35,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
+import org.graphstream.geography.index.SpatialIndex;
+
 /**
  * The descriptor is the main tool to select geographic objects and filter them.
  * 
@@ -289,9 +291,62 @@ public class ElementDescriptor {
 	 */
 	public void sendElementsToSpatialIndex() {
 
+		sendElementsToSpatialIndex(SpatialIndex.Type.QUADTREE);
+	}
+
+	/**
+	 * Set the descriptor to reference matching elements in a spatial index of
+	 * a given type.
+	 * 
+	 * The quadtree only stores the points of the shapes, the R-tree stores
+	 * their bounding boxes and is better suited to lines and polygons.
+	 * 
+	 * @param type
+	 *            The type of the spatial index.
+	 */
+	public void sendElementsToSpatialIndex(SpatialIndex.Type type) {
+
+		this.toSpatialIndex = true;
+
+		this.source.prepareSpatialIndex(type);
+	}
+
+	/**
+	 * Set the descriptor to reference matching elements in a spatial index of
+	 * a given type and structure.
+	 * 
+	 * Small cells give faster queries on dense data at the cost of a deeper
+	 * tree.
+	 * 
+	 * @param type
+	 *            The type of the spatial index.
+	 * @param entriesPerNode
+	 *            The number of entries above which a quadtree cell is split,
+	 *            the number of children of an R-tree node or the average
+	 *            number of entries of a grid cell.
+	 * @param maxDepth
+	 *            The maximum depth of a quadtree (ignored by the others).
+	 */
+	public void sendElementsToSpatialIndex(SpatialIndex.Type type, int entriesPerNode, int maxDepth) {
+
+		this.toSpatialIndex = true;
+
+		this.source.prepareSpatialIndex(type, entriesPerNode, maxDepth);
+	}
+
+	/**
+	 * Set the descriptor to reference matching elements in a uniform grid
+	 * index with a given cell size, which suits dense and evenly spread
+	 * points.
+	 * 
+	 * @param cellSize
+	 *            The side of a cell in the units of the data.
+	 */
+	public void sendElementsToGridIndex(double cellSize) {
+
 		this.toSpatialIndex = true;
 
-		this.source.prepareSpatialIndex();
+		this.source.prepareGridIndex(cellSize);
 	}
 
 	/**
@@ -76,6 +76,11 @@ public class ElementDiff {
 	 */
 	protected boolean isBaseFlag;
 
+	/**
+	 * The diff undoing this one, if it has been computed.
+	 */
+	protected ElementDiff inverse;
+
 	/**
 	 * Instantiate a new diff for a given element.
 	 * 
@@ -238,6 +243,29 @@ public class ElementDiff {
 		return this.isBaseFlag;
 	}
 
+	/**
+	 * Set the diff undoing this one.
+	 * 
+	 * @param inverse
+	 *            The inverse diff.
+	 */
+	public void setInverse(ElementDiff inverse) {
+
+		this.inverse = inverse;
+	}
+
+	/**
+	 * Give the diff undoing this one: it restores the previous values of the
+	 * attributes and the previous shape, removes the element if this diff is a
+	 * base and restores it if this diff is a deletion.
+	 * 
+	 * @return The inverse diff, or null if it has not been computed.
+	 */
+	public ElementDiff getInverse() {
+
+		return this.inverse;
+	}
+
 	/**
 	 * Check if the diff is really useful or if it does not represent any
 	 * change.
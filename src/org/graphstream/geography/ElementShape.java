@@ -31,10 +31,6 @@
 
 package org.graphstream.geography;
 
-import java.util.List;
-
-import org.graphstream.geography.index.SpatialIndexPoint;
-
 /**
  * ElementShape represents the shape and position of a geographic element at a
  * given time.
@@ -150,11 +146,32 @@ public abstract class ElementShape {
 	}
 
 	/**
-	 * Give special points that spatially represent the shape of the element and
-	 * will be stored in a spatial index.
+	 * Give the number of points that spatially represent the shape of the
+	 * element and are stored in a spatial index.
+	 * 
+	 * The points are read one coordinate at a time so that filling an index
+	 * does not create any object.
+	 * 
+	 * @return The number of points.
+	 */
+	public abstract int getPointCount();
+
+	/**
+	 * Give the x-axis coordinate of a point of the shape.
+	 * 
+	 * @param i
+	 *            The index of the point, lower than getPointCount().
+	 * @return The x-axis coordinate.
+	 */
+	public abstract double getPointX(int i);
+
+	/**
+	 * Give the y-axis coordinate of a point of the shape.
 	 * 
-	 * @return A list of spatial references to the shape of the element.
+	 * @param i
+	 *            The index of the point, lower than getPointCount().
+	 * @return The y-axis coordinate.
 	 */
-	public abstract List<SpatialIndexPoint> toSpatialIndexPoints();
+	public abstract double getPointY(int i);
 
 }
@@ -0,0 +1,635 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A record of the nodes and edges that a geo source has sent to its sinks.
+ * 
+ * The geo source records every node and edge added to or removed from the
+ * output graph, whatever its implementation. The use-case sources check that a
+ * graph element has not already been sent for every element they produce, so
+ * the membership tests, additions and removals all take constant time. A node
+ * can also carry a number of references (the edge ends using it for example)
+ * and the position last sent for it.
+ * 
+ * IDs that are plain decimal numbers, such as OpenStreetMap node IDs, are
+ * stored as primitive longs in an open addressing table, with their data in
+ * parallel arrays, instead of as strings. The other IDs are kept in a hash
+ * map.
+ * 
+ * @author Merwan Achibet
+ */
+public class EmittedElementRegistry {
+
+	/**
+	 * The IDs of the nodes sent to the sinks.
+	 */
+	protected IdSet nodes;
+
+	/**
+	 * The IDs of the edges sent to the sinks.
+	 */
+	protected IdSet edges;
+
+	/**
+	 * Instantiate a new empty registry.
+	 */
+	public EmittedElementRegistry() {
+
+		this.nodes = new IdSet(true);
+		this.edges = new IdSet(false);
+	}
+
+	/**
+	 * Record a node as sent.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @return True if the node was not recorded yet, false otherwise.
+	 */
+	public boolean addNode(String nodeId) {
+
+		return this.nodes.add(nodeId);
+	}
+
+	/**
+	 * Check if a node has been sent.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @return True if the node is recorded, false otherwise.
+	 */
+	public boolean containsNode(String nodeId) {
+
+		return this.nodes.contains(nodeId);
+	}
+
+	/**
+	 * Forget a node, once it has been removed from the output graph.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @return True if the node was recorded, false otherwise.
+	 */
+	public boolean removeNode(String nodeId) {
+
+		return this.nodes.remove(nodeId);
+	}
+
+	/**
+	 * Count one more reference to a node, recording the node if necessary.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @return The number of references to the node.
+	 */
+	public int addNodeReference(String nodeId) {
+
+		return this.nodes.addReference(nodeId);
+	}
+
+	/**
+	 * Count one less reference to a node. The node stays recorded until it is
+	 * removed.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @return The number of references left, or -1 if the node is not
+	 *         recorded.
+	 */
+	public int removeNodeReference(String nodeId) {
+
+		return this.nodes.removeReference(nodeId);
+	}
+
+	/**
+	 * Give the number of references to a node.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @return The number of references, or -1 if the node is not recorded.
+	 */
+	public int getNodeReferenceCount(String nodeId) {
+
+		return this.nodes.getReferenceCount(nodeId);
+	}
+
+	/**
+	 * Record the position sent for a node, recording the node if necessary.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @return True if the position differs from the one recorded before (or if
+	 *         there was none), false otherwise.
+	 */
+	public boolean setNodePosition(String nodeId, double x, double y) {
+
+		return this.nodes.setPosition(nodeId, x, y);
+	}
+
+	/**
+	 * Give the number of recorded nodes.
+	 * 
+	 * @return The node count.
+	 */
+	public int getNodeCount() {
+
+		return this.nodes.size();
+	}
+
+	/**
+	 * Record an edge as sent.
+	 * 
+	 * @param edgeId
+	 *            The ID of the edge.
+	 * @return True if the edge was not recorded yet, false otherwise.
+	 */
+	public boolean addEdge(String edgeId) {
+
+		return this.edges.add(edgeId);
+	}
+
+	/**
+	 * Check if an edge has been sent.
+	 * 
+	 * @param edgeId
+	 *            The ID of the edge.
+	 * @return True if the edge is recorded, false otherwise.
+	 */
+	public boolean containsEdge(String edgeId) {
+
+		return this.edges.contains(edgeId);
+	}
+
+	/**
+	 * Forget an edge, once it has been removed from the output graph.
+	 * 
+	 * @param edgeId
+	 *            The ID of the edge.
+	 * @return True if the edge was recorded, false otherwise.
+	 */
+	public boolean removeEdge(String edgeId) {
+
+		return this.edges.remove(edgeId);
+	}
+
+	/**
+	 * Give the number of recorded edges.
+	 * 
+	 * @return The edge count.
+	 */
+	public int getEdgeCount() {
+
+		return this.edges.size();
+	}
+
+	/**
+	 * Forget all the nodes and edges, once the output graph has been cleared.
+	 */
+	public void clear() {
+
+		this.nodes.clear();
+		this.edges.clear();
+	}
+
+	/**
+	 * A set of IDs with a reference count and, optionally, a position for each
+	 * of them, the numeric IDs being stored as longs.
+	 */
+	protected static class IdSet {
+
+		/**
+		 * The value marking a free slot of the table. It is never the value of
+		 * a numeric ID as these have at most 18 digits.
+		 */
+		protected static final long FREE = Long.MIN_VALUE;
+
+		/**
+		 * Are the positions recorded?
+		 */
+		protected boolean positions;
+
+		/**
+		 * The numeric IDs, in an open addressing table with linear probing.
+		 * The length of the table is a power of two.
+		 */
+		protected long[] table;
+
+		/**
+		 * The reference count of each numeric ID, in the slot of the ID.
+		 */
+		protected int[] counts;
+
+		/**
+		 * The position of each numeric ID, in the slot of the ID, or null if
+		 * the positions are not recorded.
+		 */
+		protected double[] xs;
+
+		protected double[] ys;
+
+		/**
+		 * The number of numeric IDs.
+		 */
+		protected int longCount;
+
+		/**
+		 * The other IDs, with their data (null until they get any).
+		 */
+		protected HashMap<String, Data> strings;
+
+		public IdSet(boolean positions) {
+
+			this.positions = positions;
+
+			allocate(16);
+
+			this.strings = new HashMap<String, Data>();
+		}
+
+		public boolean add(String id) {
+
+			long value = toLong(id);
+
+			if(value == FREE) {
+
+				if(this.strings.containsKey(id))
+					return false;
+
+				this.strings.put(id, null);
+
+				return true;
+			}
+
+			if(this.table[find(value)] == value)
+				return false;
+
+			insert(value);
+
+			return true;
+		}
+
+		public boolean contains(String id) {
+
+			long value = toLong(id);
+
+			if(value == FREE)
+				return this.strings.containsKey(id);
+
+			return this.table[find(value)] == value;
+		}
+
+		public boolean remove(String id) {
+
+			long value = toLong(id);
+
+			if(value == FREE) {
+
+				if(!this.strings.containsKey(id))
+					return false;
+
+				this.strings.remove(id);
+
+				return true;
+			}
+
+			int slot = find(value);
+
+			if(this.table[slot] != value)
+				return false;
+
+			// Shift back the following values of the probe sequence that
+			// cannot be reached anymore once the slot is freed, instead of
+			// leaving a tombstone.
+
+			int mask = this.table.length - 1;
+
+			int next = (slot + 1) & mask;
+
+			while(this.table[next] != FREE) {
+
+				int home = hash(this.table[next], mask);
+
+				if(((next - home) & mask) >= ((next - slot) & mask)) {
+
+					move(next, slot);
+
+					slot = next;
+				}
+
+				next = (next + 1) & mask;
+			}
+
+			this.table[slot] = FREE;
+
+			--this.longCount;
+
+			return true;
+		}
+
+		public int addReference(String id) {
+
+			long value = toLong(id);
+
+			if(value == FREE)
+				return ++data(id, true).count;
+
+			return ++this.counts[slot(value, true)];
+		}
+
+		public int removeReference(String id) {
+
+			long value = toLong(id);
+
+			if(value == FREE) {
+
+				Data data = data(id, false);
+
+				if(data == null)
+					return -1;
+
+				return data.count > 0 ? --data.count : 0;
+			}
+
+			int slot = slot(value, false);
+
+			if(slot < 0)
+				return -1;
+
+			return this.counts[slot] > 0 ? --this.counts[slot] : 0;
+		}
+
+		public int getReferenceCount(String id) {
+
+			long value = toLong(id);
+
+			if(value == FREE) {
+
+				Data data = data(id, false);
+
+				return data != null ? data.count : this.strings.containsKey(id) ? 0 : -1;
+			}
+
+			int slot = slot(value, false);
+
+			return slot < 0 ? -1 : this.counts[slot];
+		}
+
+		public boolean setPosition(String id, double x, double y) {
+
+			if(!this.positions)
+				throw new UnsupportedOperationException("the positions are not recorded");
+
+			long value = toLong(id);
+
+			if(value == FREE) {
+
+				Data data = data(id, true);
+
+				boolean moved = data.x != x || data.y != y;
+
+				data.x = x;
+				data.y = y;
+
+				return moved;
+			}
+
+			int slot = slot(value, true);
+
+			boolean moved = this.xs[slot] != x || this.ys[slot] != y;
+
+			this.xs[slot] = x;
+			this.ys[slot] = y;
+
+			return moved;
+		}
+
+		public int size() {
+
+			return this.longCount + this.strings.size();
+		}
+
+		public void clear() {
+
+			Arrays.fill(this.table, FREE);
+
+			this.longCount = 0;
+
+			this.strings.clear();
+		}
+
+		/**
+		 * Give the slot holding a value, or the free slot where it would be
+		 * inserted.
+		 */
+		protected int find(long value) {
+
+			int mask = this.table.length - 1;
+
+			int slot = hash(value, mask);
+
+			while(this.table[slot] != FREE && this.table[slot] != value)
+				slot = (slot + 1) & mask;
+
+			return slot;
+		}
+
+		/**
+		 * Give the slot holding a value, inserting it if asked to, or -1.
+		 */
+		protected int slot(long value, boolean create) {
+
+			int slot = find(value);
+
+			if(this.table[slot] == value)
+				return slot;
+
+			return create ? insert(value) : -1;
+		}
+
+		/**
+		 * Insert a value that is not in the table yet, without any reference
+		 * nor position, and give its slot.
+		 */
+		protected int insert(long value) {
+
+			// Keep the table at most half full so that the probe sequences
+			// stay short.
+
+			if((this.longCount + 1) * 2 > this.table.length)
+				grow();
+
+			int slot = find(value);
+
+			this.table[slot] = value;
+			this.counts[slot] = 0;
+
+			if(this.positions) {
+
+				this.xs[slot] = Double.NaN;
+				this.ys[slot] = Double.NaN;
+			}
+
+			++this.longCount;
+
+			return slot;
+		}
+
+		/**
+		 * Move a value and its data from a slot to another.
+		 */
+		protected void move(int from, int to) {
+
+			this.table[to] = this.table[from];
+			this.counts[to] = this.counts[from];
+
+			if(this.positions) {
+
+				this.xs[to] = this.xs[from];
+				this.ys[to] = this.ys[from];
+			}
+		}
+
+		/**
+		 * Give the data of a non numeric ID, creating it if the ID is
+		 * recorded (or if asked to record it), or null.
+		 */
+		protected Data data(String id, boolean create) {
+
+			Data data = this.strings.get(id);
+
+			if(data == null && (create || this.strings.containsKey(id))) {
+
+				data = new Data();
+
+				this.strings.put(id, data);
+			}
+
+			return data;
+		}
+
+		protected void allocate(int capacity) {
+
+			this.table = new long[capacity];
+			Arrays.fill(this.table, FREE);
+
+			this.counts = new int[capacity];
+
+			if(this.positions) {
+
+				this.xs = new double[capacity];
+				this.ys = new double[capacity];
+			}
+		}
+
+		protected void grow() {
+
+			long[] oldTable = this.table;
+			int[] oldCounts = this.counts;
+			double[] oldXs = this.xs;
+			double[] oldYs = this.ys;
+
+			allocate(oldTable.length * 2);
+
+			for(int i = 0; i < oldTable.length; ++i)
+				if(oldTable[i] != FREE) {
+
+					int slot = find(oldTable[i]);
+
+					this.table[slot] = oldTable[i];
+					this.counts[slot] = oldCounts[i];
+
+					if(this.positions) {
+
+						this.xs[slot] = oldXs[i];
+						this.ys[slot] = oldYs[i];
+					}
+				}
+		}
+
+		protected static int hash(long value, int mask) {
+
+			long mixed = value * 0x9E3779B97F4A7C15L;
+
+			return (int)(mixed ^ (mixed >>> 32)) & mask;
+		}
+
+		/**
+		 * Give the numeric value of an ID written as a canonical decimal
+		 * number (no sign other than a leading minus, no leading zero), or
+		 * FREE if the ID is not one. IDs such as "007" and "7" are thus never
+		 * mistaken for each other.
+		 */
+		protected static long toLong(String id) {
+
+			int length = id.length();
+			int start = length > 0 && id.charAt(0) == '-' ? 1 : 0;
+
+			if(length == start || length - start > 18 || (id.charAt(start) == '0' && length - start > 1) || (start == 1 && id.charAt(1) == '0'))
+				return FREE;
+
+			long value = 0;
+
+			for(int i = start; i < length; ++i) {
+
+				char c = id.charAt(i);
+
+				if(c < '0' || c > '9')
+					return FREE;
+
+				value = value * 10 + (c - '0');
+			}
+
+			return start == 1 ? -value : value;
+		}
+	}
+
+	/**
+	 * The reference count and the position of a non numeric ID.
+	 */
+	protected static class Data {
+
+		int count;
+
+		double x = Double.NaN;
+
+		double y = Double.NaN;
+	}
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography;
+
+import java.util.ArrayList;
+
+import org.graphstream.graph.implementations.AbstractElement.AttributeChangeEvent;
+import org.graphstream.stream.SourceBase.ElementType;
+
+/**
+ * The events produced by a geo source during a time step, recorded to be sent
+ * to the sinks later (possibly from another thread).
+ * 
+ * The events are stored in flat lists (one type and one time ID per event, and
+ * a variable number of arguments) rather than as one object per event.
+ * 
+ * @author Merwan Achibet
+ */
+public class EventBatch {
+
+	/**
+	 * The kinds of recorded events.
+	 */
+	public static enum Type {
+		NODE_ADDED, NODE_REMOVED, EDGE_ADDED, EDGE_REMOVED, GRAPH_CLEARED, STEP_BEGINS, ATTRIBUTE_CHANGED
+	};
+
+	/**
+	 * The time step of the events.
+	 */
+	protected int step;
+
+	/**
+	 * Is this the batch of the last time step?
+	 */
+	protected boolean last;
+
+	/**
+	 * The error that interrupted the production of the events, if any.
+	 */
+	protected Throwable failure;
+
+	/**
+	 * Type of each event.
+	 */
+	protected ArrayList<Type> types;
+
+	/**
+	 * Time ID of each event.
+	 */
+	protected long[] timeIds;
+
+	/**
+	 * Arguments of all the events, one after the other.
+	 */
+	protected ArrayList<Object> arguments;
+
+	/**
+	 * Instantiate a new empty batch.
+	 * 
+	 * @param step
+	 *            The time step of the events.
+	 */
+	public EventBatch(int step) {
+
+		this.step = step;
+
+		this.types = new ArrayList<Type>();
+		this.timeIds = new long[64];
+		this.arguments = new ArrayList<Object>();
+	}
+
+	/**
+	 * Give the time step of the events.
+	 * 
+	 * @return The time step.
+	 */
+	public int getStep() {
+
+		return this.step;
+	}
+
+	/**
+	 * Check if this is the batch of the last time step.
+	 * 
+	 * @return True if no time step follows, false otherwise.
+	 */
+	public boolean isLast() {
+
+		return this.last;
+	}
+
+	/**
+	 * Give the number of recorded events.
+	 * 
+	 * @return The number of events.
+	 */
+	public int size() {
+
+		return this.types.size();
+	}
+
+	/*
+	 * Recording.
+	 */
+
+	protected void add(Type type, long timeId, Object... arguments) {
+
+		int index = this.types.size();
+
+		if(index == this.timeIds.length) {
+
+			long[] timeIds = new long[index * 2];
+
+			System.arraycopy(this.timeIds, 0, timeIds, 0, index);
+
+			this.timeIds = timeIds;
+		}
+
+		this.types.add(type);
+		this.timeIds[index] = timeId;
+
+		for(Object argument : arguments)
+			this.arguments.add(argument);
+	}
+
+	public void nodeAdded(String sourceId, long timeId, String nodeId) {
+
+		add(Type.NODE_ADDED, timeId, sourceId, nodeId);
+	}
+
+	public void nodeRemoved(String sourceId, long timeId, String nodeId) {
+
+		add(Type.NODE_REMOVED, timeId, sourceId, nodeId);
+	}
+
+	public void edgeAdded(String sourceId, long timeId, String edgeId, String fromNodeId, String toNodeId, boolean directed) {
+
+		add(Type.EDGE_ADDED, timeId, sourceId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	public void edgeRemoved(String sourceId, long timeId, String edgeId) {
+
+		add(Type.EDGE_REMOVED, timeId, sourceId, edgeId);
+	}
+
+	public void graphCleared(String sourceId, long timeId) {
+
+		add(Type.GRAPH_CLEARED, timeId, sourceId);
+	}
+
+	public void stepBegins(String sourceId, long timeId, double step) {
+
+		add(Type.STEP_BEGINS, timeId, sourceId, step);
+	}
+
+	public void attributeChanged(String sourceId, long timeId, String eltId, ElementType eltType, String attribute, AttributeChangeEvent event, Object oldValue, Object newValue) {
+
+		add(Type.ATTRIBUTE_CHANGED, timeId, sourceId, eltId, eltType, attribute, event, oldValue, newValue);
+	}
+
+	/**
+	 * Send the recorded events to the sinks of a source, in their order of
+	 * production.
+	 * 
+	 * @param source
+	 *            The source.
+	 */
+	public void replay(GeoSource source) {
+
+		int a = 0;
+
+		for(int i = 0, l = this.types.size(); i < l; ++i) {
+
+			long timeId = this.timeIds[i];
+
+			switch(this.types.get(i)) {
+			case NODE_ADDED:
+				source.dispatchNodeAdded((String)this.arguments.get(a), timeId, (String)this.arguments.get(a + 1));
+				a += 2;
+				break;
+			case NODE_REMOVED:
+				source.dispatchNodeRemoved((String)this.arguments.get(a), timeId, (String)this.arguments.get(a + 1));
+				a += 2;
+				break;
+			case EDGE_ADDED:
+				source.dispatchEdgeAdded((String)this.arguments.get(a), timeId, (String)this.arguments.get(a + 1), (String)this.arguments.get(a + 2), (String)this.arguments.get(a + 3), (Boolean)this.arguments.get(a + 4));
+				a += 5;
+				break;
+			case EDGE_REMOVED:
+				source.dispatchEdgeRemoved((String)this.arguments.get(a), timeId, (String)this.arguments.get(a + 1));
+				a += 2;
+				break;
+			case GRAPH_CLEARED:
+				source.dispatchGraphCleared((String)this.arguments.get(a), timeId);
+				a += 1;
+				break;
+			case STEP_BEGINS:
+				source.dispatchStepBegins((String)this.arguments.get(a), timeId, (Double)this.arguments.get(a + 1));
+				a += 2;
+				break;
+			case ATTRIBUTE_CHANGED:
+				source.dispatchAttributeChangedEvent((String)this.arguments.get(a), timeId, (String)this.arguments.get(a + 1), (ElementType)this.arguments.get(a + 2), (String)this.arguments.get(a + 3), (AttributeChangeEvent)this.arguments.get(a + 4), this.arguments.get(a + 5), this.arguments.get(a + 6));
+				a += 7;
+				break;
+			}
+		}
+	}
+
+}
@@ -31,6 +31,7 @@
 
 package org.graphstream.geography;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -38,8 +39,14 @@ import java.util.Map.Entry;
 import java.util.TreeSet;
 
 import org.graphstream.geography.ElementShape.Type;
+import org.graphstream.geography.index.GridIndex;
 import org.graphstream.geography.index.SpatialIndex;
-import org.graphstream.geography.index.SpatialIndexPoint;
+import org.graphstream.geography.index.SpatialIndexSnapshot;
+import org.graphstream.geography.metrics.GeoSourceMetrics;
+import org.graphstream.geography.metrics.GeoSourceMetrics.Counter;
+import org.graphstream.geography.metrics.GeoSourceMetrics.Phase;
+import org.graphstream.graph.implementations.AbstractElement.AttributeChangeEvent;
+import org.graphstream.stream.Sink;
 import org.graphstream.stream.SourceBase;
 
 /**
@@ -87,6 +94,12 @@ public abstract class GeoSource extends SourceBase {
 	 */
 	protected SpatialIndex index;
 
+	/**
+	 * The last immutable copy of the spatial index published to the reader
+	 * threads.
+	 */
+	protected volatile SpatialIndexSnapshot indexSnapshot;
+
 	/**
 	 * List of dates.
 	 */
@@ -97,6 +110,39 @@ public abstract class GeoSource extends SourceBase {
 	 */
 	protected int currentTimeStep;
 
+	/**
+	 * Timers and counters of the import.
+	 */
+	protected GeoSourceMetrics metrics;
+
+	/**
+	 * The directory where the results of the imports are cached, or null if the
+	 * cache is disabled.
+	 */
+	protected File cacheDirectory;
+
+	/**
+	 * The batch recording the events instead of sending them, or null if the
+	 * events are sent directly to the sinks.
+	 */
+	protected EventBatch recording;
+
+	/**
+	 * The sinks receiving the events from their own thread.
+	 */
+	protected ArrayList<AsyncSink> asyncSinks;
+
+	/**
+	 * The record of the nodes and edges already sent to the sinks. It is
+	 * updated by the methods sending the events, whatever the implementation.
+	 */
+	protected EmittedElementRegistry emitted;
+
+	/**
+	 * The table producing the IDs of the edges.
+	 */
+	protected EdgeIdTable edgeIds;
+
 	/**
 	 * Instantiate a new geo source with a set of input files.
 	 * 
@@ -120,6 +166,14 @@ public abstract class GeoSource extends SourceBase {
 		this.dates = new ArrayList<Integer>();
 
 		this.currentTimeStep = 0;
+
+		this.metrics = new GeoSourceMetrics();
+
+		this.asyncSinks = new ArrayList<AsyncSink>();
+
+		this.emitted = new EmittedElementRegistry();
+
+		this.edgeIds = new EdgeIdTable();
 	}
 
 	/**
@@ -130,19 +184,89 @@ public abstract class GeoSource extends SourceBase {
 	 */
 	public void prepareSpatialIndex() {
 
-		this.index = new SpatialIndex();
+		prepareSpatialIndex(SpatialIndex.Type.QUADTREE);
+	}
+
+	/**
+	 * Prepare a spatial index of a given type.
+	 * 
+	 * This method is only called if a descriptor is setup to store matching
+	 * elements in a spatial index. A single index is shared by all the
+	 * descriptors, so the last type requested wins.
+	 * 
+	 * @param type
+	 *            The type of the spatial index.
+	 */
+	public void prepareSpatialIndex(SpatialIndex.Type type) {
+
+		this.index = SpatialIndex.create(type);
+	}
+
+	/**
+	 * Prepare a spatial index of a given type and structure.
+	 * 
+	 * @param type
+	 *            The type of the spatial index.
+	 * @param entriesPerNode
+	 *            The number of entries above which a quadtree cell is split,
+	 *            the number of children of an R-tree node or the average
+	 *            number of entries of a grid cell.
+	 * @param maxDepth
+	 *            The maximum depth of a quadtree (ignored by the others).
+	 */
+	public void prepareSpatialIndex(SpatialIndex.Type type, int entriesPerNode, int maxDepth) {
+
+		this.index = SpatialIndex.create(type, entriesPerNode, maxDepth);
+	}
+
+	/**
+	 * Prepare a uniform grid spatial index with a given cell size.
+	 * 
+	 * @param cellSize
+	 *            The side of a cell in the units of the data.
+	 */
+	public void prepareGridIndex(double cellSize) {
+
+		this.index = new GridIndex(cellSize);
 	}
 
 	/**
 	 * Go through the input files, aggregate the relevant data and convert the
 	 * geographic objects to standard geometric elements.
+	 * 
+	 * If a cache directory is set and the same inputs have already been read
+	 * with the same configuration, the result of the previous import is loaded
+	 * from the cache instead.
 	 */
 	public void read() {
 
+		GeoSourceCache cache = null;
+
+		if(this.cacheDirectory != null) {
+
+			cache = new GeoSourceCache(this, this.cacheDirectory);
+
+			if(cache.load())
+				return;
+		}
+
+		readInputs();
+
+		if(cache != null)
+			cache.store();
+	}
+
+	/**
+	 * Read and convert the input files (the cache is not considered).
+	 */
+	protected void readInputs() {
+
 		/**
 		 * First pass: go through all files and instantiate the elements.
 		 */
 
+		long start = this.metrics.start();
+
 		// All the dates will be accumulated in this ordered set.
 
 		TreeSet<Integer> dates = new TreeSet<Integer>();
@@ -186,10 +310,14 @@ public abstract class GeoSource extends SourceBase {
 		for(Integer date : dates)
 			this.dates.add(date);
 
+		this.metrics.stop(Phase.FIRST_PASS, start);
+
 		/**
 		 * Second pass: fill the element diffs with attribute and shape data.
 		 */
 
+		start = this.metrics.start();
+
 		for(Element element : this.elements.values()) {
 
 			Integer previousDate = null;
@@ -207,11 +335,11 @@ public abstract class GeoSource extends SourceBase {
 
 					element.addDiffAtDate(currentDiff, date);
 
-					// Reference the element in the spatial index if necessary.
+					this.metrics.increment(Counter.DIFFS_CREATED);
+				}
+				else {
 
-					if(this.index != null && aggregate.descriptorsUsed.get(currentDiff.getElementId()).areElementsSentToSpatialIndex())
-						for(SpatialIndexPoint p : currentDiff.getShape().toSpatialIndexPoints())
-							this.index.addPoint(p);
+					this.metrics.increment(Counter.EMPTY_DIFFS_DROPPED);
 				}
 
 				//
@@ -236,6 +364,8 @@ public abstract class GeoSource extends SourceBase {
 				Integer deletionDate = this.dates.get(this.dates.indexOf(elementLastDate) + 1);
 
 				element.addDiffAtDate(deletionDiff, deletionDate);
+
+				this.metrics.increment(Counter.DIFFS_CREATED);
 			}
 
 			// Remove the empty diff slots that were not filled up because their
@@ -249,7 +379,130 @@ public abstract class GeoSource extends SourceBase {
 
 			for(Integer dateToBeDeleted : datesToBeDeleted)
 				element.removeDiffAtDate(dateToBeDeleted);
+
+			// Prepare the diffs used to play the chain backward.
+
+			element.computeInverseDiffs();
 		}
+
+		this.metrics.stop(Phase.SECOND_PASS, start);
+
+		if(this.index != null)
+			buildSpatialIndex();
+	}
+
+	/**
+	 * Build the spatial index at once from the shapes of the elements that
+	 * are sent to it.
+	 * 
+	 * Each shape is referenced from the step at which it appears until the
+	 * step at which its element changes shape or disappears, so that the index
+	 * can be queried as it is at any step.
+	 */
+	protected void buildSpatialIndex() {
+
+		long start = this.metrics.start();
+
+		HashMap<Integer, Integer> stepsByDate = new HashMap<Integer, Integer>();
+
+		for(int step = 0; step < this.dates.size(); ++step)
+			stepsByDate.put(this.dates.get(step), step);
+
+		ArrayList<ElementShape> shapes = new ArrayList<ElementShape>();
+		ArrayList<Integer> births = new ArrayList<Integer>();
+		ArrayList<Integer> deaths = new ArrayList<Integer>();
+
+		for(Element element : this.elements.values()) {
+
+			if(element.getDescriptorUsed() == null || !element.getDescriptorUsed().areElementsSentToSpatialIndex())
+				continue;
+
+			// Walk the diff chain and close the interval of the current shape
+			// each time it is replaced or the element is deleted.
+
+			ElementShape shape = null;
+			int birth = 0;
+
+			for(Entry<Integer, ElementDiff> dateDiffPair : element.getDiffs().entrySet()) {
+
+				ElementDiff diff = dateDiffPair.getValue();
+
+				if(diff == null || (!diff.isDeleted() && diff.getShape() == null))
+					continue;
+
+				int step = stepsByDate.get(dateDiffPair.getKey());
+
+				if(shape != null) {
+
+					shapes.add(shape);
+					births.add(birth);
+					deaths.add(step);
+				}
+
+				shape = diff.isDeleted() ? null : diff.getShape();
+				birth = step;
+			}
+
+			if(shape != null) {
+
+				shapes.add(shape);
+				births.add(birth);
+				deaths.add(Integer.MAX_VALUE);
+			}
+		}
+
+		int[] birthArray = new int[shapes.size()];
+		int[] deathArray = new int[shapes.size()];
+
+		for(int i = 0; i < shapes.size(); ++i) {
+
+			birthArray[i] = births.get(i);
+			deathArray[i] = deaths.get(i);
+		}
+
+		this.index.bulkLoad(shapes, birthArray, deathArray);
+
+		publishSpatialIndexSnapshot();
+
+		this.metrics.stop(Phase.INDEX_BUILD, start);
+	}
+
+	/**
+	 * Take an immutable copy of the spatial index and publish it in place of
+	 * the previous one.
+	 * 
+	 * This is called once the index is built by read() and should be called
+	 * again after the index has been modified so that the reader threads see
+	 * the changes. The readers that still hold the previous snapshot keep
+	 * using it safely.
+	 */
+	public void publishSpatialIndexSnapshot() {
+
+		this.indexSnapshot = this.index == null ? null : this.index.snapshot();
+	}
+
+	/**
+	 * Give the last published copy of the spatial index, which can be queried
+	 * from any thread without locking.
+	 * 
+	 * @return The snapshot, or null if there is no spatial index.
+	 */
+	public SpatialIndexSnapshot getSpatialIndexSnapshot() {
+
+		return this.indexSnapshot;
+	}
+
+	/**
+	 * Give the spatial index, if a descriptor is setup to fill one.
+	 * 
+	 * The entries of the index carry the steps during which they are valid,
+	 * so the index can be queried at the current step during playback.
+	 * 
+	 * @return The spatial index, or null.
+	 */
+	public SpatialIndex getSpatialIndex() {
+
+		return this.index;
 	}
 
 	/**
@@ -440,13 +693,112 @@ public abstract class GeoSource extends SourceBase {
 	 */
 	public boolean next() {
 
-		System.out.println("step " + this.currentTimeStep + " (date: " + stepToDate(this.currentTimeStep) + ")");
+		this.metrics.info("step %d (date: %d)", this.currentTimeStep, stepToDate(this.currentTimeStep));
+
+		long start = this.metrics.start();
 
 		nextEvents();
 
+		this.metrics.stop(Phase.STEP, start);
+
+		// Wait for the asynchronous sinks, unless the events are only
+		// recorded.
+
+		if(this.recording == null)
+			flush();
+
 		return ++this.currentTimeStep < this.dates.size();
 	}
 
+	/**
+	 * Undo the last time step played.
+	 * 
+	 * Only the inverse diffs of the elements that changed during this step are
+	 * sent, so going backward costs the same as going forward. The step can
+	 * then be played again with {@link #next()}.
+	 * 
+	 * @return True if there is still a time step to be undone, false
+	 *         otherwise (the output graph is then empty).
+	 */
+	public boolean previous() {
+
+		// The graph is at the step before the next one to be played.
+
+		int graphStep = this.currentTimeStep - 1;
+
+		if(graphStep < 0)
+			return false;
+
+		this.metrics.info("undo step %d (date: %d)", graphStep, stepToDate(graphStep));
+
+		long start = this.metrics.start();
+
+		ArrayList<ElementDiff> inverseDiffs = getInverseElementDiffsAtStep(graphStep);
+
+		this.currentTimeStep = graphStep - 1;
+
+		diffEvents(inverseDiffs);
+
+		// Undoing a step is a random access, timed with the seeks so that the
+		// step metrics only reflect the forward playback.
+
+		this.metrics.stop(Phase.SEEK, start);
+
+		flush();
+
+		this.currentTimeStep = graphStep;
+
+		return graphStep - 1 >= 0;
+	}
+
+	/**
+	 * Bring the output graph from its current time step to any other time
+	 * step, forward or backward.
+	 * 
+	 * Instead of replaying all the intermediate steps, the net changes of each
+	 * element between the two steps are computed from the diff chains and only
+	 * the corresponding events are sent: removals of the elements that do not
+	 * exist anymore, additions of the new ones and changes of the attributes
+	 * and shapes of the others. The playback can then go on with
+	 * {@link #next()} from the target step.
+	 * 
+	 * @param step
+	 *            The target time step.
+	 * @return True if there are time steps after the target step, false
+	 *         otherwise.
+	 */
+	public boolean seek(int step) {
+
+		if(step < 0 || step >= this.dates.size())
+			throw new IndexOutOfBoundsException("no time step " + step);
+
+		// The graph is at the step before the next one to be played (or empty
+		// if no step has been played yet).
+
+		int graphStep = this.currentTimeStep - 1;
+
+		this.metrics.info("seek from step %d to step %d (date: %d)", graphStep, step, stepToDate(step));
+
+		long start = this.metrics.start();
+
+		if(step != graphStep) {
+
+			ArrayList<ElementDiff> diffs = getElementDiffsBetweenSteps(graphStep, step);
+
+			this.currentTimeStep = step;
+
+			diffEvents(diffs);
+		}
+
+		this.metrics.stop(Phase.SEEK, start);
+
+		flush();
+
+		this.currentTimeStep = step + 1;
+
+		return this.currentTimeStep < this.dates.size();
+	}
+
 	/**
 	 * This is were the magic happens. A programmer that wants to build a
 	 * specific implementation of GeoSource will do most of its work in this
@@ -455,6 +807,35 @@ public abstract class GeoSource extends SourceBase {
 	 */
 	protected abstract void nextEvents();
 
+	/**
+	 * Send the events reflecting a set of element diffs to the sinks.
+	 * 
+	 * This is used by {@link #seek(int)} with the net changes between two time
+	 * steps. An implementation supporting random access usually also builds
+	 * its {@link #nextEvents()} on this method. During the call, the current
+	 * time step is the step reached once the diffs are applied.
+	 * 
+	 * By default, the diffs are ignored: the output graph is cleared and the
+	 * time steps are played again from the first one up to the target step
+	 * with {@link #nextEvents()}. This is correct for any implementation but
+	 * costs as much as the whole playback, so the implementations should send
+	 * the diffs instead.
+	 * 
+	 * @param diffs
+	 *            The diffs, the deletion diffs coming first.
+	 */
+	protected void diffEvents(List<ElementDiff> diffs) {
+
+		int step = this.currentTimeStep;
+
+		sendGraphCleared(this.id);
+
+		for(this.currentTimeStep = 0; this.currentTimeStep <= step; ++this.currentTimeStep)
+			nextEvents();
+
+		this.currentTimeStep = step;
+	}
+
 	/**
 	 * Replicate the attribute changes of an element represented as a node in
 	 * the output graph.
@@ -478,6 +859,25 @@ public abstract class GeoSource extends SourceBase {
 				sendNodeAttributeRemoved(this.id, nodeId, key);
 	}
 
+	/**
+	 * Replicate all the attributes of an element represented as a node in the
+	 * output graph.
+	 * 
+	 * The node must have already been added to the graph prior to any call to
+	 * this method.
+	 * 
+	 * @param nodeId
+	 *            The node ID.
+	 * @param view
+	 *            The element view representing the node.
+	 */
+	protected void replicateNodeAttributes(String nodeId, ElementView view) {
+
+		if(view.getAttributes() != null)
+			for(Entry<String, Object> keyValuePair : view.getAttributes().entrySet())
+				sendNodeAttributeChanged(this.id, nodeId, keyValuePair.getKey(), null, keyValuePair.getValue());
+	}
+
 	/**
 	 * Replicate the attribute changes of an element represented as an edge in
 	 * the output graph.
@@ -494,11 +894,11 @@ public abstract class GeoSource extends SourceBase {
 
 		if(diff.getChangedAttributes() != null)
 			for(Entry<String, Object> keyValuePair : diff.getChangedAttributes().entrySet())
-				sendNodeAttributeChanged(this.id, edgeId, keyValuePair.getKey(), null, keyValuePair.getValue());
+				sendEdgeAttributeChanged(this.id, edgeId, keyValuePair.getKey(), null, keyValuePair.getValue());
 
 		if(diff.getRemovedAttributes() != null)
 			for(String key : diff.getRemovedAttributes())
-				sendNodeAttributeRemoved(this.id, edgeId, key);
+				sendEdgeAttributeRemoved(this.id, edgeId, key);
 	}
 
 	/**
@@ -517,7 +917,264 @@ public abstract class GeoSource extends SourceBase {
 
 		if(view.getAttributes() != null)
 			for(Entry<String, Object> keyValuePair : view.getAttributes().entrySet())
-				sendNodeAttributeChanged(this.id, edgeId, keyValuePair.getKey(), null, keyValuePair.getValue());
+				sendEdgeAttributeChanged(this.id, edgeId, keyValuePair.getKey(), null, keyValuePair.getValue());
+	}
+
+	/*
+	 * All the events sent to the sinks go through the following methods. They
+	 * are overridden to keep the record of the emitted nodes and edges, and to
+	 * count the events, or to record them when the events of a time step are
+	 * prepared in advance.
+	 */
+
+	@Override
+	public void sendNodeAdded(String sourceId, long timeId, String nodeId) {
+
+		this.emitted.addNode(nodeId);
+
+		if(this.recording != null)
+			this.recording.nodeAdded(sourceId, timeId, nodeId);
+		else
+			dispatchNodeAdded(sourceId, timeId, nodeId);
+	}
+
+	@Override
+	public void sendNodeRemoved(String sourceId, long timeId, String nodeId) {
+
+		this.emitted.removeNode(nodeId);
+
+		if(this.recording != null)
+			this.recording.nodeRemoved(sourceId, timeId, nodeId);
+		else
+			dispatchNodeRemoved(sourceId, timeId, nodeId);
+	}
+
+	@Override
+	public void sendEdgeAdded(String sourceId, long timeId, String edgeId, String fromNodeId, String toNodeId, boolean directed) {
+
+		this.emitted.addEdge(edgeId);
+
+		if(this.recording != null)
+			this.recording.edgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId, directed);
+		else
+			dispatchEdgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	@Override
+	public void sendEdgeRemoved(String sourceId, long timeId, String edgeId) {
+
+		this.emitted.removeEdge(edgeId);
+
+		if(this.recording != null)
+			this.recording.edgeRemoved(sourceId, timeId, edgeId);
+		else
+			dispatchEdgeRemoved(sourceId, timeId, edgeId);
+	}
+
+	@Override
+	public void sendGraphCleared(String sourceId, long timeId) {
+
+		this.emitted.clear();
+
+		if(this.recording != null)
+			this.recording.graphCleared(sourceId, timeId);
+		else
+			dispatchGraphCleared(sourceId, timeId);
+	}
+
+	@Override
+	public void sendStepBegins(String sourceId, long timeId, double step) {
+
+		if(this.recording != null)
+			this.recording.stepBegins(sourceId, timeId, step);
+		else
+			dispatchStepBegins(sourceId, timeId, step);
+	}
+
+	@Override
+	public void sendAttributeChangedEvent(String sourceId, long timeId, String eltId, ElementType eltType, String attribute, AttributeChangeEvent event, Object oldValue, Object newValue) {
+
+		if(this.recording != null)
+			this.recording.attributeChanged(sourceId, timeId, eltId, eltType, attribute, event, oldValue, newValue);
+		else
+			dispatchAttributeChangedEvent(sourceId, timeId, eltId, eltType, attribute, event, oldValue, newValue);
+	}
+
+	/*
+	 * The following methods really send the events to the sinks.
+	 */
+
+	protected void dispatchNodeAdded(String sourceId, long timeId, String nodeId) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendNodeAdded(sourceId, timeId, nodeId);
+	}
+
+	protected void dispatchNodeRemoved(String sourceId, long timeId, String nodeId) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendNodeRemoved(sourceId, timeId, nodeId);
+	}
+
+	protected void dispatchEdgeAdded(String sourceId, long timeId, String edgeId, String fromNodeId, String toNodeId, boolean directed) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendEdgeAdded(sourceId, timeId, edgeId, fromNodeId, toNodeId, directed);
+	}
+
+	protected void dispatchEdgeRemoved(String sourceId, long timeId, String edgeId) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendEdgeRemoved(sourceId, timeId, edgeId);
+	}
+
+	protected void dispatchGraphCleared(String sourceId, long timeId) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendGraphCleared(sourceId, timeId);
+	}
+
+	protected void dispatchStepBegins(String sourceId, long timeId, double step) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendStepBegins(sourceId, timeId, step);
+	}
+
+	protected void dispatchAttributeChangedEvent(String sourceId, long timeId, String eltId, ElementType eltType, String attribute, AttributeChangeEvent event, Object oldValue, Object newValue) {
+
+		this.metrics.increment(Counter.EVENTS_EMITTED);
+
+		super.sendAttributeChangedEvent(sourceId, timeId, eltId, eltType, attribute, event, oldValue, newValue);
+	}
+
+	/**
+	 * Add a sink that receives the events from its own thread, through a
+	 * bounded queue. A slow sink then does not hold back the other sinks
+	 * until its queue is full.
+	 * 
+	 * The asynchronous sinks are flushed at the end of each time step: when
+	 * {@link #next()} returns, all the sinks have received the events of the
+	 * step.
+	 * 
+	 * @param sink
+	 *            The sink.
+	 * @param capacity
+	 *            The maximum number of events waiting for the sink.
+	 * @param policy
+	 *            What to do when the queue is full.
+	 * @return The asynchronous wrapper of the sink.
+	 */
+	public AsyncSink addAsyncSink(Sink sink, int capacity, AsyncSink.OverflowPolicy policy) {
+
+		AsyncSink asyncSink = new AsyncSink(sink, capacity, policy);
+
+		this.asyncSinks.add(asyncSink);
+
+		addSink(asyncSink);
+
+		return asyncSink;
+	}
+
+	/**
+	 * Remove a sink added with
+	 * {@link #addAsyncSink(Sink, int, AsyncSink.OverflowPolicy)}, once it has
+	 * received all the events sent so far, and stop its thread.
+	 * 
+	 * @param sink
+	 *            The sink (not its asynchronous wrapper).
+	 */
+	public void removeAsyncSink(Sink sink) {
+
+		for(AsyncSink asyncSink : this.asyncSinks)
+			if(asyncSink.getSink() == sink) {
+
+				removeSink(asyncSink);
+
+				this.asyncSinks.remove(asyncSink);
+
+				asyncSink.close();
+
+				return;
+			}
+	}
+
+	/**
+	 * Wait until all the asynchronous sinks have received the events sent so
+	 * far.
+	 */
+	public void flush() {
+
+		for(AsyncSink asyncSink : this.asyncSinks)
+			asyncSink.flush();
+	}
+
+	/**
+	 * Play the next time step but record its events in a batch instead of
+	 * sending them to the sinks.
+	 * 
+	 * @param batch
+	 *            The batch receiving the events.
+	 * @return True if there are time steps left to be played, false otherwise.
+	 */
+	protected boolean recordNext(EventBatch batch) {
+
+		this.recording = batch;
+
+		try {
+
+			return next();
+		}
+		finally {
+
+			this.recording = null;
+		}
+	}
+
+	/**
+	 * Bring the state of the source to a given time step but record the
+	 * events in a batch instead of sending them to the sinks.
+	 * 
+	 * Unlike {@link #seek(int)}, the target step can be -1, that is before the
+	 * first time step.
+	 * 
+	 * @param step
+	 *            The target time step, or -1.
+	 * @param batch
+	 *            The batch receiving the events.
+	 */
+	protected void recordSeek(int step, EventBatch batch) {
+
+		int graphStep = this.currentTimeStep - 1;
+
+		if(step == graphStep)
+			return;
+
+		long start = this.metrics.start();
+
+		this.recording = batch;
+
+		try {
+
+			ArrayList<ElementDiff> diffs = getElementDiffsBetweenSteps(graphStep, step);
+
+			this.currentTimeStep = step;
+
+			diffEvents(diffs);
+		}
+		finally {
+
+			this.recording = null;
+		}
+
+		this.metrics.stop(Phase.SEEK, start);
+
+		this.currentTimeStep = step + 1;
 	}
 
 	/**
@@ -661,6 +1318,83 @@ public abstract class GeoSource extends SourceBase {
 		return elementDiffsAtStep;
 	}
 
+	/**
+	 * Give the diffs undoing the changes of all elements at a given time step.
+	 * 
+	 * @param step
+	 *            The time step.
+	 * @return The inverse diffs of the elements at this step, the deletion
+	 *         diffs coming first.
+	 */
+	public ArrayList<ElementDiff> getInverseElementDiffsAtStep(int step) {
+
+		// Get the real date from the time step index.
+
+		Integer date = stepToDate(step);
+
+		//
+
+		ArrayList<ElementDiff> deletionDiffs = new ArrayList<ElementDiff>();
+		ArrayList<ElementDiff> otherDiffs = new ArrayList<ElementDiff>();
+
+		for(Element element : this.elements.values()) {
+
+			ElementDiff diffAtDate = element.getDiffAtDate(date);
+
+			if(diffAtDate == null || diffAtDate.getInverse() == null)
+				continue;
+
+			if(diffAtDate.getInverse().isDeleted())
+				deletionDiffs.add(diffAtDate.getInverse());
+			else
+				otherDiffs.add(diffAtDate.getInverse());
+		}
+
+		deletionDiffs.addAll(otherDiffs);
+
+		return deletionDiffs;
+	}
+
+	/**
+	 * Give the net changes of all elements between two time steps.
+	 * 
+	 * @param fromStep
+	 *            The first time step, or -1 to start from nothing.
+	 * @param toStep
+	 *            The second time step, or -1 to end with nothing.
+	 * @return The diffs leading from the first step to the second one, the
+	 *         deletion diffs coming first.
+	 */
+	public ArrayList<ElementDiff> getElementDiffsBetweenSteps(int fromStep, int toStep) {
+
+		// Get the real dates from the time step indices.
+
+		Integer fromDate = fromStep < 0 ? null : stepToDate(fromStep);
+		Integer toDate = toStep < 0 ? null : stepToDate(toStep);
+
+		//
+
+		ArrayList<ElementDiff> deletionDiffs = new ArrayList<ElementDiff>();
+		ArrayList<ElementDiff> otherDiffs = new ArrayList<ElementDiff>();
+
+		for(Element element : this.elements.values()) {
+
+			ElementDiff diff = element.getDiffBetweenDates(fromDate, toDate);
+
+			if(diff == null)
+				continue;
+
+			if(diff.isDeleted())
+				deletionDiffs.add(diff);
+			else
+				otherDiffs.add(diff);
+		}
+
+		deletionDiffs.addAll(otherDiffs);
+
+		return deletionDiffs;
+	}
+
 	/**
 	 * Give the list of elements deleted at a given time step.
 	 * 
@@ -767,4 +1501,80 @@ public abstract class GeoSource extends SourceBase {
 		return this.temporalLocator;
 	}
 
+	/**
+	 * Enable the cache of the imports. The results of the imports are stored
+	 * in the given directory and reused as long as the input files and the
+	 * configuration of the source do not change.
+	 * 
+	 * @param directory
+	 *            The path to the cache directory, or null to disable the cache.
+	 */
+	public void setCacheDirectory(String directory) {
+
+		this.cacheDirectory = directory == null ? null : new File(directory);
+	}
+
+	/**
+	 * Give the directory where the results of the imports are cached.
+	 * 
+	 * @return The cache directory, or null if the cache is disabled.
+	 */
+	public File getCacheDirectory() {
+
+		return this.cacheDirectory;
+	}
+
+	/**
+	 * Give the timers and counters of the import.
+	 * 
+	 * @return The metrics.
+	 */
+	public GeoSourceMetrics getMetrics() {
+
+		return this.metrics;
+	}
+
+	/**
+	 * Export the metrics of this source as an MBean on the platform MBean
+	 * server, under the ID of the source.
+	 */
+	public void exportMetrics() {
+
+		this.metrics.register(this.id);
+	}
+
+	/**
+	 * Give the record of the nodes and edges already sent to the sinks.
+	 *
+	 * @return The registry.
+	 */
+	public EmittedElementRegistry getEmittedElements() {
+
+		return this.emitted;
+	}
+
+	/**
+	 * Choose how the IDs of the edges are built: as a concatenation of the IDs
+	 * they come from (the default) or as compact numbers. This must be done
+	 * before the playback.
+	 * 
+	 * @param strategy
+	 *            The edge ID strategy.
+	 */
+	public void setEdgeIdStrategy(EdgeIdTable.Strategy strategy) {
+
+		this.edgeIds.setStrategy(strategy);
+	}
+
+	/**
+	 * Give the table of the edge IDs, which maps the compact IDs back to the
+	 * IDs of their element and nodes.
+	 * 
+	 * @return The edge ID table.
+	 */
+	public EdgeIdTable getEdgeIds() {
+
+		return this.edgeIds;
+	}
+
 }
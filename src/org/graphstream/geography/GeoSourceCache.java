@@ -0,0 +1,962 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.graphstream.geography.metrics.GeoSourceMetrics.Phase;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * An on-disk cache of the result of {@link GeoSource#read()}.
+ * 
+ * Once a source has read its input files, the elements, their diff chains
+ * (with the inverse diffs) and the dates are written to a compact binary file,
+ * followed by the arrays of the spatial index. The next time a source reads the
+ * same inputs with the same configuration, this file is memory-mapped and
+ * decoded instead of parsing and diffing the inputs again, and nothing has to
+ * be computed again: the spatial index gets back its entries and its structure
+ * as they were written.
+ * 
+ * The name of the cache file is a SHA-1 fingerprint of the content of the input
+ * files (including the companion files of the shapefiles), of the class of the
+ * source, of the temporal locator and of the configuration of the descriptors
+ * and attribute filters. Changing any of them leads to a new cache file, so
+ * outdated cache files are never used (but they are not deleted either).
+ * 
+ * Attribute values are stored with their type. Strings, numbers, booleans,
+ * dates and JTS geometries are stored directly, other serializable values are
+ * stored with Java serialization. If a value cannot be stored, the cache file
+ * is not written and the source simply reads its inputs again the next time.
+ * 
+ * @author Merwan Achibet
+ */
+public class GeoSourceCache {
+
+	/**
+	 * Marker of the beginning and of the end of a cache file.
+	 */
+	protected static final int MAGIC = 0x47534743;
+
+	/**
+	 * Version of the format, to be incremented each time it changes.
+	 */
+	protected static final int VERSION = 2;
+
+	/*
+	 * Type tags of the attribute values.
+	 */
+
+	protected static final byte NULL = 0;
+	protected static final byte STRING = 1;
+	protected static final byte INTEGER = 2;
+	protected static final byte LONG = 3;
+	protected static final byte DOUBLE = 4;
+	protected static final byte FLOAT = 5;
+	protected static final byte BOOLEAN = 6;
+	protected static final byte SHORT = 7;
+	protected static final byte BYTE = 8;
+	protected static final byte DATE = 9;
+	protected static final byte GEOMETRY = 10;
+	protected static final byte SERIALIZED = 11;
+
+	/*
+	 * Flags of the diffs.
+	 */
+
+	protected static final byte BASE_DIFF = 1;
+	protected static final byte DELETION_DIFF = 2;
+	protected static final byte SHAPE_DIFF = 4;
+
+	/*
+	 * References to the string table. A string is written in full the first
+	 * time it appears and then referenced by its index.
+	 */
+
+	protected static final int NULL_STRING = -1;
+	protected static final int NEW_STRING = -2;
+
+	/**
+	 * The source which import is cached.
+	 */
+	protected GeoSource source;
+
+	/**
+	 * The directory containing the cache files.
+	 */
+	protected File directory;
+
+	/**
+	 * The fingerprint of the inputs and of the configuration of the source.
+	 */
+	protected String key;
+
+	/**
+	 * The strings already written, associated with their index.
+	 */
+	protected HashMap<String, Integer> writtenStrings;
+
+	/**
+	 * The strings already read, in order of appearance.
+	 */
+	protected ArrayList<String> readStrings;
+
+	/**
+	 * Instantiate a new cache for a given source.
+	 * 
+	 * @param source
+	 *            The source.
+	 * @param directory
+	 *            The directory containing the cache files. It is created if
+	 *            necessary.
+	 */
+	public GeoSourceCache(GeoSource source, File directory) {
+
+		this.source = source;
+		this.directory = directory;
+	}
+
+	/**
+	 * Give the cache file associated with the current inputs and configuration
+	 * of the source.
+	 * 
+	 * @return The cache file (that may not exist yet).
+	 */
+	public File getFile() {
+
+		return new File(this.directory, getKey() + ".gsc");
+	}
+
+	/**
+	 * Give the fingerprint of the inputs and of the configuration of the
+	 * source.
+	 * 
+	 * @return The fingerprint, as an hexadecimal string.
+	 */
+	public String getKey() {
+
+		if(this.key == null)
+			this.key = computeKey();
+
+		return this.key;
+	}
+
+	/**
+	 * Compute the fingerprint of the inputs and of the configuration of the
+	 * source.
+	 * 
+	 * @return The fingerprint, as an hexadecimal string.
+	 */
+	protected String computeKey() {
+
+		MessageDigest digest;
+
+		try {
+
+			digest = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+
+			throw new RuntimeException("cannot compute the cache key : " + e.getMessage());
+		}
+
+		update(digest, "version " + VERSION);
+
+		// The source and the way it dates the elements.
+
+		update(digest, this.source.getClass().getName());
+
+		TemporalLocator temporalLocator = this.source.getTemporalLocator();
+
+		update(digest, temporalLocator.getClass().getName());
+
+		if(temporalLocator instanceof TemporalLocatorByAttribute)
+			update(digest, ((TemporalLocatorByAttribute)temporalLocator).attributeKey);
+
+		// The type of spatial index, which arrays are stored.
+
+		update(digest, "index " + (this.source.index == null ? null : this.source.index.getClass().getName()));
+
+		// The content of the input files.
+
+		for(String fileName : this.source.getFileNames()) {
+
+			updateWithFile(digest, fileName);
+
+			// The attributes of the shapefile features are stored in separate
+			// files.
+
+			if(fileName.toLowerCase().endsWith(".shp")) {
+
+				String baseName = fileName.substring(0, fileName.length() - 4);
+
+				updateWithFile(digest, baseName + ".dbf");
+				updateWithFile(digest, baseName + ".shx");
+			}
+		}
+
+		// The descriptors and filters attached to each input file.
+
+		for(FileDescriptor fileDescriptor : this.source.getFileDescriptors()) {
+
+			update(digest, "file " + this.source.getFileNames().indexOf(fileDescriptor.fileName));
+
+			for(ElementDescriptor descriptor : fileDescriptor.getDescriptors())
+				update(digest, describe(descriptor));
+		}
+
+		// Convert the fingerprint to hexadecimal.
+
+		StringBuilder hex = new StringBuilder();
+
+		for(byte b : digest.digest())
+			hex.append(String.format("%02x", b));
+
+		return hex.toString();
+	}
+
+	/**
+	 * Give a textual description of everything in a descriptor that influences
+	 * the result of an import.
+	 * 
+	 * @param descriptor
+	 *            The descriptor.
+	 * @return The description.
+	 */
+	protected String describe(ElementDescriptor descriptor) {
+
+		String s = new String();
+
+		s += "descriptor " + descriptor.category + " " + descriptor.mustBeType;
+
+		if(descriptor.mustHaveKeys != null)
+			s += " | must have " + descriptor.mustHaveKeys;
+
+		if(descriptor.mustHaveValues != null)
+			s += " | must have " + new TreeMap<String, Object>(descriptor.mustHaveValues);
+
+		if(descriptor.mustNotHaveKeys != null)
+			s += " | must not have " + descriptor.mustNotHaveKeys;
+
+		if(descriptor.mustNotHaveValues != null)
+			s += " | must not have " + new TreeMap<String, Object>(descriptor.mustNotHaveValues);
+
+		s += " | spatial index " + descriptor.toSpatialIndex;
+
+		AttributeFilter filter = descriptor.getAttributeFilter();
+
+		if(filter != null)
+			s += " | filter " + filter.mode + " " + filter.attributes;
+
+		return s;
+	}
+
+	protected void update(MessageDigest digest, String s) {
+
+		try {
+
+			digest.update(s.getBytes("UTF-8"));
+			digest.update((byte)0);
+		}
+		catch (IOException e) {
+
+			throw new RuntimeException("cannot compute the cache key : " + e.getMessage());
+		}
+	}
+
+	protected void updateWithFile(MessageDigest digest, String fileName) {
+
+		File file = new File(fileName);
+
+		if(!file.exists()) {
+
+			update(digest, "missing " + fileName);
+
+			return;
+		}
+
+		try {
+
+			InputStream in = new FileInputStream(file);
+
+			try {
+
+				byte[] buffer = new byte[1 << 16];
+
+				int count;
+
+				while((count = in.read(buffer)) > 0)
+					digest.update(buffer, 0, count);
+			}
+			finally {
+
+				in.close();
+			}
+		}
+		catch (IOException e) {
+
+			throw new RuntimeException("cannot compute the cache key : " + e.getMessage());
+		}
+
+		update(digest, "size " + file.length());
+	}
+
+	/**
+	 * Give the descriptors of the source, in a stable order. The elements
+	 * reference their descriptor by its index in this list.
+	 * 
+	 * @return The descriptors.
+	 */
+	protected List<ElementDescriptor> getDescriptors() {
+
+		List<ElementDescriptor> descriptors = new ArrayList<ElementDescriptor>();
+
+		IdentityHashMap<ElementDescriptor, Boolean> seen = new IdentityHashMap<ElementDescriptor, Boolean>();
+
+		for(FileDescriptor fileDescriptor : this.source.getFileDescriptors())
+			for(ElementDescriptor descriptor : fileDescriptor.getDescriptors())
+				if(seen.put(descriptor, Boolean.TRUE) == null)
+					descriptors.add(descriptor);
+
+		return descriptors;
+	}
+
+	/**
+	 * Load the result of a previous import into the source, if the cache file
+	 * exists.
+	 * 
+	 * @return True if the cache has been loaded, false if the source must read
+	 *         its inputs.
+	 */
+	public boolean load() {
+
+		File file = getFile();
+
+		if(!file.exists())
+			return false;
+
+		long start = this.source.metrics.start();
+
+		try {
+
+			loadFile(file);
+		}
+		catch (Exception e) {
+
+			this.source.metrics.warning("cannot load cache %s : %s", file, e);
+
+			return false;
+		}
+
+		this.source.metrics.stop(Phase.CACHE_LOAD, start);
+
+		this.source.metrics.info("import loaded from cache %s", file);
+
+		return true;
+	}
+
+	/**
+	 * Write the result of the import of the source to the cache file.
+	 * 
+	 * @return True if the cache file has been written, false otherwise.
+	 */
+	public boolean store() {
+
+		File file = getFile();
+		File temporaryFile = new File(this.directory, getKey() + ".tmp");
+
+		long start = this.source.metrics.start();
+
+		try {
+
+			if(!this.directory.exists())
+				this.directory.mkdirs();
+
+			storeFile(temporaryFile);
+
+			// Only give the file its final name once it is complete, so that a
+			// partially written file is never loaded.
+
+			file.delete();
+
+			if(!temporaryFile.renameTo(file))
+				throw new IOException("cannot rename " + temporaryFile);
+		}
+		catch (IOException e) {
+
+			temporaryFile.delete();
+
+			this.source.metrics.warning("cannot write cache %s : %s", file, e.getMessage());
+
+			return false;
+		}
+
+		this.source.metrics.stop(Phase.CACHE_STORE, start);
+
+		return true;
+	}
+
+	/**
+	 * Decode a cache file into the source.
+	 * 
+	 * The file is entirely decoded before the source is modified, so that a
+	 * corrupted file leaves the source untouched.
+	 * 
+	 * @param file
+	 *            The cache file.
+	 * @throws IOException
+	 */
+	protected void loadFile(File file) throws IOException {
+
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+		MappedByteBuffer in;
+
+		try {
+
+			FileChannel channel = randomAccessFile.getChannel();
+
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally {
+
+			randomAccessFile.close();
+		}
+
+		this.readStrings = new ArrayList<String>();
+
+		if(in.getInt() != MAGIC || in.getInt() != VERSION)
+			throw new IOException("not a cache file");
+
+		// Descriptors.
+
+		List<ElementDescriptor> descriptors = getDescriptors();
+
+		if(in.getInt() != descriptors.size())
+			throw new IOException("the descriptors do not match");
+
+		// Dates.
+
+		ArrayList<Integer> dates = new ArrayList<Integer>();
+
+		for(int i = 0, l = in.getInt(); i < l; ++i)
+			dates.add(in.getInt());
+
+		// Elements.
+
+		int elementCount = in.getInt();
+
+		HashMap<String, Element> elements = new HashMap<String, Element>(elementCount * 4 / 3 + 1);
+
+		// The spatial index references the elements by their position.
+
+		Element[] elementsByIndex = new Element[elementCount];
+
+		for(int i = 0; i < elementCount; ++i) {
+
+			Element element = new Element(readString(in));
+
+			int descriptorIndex = in.getInt();
+
+			if(descriptorIndex >= 0)
+				element.setDescriptorUsed(descriptors.get(descriptorIndex));
+
+			for(int j = 0, l = in.getInt(); j < l; ++j) {
+
+				int date = in.getInt();
+
+				ElementDiff diff = readDiff(in, element);
+
+				if(in.get() != 0)
+					diff.setInverse(readDiff(in, element));
+
+				element.addDiffAtDate(diff, date);
+			}
+
+			elements.put(element.id, element);
+
+			elementsByIndex[i] = element;
+		}
+
+		// Spatial index. It is only modified once decoded, and the end of the
+		// file is checked first so that a truncated file leaves it untouched.
+
+		if((in.get() != 0) != (this.source.index != null))
+			throw new IOException("the spatial index does not match");
+
+		if(in.getInt(in.limit() - 4) != MAGIC)
+			throw new IOException("truncated cache file");
+
+		if(this.source.index != null)
+			this.source.index.readFrom(in, elementsByIndex);
+
+		if(in.getInt() != MAGIC)
+			throw new IOException("truncated cache file");
+
+		this.readStrings = null;
+
+		// Everything was decoded, transfer the import to the source.
+
+		this.source.elements.putAll(elements);
+		this.source.dates.addAll(dates);
+
+		if(this.source.index != null)
+			this.source.publishSpatialIndexSnapshot();
+	}
+
+	protected ElementDiff readDiff(MappedByteBuffer in, Element element) throws IOException {
+
+		byte flags = in.get();
+
+		ElementDiff diff = new ElementDiff(element, (flags & BASE_DIFF) != 0);
+
+		if((flags & DELETION_DIFF) != 0)
+			diff.setDeleted();
+
+		// Attributes.
+
+		int changedCount = in.getInt();
+
+		for(int i = 0; i < changedCount; ++i) {
+
+			String key = readString(in);
+
+			diff.addChangedAttribute(key, readValue(in));
+		}
+
+		int removedCount = in.getInt();
+
+		for(int i = 0; i < removedCount; ++i)
+			diff.addRemovedAttribute(readString(in));
+
+		// Shape.
+
+		if((flags & SHAPE_DIFF) != 0) {
+
+			ElementShape.Type type = ElementShape.Type.values()[in.get()];
+
+			if(type == ElementShape.Type.POINT) {
+
+				Point point = new Point(element);
+
+				point.setPosition(in.getDouble(), in.getDouble());
+
+				diff.setShape(point);
+			}
+			else {
+
+				Line line = type == ElementShape.Type.POLYGON ? new Polygon(element) : new Line(element);
+
+				for(int i = 0, l = in.getInt(); i < l; ++i) {
+
+					String id = readString(in);
+
+					line.addVertex(id, in.getDouble(), in.getDouble());
+				}
+
+				diff.setShape(line);
+			}
+		}
+
+		return diff;
+	}
+
+	protected String readString(MappedByteBuffer in) throws IOException {
+
+		int index = in.getInt();
+
+		if(index == NULL_STRING)
+			return null;
+
+		if(index == NEW_STRING) {
+
+			byte[] bytes = new byte[in.getInt()];
+
+			in.get(bytes);
+
+			String s = new String(bytes, "UTF-8");
+
+			this.readStrings.add(s);
+
+			return s;
+		}
+
+		return this.readStrings.get(index);
+	}
+
+	protected Object readValue(MappedByteBuffer in) throws IOException {
+
+		byte type = in.get();
+
+		switch(type) {
+		case NULL:
+			return null;
+		case STRING:
+			return readString(in);
+		case INTEGER:
+			return in.getInt();
+		case LONG:
+			return in.getLong();
+		case DOUBLE:
+			return in.getDouble();
+		case FLOAT:
+			return in.getFloat();
+		case BOOLEAN:
+			return in.get() != 0;
+		case SHORT:
+			return in.getShort();
+		case BYTE:
+			return in.get();
+		case DATE:
+			return new Date(in.getLong());
+		}
+
+		byte[] bytes = new byte[in.getInt()];
+
+		in.get(bytes);
+
+		if(type == GEOMETRY) {
+
+			try {
+
+				return new WKBReader().read(bytes);
+			}
+			catch (ParseException e) {
+
+				throw new IOException("bad geometry : " + e.getMessage());
+			}
+		}
+
+		if(type == SERIALIZED) {
+
+			ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+
+			try {
+
+				return objectIn.readObject();
+			}
+			catch (ClassNotFoundException e) {
+
+				throw new IOException("unknown class : " + e.getMessage());
+			}
+			finally {
+
+				objectIn.close();
+			}
+		}
+
+		throw new IOException("unknown value type " + type);
+	}
+
+	/**
+	 * Encode the import of the source into a cache file.
+	 * 
+	 * @param file
+	 *            The cache file.
+	 * @throws IOException
+	 */
+	protected void storeFile(File file) throws IOException {
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+
+		this.writtenStrings = new HashMap<String, Integer>();
+
+		try {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+
+			// Descriptors.
+
+			List<ElementDescriptor> descriptors = getDescriptors();
+
+			out.writeInt(descriptors.size());
+
+			// Dates.
+
+			out.writeInt(this.source.dates.size());
+
+			for(Integer date : this.source.dates)
+				out.writeInt(date);
+
+			// Elements.
+
+			out.writeInt(this.source.elements.size());
+
+			IdentityHashMap<Element, Integer> elementIndices = new IdentityHashMap<Element, Integer>();
+
+			for(Element element : this.source.elements.values()) {
+
+				elementIndices.put(element, elementIndices.size());
+
+				writeString(out, element.id);
+
+				out.writeInt(descriptors.indexOf(element.getDescriptorUsed()));
+
+				out.writeInt(element.getDiffs().size());
+
+				for(Entry<Integer, ElementDiff> dateDiffPair : element.getDiffs().entrySet()) {
+
+					out.writeInt(dateDiffPair.getKey());
+
+					ElementDiff diff = dateDiffPair.getValue();
+
+					writeDiff(out, diff);
+
+					// The inverse diff, which is null if the diff changes
+					// nothing.
+
+					out.writeBoolean(diff.getInverse() != null);
+
+					if(diff.getInverse() != null)
+						writeDiff(out, diff.getInverse());
+				}
+			}
+
+			// Spatial index.
+
+			out.writeBoolean(this.source.index != null);
+
+			if(this.source.index != null)
+				this.source.index.writeTo(out, elementIndices);
+
+			out.writeInt(MAGIC);
+		}
+		finally {
+
+			this.writtenStrings = null;
+
+			out.close();
+		}
+	}
+
+	protected void writeDiff(DataOutputStream out, ElementDiff diff) throws IOException {
+
+		byte flags = 0;
+
+		if(diff.isBase())
+			flags |= BASE_DIFF;
+
+		if(diff.isDeleted())
+			flags |= DELETION_DIFF;
+
+		if(diff.getShape() != null)
+			flags |= SHAPE_DIFF;
+
+		out.writeByte(flags);
+
+		// Attributes.
+
+		HashMap<String, Object> changedAttributes = diff.getChangedAttributes();
+
+		out.writeInt(changedAttributes == null ? 0 : changedAttributes.size());
+
+		if(changedAttributes != null)
+			for(Entry<String, Object> keyValue : changedAttributes.entrySet()) {
+
+				writeString(out, keyValue.getKey());
+
+				writeValue(out, keyValue.getValue());
+			}
+
+		ArrayList<String> removedAttributes = diff.getRemovedAttributes();
+
+		out.writeInt(removedAttributes == null ? 0 : removedAttributes.size());
+
+		if(removedAttributes != null)
+			for(String key : removedAttributes)
+				writeString(out, key);
+
+		// Shape.
+
+		ElementShape shape = diff.getShape();
+
+		if(shape != null) {
+
+			out.writeByte(shape.getType().ordinal());
+
+			if(shape.isPoint()) {
+
+				Point point = (Point)shape;
+
+				out.writeDouble(point.getX());
+				out.writeDouble(point.getY());
+			}
+			else {
+
+				ArrayList<Vertex> vertices = ((Line)shape).getVertices();
+
+				out.writeInt(vertices.size());
+
+				for(Vertex vertex : vertices) {
+
+					writeString(out, vertex.id);
+
+					out.writeDouble(vertex.getX());
+					out.writeDouble(vertex.getY());
+				}
+			}
+		}
+	}
+
+	protected void writeString(DataOutputStream out, String s) throws IOException {
+
+		if(s == null) {
+
+			out.writeInt(NULL_STRING);
+
+			return;
+		}
+
+		Integer index = this.writtenStrings.get(s);
+
+		if(index != null) {
+
+			out.writeInt(index);
+
+			return;
+		}
+
+		this.writtenStrings.put(s, this.writtenStrings.size());
+
+		byte[] bytes = s.getBytes("UTF-8");
+
+		out.writeInt(NEW_STRING);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	protected void writeValue(DataOutputStream out, Object value) throws IOException {
+
+		if(value == null) {
+
+			out.writeByte(NULL);
+		}
+		else if(value instanceof String) {
+
+			out.writeByte(STRING);
+			writeString(out, (String)value);
+		}
+		else if(value instanceof Integer) {
+
+			out.writeByte(INTEGER);
+			out.writeInt((Integer)value);
+		}
+		else if(value instanceof Long) {
+
+			out.writeByte(LONG);
+			out.writeLong((Long)value);
+		}
+		else if(value instanceof Double) {
+
+			out.writeByte(DOUBLE);
+			out.writeDouble((Double)value);
+		}
+		else if(value instanceof Float) {
+
+			out.writeByte(FLOAT);
+			out.writeFloat((Float)value);
+		}
+		else if(value instanceof Boolean) {
+
+			out.writeByte(BOOLEAN);
+			out.writeByte((Boolean)value ? 1 : 0);
+		}
+		else if(value instanceof Short) {
+
+			out.writeByte(SHORT);
+			out.writeShort((Short)value);
+		}
+		else if(value instanceof Byte) {
+
+			out.writeByte(BYTE);
+			out.writeByte((Byte)value);
+		}
+		else if(value.getClass() == Date.class) {
+
+			out.writeByte(DATE);
+			out.writeLong(((Date)value).getTime());
+		}
+		else if(value instanceof Geometry) {
+
+			byte[] bytes = new WKBWriter().write((Geometry)value);
+
+			out.writeByte(GEOMETRY);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		else if(value instanceof Serializable) {
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+			ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+			objectOut.writeObject(value);
+			objectOut.close();
+
+			out.writeByte(SERIALIZED);
+			out.writeInt(bytes.size());
+			bytes.writeTo(out);
+		}
+		else {
+
+			throw new IOException("cannot store an attribute value of type " + value.getClass().getName());
+		}
+	}
+
+}
@@ -32,9 +32,6 @@
 package org.graphstream.geography;
 
 import java.util.ArrayList;
-import java.util.List;
-
-import org.graphstream.geography.index.SpatialIndexPoint;
 
 /**
  * A Line.
@@ -173,18 +170,21 @@ public class Line extends ElementShape {
 	}
 
 	@Override
-	public List<SpatialIndexPoint> toSpatialIndexPoints() {
+	public int getPointCount() {
 
-		List<SpatialIndexPoint> spatialIndexPoints = new ArrayList<SpatialIndexPoint>();
+		return this.vertices.size();
+	}
 
-		for(Vertex vertex : this.vertices) {
+	@Override
+	public double getPointX(int i) {
 
-			SpatialIndexPoint spatialIndexPoint = new SpatialIndexPoint(this, vertex.getId(), vertex.getPosition().x, vertex.getPosition().y);
+		return this.vertices.get(i).getX();
+	}
 
-			spatialIndexPoints.add(spatialIndexPoint);
-		}
+	@Override
+	public double getPointY(int i) {
 
-		return spatialIndexPoints;
+		return this.vertices.get(i).getY();
 	}
 
 }
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pipelined playback of the time steps of a geo source.
+ * 
+ * A producer thread prepares the events of the next time steps (diff lookup,
+ * rebuilding of the element views, neighborhood and topology computations...)
+ * while the calling thread sends the events of the current time step to the
+ * sinks. The prepared steps wait in a bounded queue: the producer stops when
+ * the queue is full, so it never gets more than a few steps ahead.
+ * 
+ * Only the producer thread works on the state of the source once the playback
+ * has started, so the source must not be used directly (next(), seek(), ...)
+ * until the playback is over or closed. Closing the playback brings the state
+ * of the source back to the time step of the sinks, so that it can be played
+ * directly again from there. The sinks only receive events from the thread
+ * calling {@link #next()}.
+ * 
+ * <pre>
+ * source.read();
+ * 
+ * PipelinedPlayback playback = new PipelinedPlayback(source, 2);
+ * 
+ * while(playback.next())
+ * 	...
+ * </pre>
+ * 
+ * @author Merwan Achibet
+ */
+public class PipelinedPlayback {
+
+	/**
+	 * The played source.
+	 */
+	protected GeoSource source;
+
+	/**
+	 * The prepared time steps, waiting to be sent to the sinks.
+	 */
+	protected ArrayBlockingQueue<EventBatch> queue;
+
+	/**
+	 * The thread preparing the time steps.
+	 */
+	protected Thread producer;
+
+	/**
+	 * The time step which events were sent last, or -1 if none.
+	 */
+	protected int currentStep;
+
+	/**
+	 * Did the producer fail?
+	 */
+	protected boolean failed;
+
+	/**
+	 * Is the playback over?
+	 */
+	protected boolean over;
+
+	/**
+	 * Instantiate a new pipelined playback, starting at the next time step of
+	 * the source.
+	 * 
+	 * @param source
+	 *            The source, already read.
+	 * @param capacity
+	 *            The maximum number of time steps prepared in advance.
+	 */
+	public PipelinedPlayback(GeoSource source, int capacity) {
+
+		this.source = source;
+
+		this.queue = new ArrayBlockingQueue<EventBatch>(capacity);
+
+		this.currentStep = source.currentTimeStep - 1;
+	}
+
+	/**
+	 * Send the events of the next time step to the sinks of the source.
+	 * 
+	 * The producer thread is started by the first call.
+	 * 
+	 * @return True if there are time steps left to be played, false otherwise.
+	 */
+	public boolean next() {
+
+		if(this.over)
+			return false;
+
+		if(this.producer == null)
+			start();
+
+		EventBatch batch;
+
+		try {
+
+			batch = this.queue.take();
+		}
+		catch (InterruptedException e) {
+
+			close();
+
+			// Keep the interrupt status for the caller, once the producer is
+			// joined.
+
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException("pipelined playback interrupted");
+		}
+
+		if(batch.failure != null) {
+
+			this.over = true;
+
+			this.failed = true;
+
+			// Throw the failure of the producer in the calling thread.
+
+			if(batch.failure instanceof RuntimeException)
+				throw (RuntimeException)batch.failure;
+
+			if(batch.failure instanceof Error)
+				throw (Error)batch.failure;
+
+			throw new RuntimeException(batch.failure);
+		}
+
+		batch.replay(this.source);
+
+		this.source.flush();
+
+		this.currentStep = batch.getStep();
+
+		if(batch.isLast())
+			this.over = true;
+
+		return !this.over;
+	}
+
+	/**
+	 * Play all the remaining time steps.
+	 */
+	public void end() {
+
+		while(next()) {
+
+		}
+	}
+
+	/**
+	 * Give the time step which events were sent last.
+	 * 
+	 * @return The time step, or -1 if none was played yet (by the playback or
+	 *         directly by the source before it).
+	 */
+	public int getCurrentStep() {
+
+		return this.currentStep;
+	}
+
+	/**
+	 * Stop the producer thread. The time steps already prepared are dropped
+	 * and the source is brought back to the time step of the sinks, without
+	 * sending them any event. After a failure of the producer, the state of
+	 * the source is left as is.
+	 */
+	public void close() {
+
+		this.over = true;
+
+		if(this.producer != null) {
+
+			this.producer.interrupt();
+
+			try {
+
+				this.producer.join();
+			}
+			catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		this.queue.clear();
+
+		// The producer may be a few steps ahead of the sinks: undo these steps
+		// in the source only, the sinks never received them.
+
+		if(this.producer != null && !this.producer.isAlive() && !this.failed)
+			this.source.recordSeek(this.currentStep, new EventBatch(this.currentStep));
+	}
+
+	/**
+	 * Start the producer thread.
+	 */
+	protected void start() {
+
+		this.producer = new Thread(new Runnable() {
+
+			public void run() {
+
+				produce();
+			}
+
+		}, "pipelined playback of " + this.source.id);
+
+		this.producer.setDaemon(true);
+
+		this.producer.start();
+	}
+
+	/**
+	 * Prepare the time steps one after the other until the last one, or until
+	 * the producer is interrupted.
+	 */
+	protected void produce() {
+
+		try {
+
+			boolean more = true;
+
+			while(more && !Thread.currentThread().isInterrupted()) {
+
+				EventBatch batch = new EventBatch(this.source.currentTimeStep);
+
+				try {
+
+					more = this.source.recordNext(batch);
+				}
+				catch (Throwable e) {
+
+					// Hand any failure, errors included, over to the calling
+					// thread so that it does not wait for a step that never
+					// comes.
+
+					batch.failure = e;
+
+					more = false;
+				}
+
+				batch.last = !more;
+
+				this.queue.put(batch);
+			}
+		}
+		catch (InterruptedException e) {
+
+			// The playback was closed.
+		}
+	}
+
+}
@@ -31,11 +31,6 @@
 
 package org.graphstream.geography;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.graphstream.geography.index.SpatialIndexPoint;
-
 import com.vividsolutions.jts.geom.Coordinate;
 
 /**
@@ -138,13 +133,22 @@ public class Point extends ElementShape {
 		return s;
 	}
 
-	public List<SpatialIndexPoint> toSpatialIndexPoints() {
+	@Override
+	public int getPointCount() {
 
-		List<SpatialIndexPoint> spatialIndexPoints = new ArrayList<SpatialIndexPoint>();
+		return 1;
+	}
 
-		spatialIndexPoints.add(new SpatialIndexPoint(this, this.getElementId()+Math.random(), this.position.x, this.position.y));
+	@Override
+	public double getPointX(int i) {
 
-		return spatialIndexPoints;
+		return this.position.x;
+	}
+
+	@Override
+	public double getPointY(int i) {
+
+		return this.position.y;
 	}
 
 }
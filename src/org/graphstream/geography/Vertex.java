@@ -146,10 +146,7 @@ public class Vertex {
 	 */
 	public String getId() {
 
-		if(this.id == null)
-			return null;
-		
-		return new String(this.id);
+		return this.id;
 	}
 
 	@Override
@@ -0,0 +1,474 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.generator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+
+/**
+ * A minimal writer of ESRI shapefiles (.shp, .shx and .dbf files).
+ * 
+ * Only the shape types needed by the synthetic data generator (points, lines
+ * and polygons without Z or M values) and the character and numeric attribute
+ * types are supported. Records are streamed to the disk so that files with
+ * millions of features can be written, the headers (which contain the file
+ * lengths, the bounding box and the number of records) are written once the
+ * writer is closed.
+ * 
+ * @author Merwan Achibet
+ */
+public class ShapefileWriter {
+
+	/**
+	 * Shape type codes defined by the shapefile specification.
+	 */
+	public static final int POINT = 1;
+	public static final int POLYLINE = 3;
+	public static final int POLYGON = 5;
+
+	/**
+	 * The path of the files, without extension.
+	 */
+	protected String basePath;
+
+	/**
+	 * The shape type of all the records.
+	 */
+	protected int shapeType;
+
+	/**
+	 * Streams to the three files.
+	 */
+	protected DataOutputStream shp, shx, dbf;
+
+	/**
+	 * The names of the attribute fields.
+	 */
+	protected ArrayList<String> fieldNames;
+
+	/**
+	 * The types of the attribute fields ('C' or 'N').
+	 */
+	protected ArrayList<Character> fieldTypes;
+
+	/**
+	 * The lengths of the attribute fields.
+	 */
+	protected ArrayList<Integer> fieldLengths;
+
+	/**
+	 * The number of written records.
+	 */
+	protected int recordCount;
+
+	/**
+	 * The current length of the .shp file, in 16-bit words.
+	 */
+	protected int shpLength;
+
+	/**
+	 * The bounding box of all the written shapes.
+	 */
+	protected double minX, minY, maxX, maxY;
+
+	/**
+	 * Instantiate a new writer.
+	 * 
+	 * The attribute fields must be declared with {@link #addField(String, char,
+	 * int)} before the first record is written.
+	 * 
+	 * @param basePath
+	 *            The path of the files, without extension.
+	 * @param shapeType
+	 *            POINT, POLYLINE or POLYGON.
+	 */
+	public ShapefileWriter(String basePath, int shapeType) {
+
+		this.basePath = basePath;
+		this.shapeType = shapeType;
+
+		this.fieldNames = new ArrayList<String>();
+		this.fieldTypes = new ArrayList<Character>();
+		this.fieldLengths = new ArrayList<Integer>();
+
+		this.minX = this.minY = Double.POSITIVE_INFINITY;
+		this.maxX = this.maxY = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Declare an attribute field.
+	 * 
+	 * @param name
+	 *            The name of the field (at most 10 characters).
+	 * @param type
+	 *            'C' for a character field, 'N' for an integer field.
+	 * @param length
+	 *            The width of the field.
+	 */
+	public void addField(String name, char type, int length) {
+
+		if(this.shp != null)
+			throw new IllegalStateException("fields must be declared before the first record");
+
+		if(name.length() > 10)
+			throw new IllegalArgumentException("field name too long : " + name);
+
+		this.fieldNames.add(name);
+		this.fieldTypes.add(type);
+		this.fieldLengths.add(length);
+	}
+
+	/**
+	 * Write a record.
+	 * 
+	 * @param xs
+	 *            The x-axis coordinates of the vertices.
+	 * @param ys
+	 *            The y-axis coordinates of the vertices.
+	 * @param n
+	 *            The number of vertices (1 for a point, the first vertex must
+	 *            be repeated at the end of a polygon).
+	 * @param values
+	 *            The attribute values, in the order of declaration of the
+	 *            fields.
+	 * @throws IOException
+	 */
+	public void write(double[] xs, double[] ys, int n, Object... values) throws IOException {
+
+		if(this.shp == null)
+			open();
+
+		// Content length in bytes.
+
+		int contentLength = this.shapeType == POINT ? 20 : 4 + 32 + 4 + 4 + 4 + 16 * n;
+
+		// Index entry.
+
+		this.shx.writeInt(this.shpLength);
+		this.shx.writeInt(contentLength / 2);
+
+		// Record header.
+
+		this.shp.writeInt(this.recordCount + 1);
+		this.shp.writeInt(contentLength / 2);
+
+		// Record content.
+
+		writeIntLE(this.shp, this.shapeType);
+
+		if(this.shapeType == POINT) {
+
+			writeDoubleLE(this.shp, xs[0]);
+			writeDoubleLE(this.shp, ys[0]);
+
+			expand(xs[0], ys[0]);
+		}
+		else {
+
+			double recMinX = Double.POSITIVE_INFINITY, recMinY = Double.POSITIVE_INFINITY;
+			double recMaxX = Double.NEGATIVE_INFINITY, recMaxY = Double.NEGATIVE_INFINITY;
+
+			for(int i = 0; i < n; ++i) {
+
+				recMinX = Math.min(recMinX, xs[i]);
+				recMinY = Math.min(recMinY, ys[i]);
+				recMaxX = Math.max(recMaxX, xs[i]);
+				recMaxY = Math.max(recMaxY, ys[i]);
+			}
+
+			writeDoubleLE(this.shp, recMinX);
+			writeDoubleLE(this.shp, recMinY);
+			writeDoubleLE(this.shp, recMaxX);
+			writeDoubleLE(this.shp, recMaxY);
+
+			// A single part starting at the first point.
+
+			writeIntLE(this.shp, 1);
+			writeIntLE(this.shp, n);
+			writeIntLE(this.shp, 0);
+
+			for(int i = 0; i < n; ++i) {
+
+				writeDoubleLE(this.shp, xs[i]);
+				writeDoubleLE(this.shp, ys[i]);
+			}
+
+			expand(recMinX, recMinY);
+			expand(recMaxX, recMaxY);
+		}
+
+		this.shpLength += 4 + contentLength / 2;
+
+		// Attributes, preceded by the deletion flag.
+
+		this.dbf.writeByte(' ');
+
+		for(int i = 0; i < this.fieldNames.size(); ++i) {
+
+			String value = values[i] == null ? "" : values[i].toString();
+			int length = this.fieldLengths.get(i);
+
+			if(value.length() > length)
+				value = value.substring(0, length);
+
+			// Characters are left-justified, numbers are right-justified.
+
+			if(this.fieldTypes.get(i) == 'C') {
+
+				this.dbf.writeBytes(value);
+				pad(this.dbf, length - value.length());
+			}
+			else {
+
+				pad(this.dbf, length - value.length());
+				this.dbf.writeBytes(value);
+			}
+		}
+
+		++this.recordCount;
+	}
+
+	/**
+	 * Give the number of written records.
+	 * 
+	 * @return The number of records.
+	 */
+	public int getRecordCount() {
+
+		return this.recordCount;
+	}
+
+	/**
+	 * Write the headers and close the files.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+
+		if(this.shp == null)
+			open();
+
+		this.dbf.writeByte(0x1A);
+
+		this.shp.close();
+		this.shx.close();
+		this.dbf.close();
+
+		if(this.recordCount == 0)
+			this.minX = this.minY = this.maxX = this.maxY = 0;
+
+		writeMainHeader(this.basePath + ".shp", this.shpLength);
+		writeMainHeader(this.basePath + ".shx", 50 + 4 * this.recordCount);
+
+		writeDbfHeader();
+	}
+
+	/**
+	 * Open the three files and reserve the room for their headers.
+	 * 
+	 * @throws IOException
+	 */
+	protected void open() throws IOException {
+
+		this.shp = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.basePath + ".shp"), 1 << 16));
+		this.shx = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.basePath + ".shx"), 1 << 16));
+		this.dbf = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.basePath + ".dbf"), 1 << 16));
+
+		this.shp.write(new byte[100]);
+		this.shx.write(new byte[100]);
+		this.dbf.write(new byte[dbfHeaderLength()]);
+
+		this.shpLength = 50;
+	}
+
+	/**
+	 * Write the 100 bytes header of a .shp or .shx file.
+	 * 
+	 * @param path
+	 *            The path to the file.
+	 * @param length
+	 *            The length of the file in 16-bit words.
+	 * @throws IOException
+	 */
+	protected void writeMainHeader(String path, int length) throws IOException {
+
+		RandomAccessFile file = new RandomAccessFile(path, "rw");
+
+		try {
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(100);
+			DataOutputStream header = new DataOutputStream(bytes);
+
+			header.writeInt(9994);
+
+			for(int i = 0; i < 5; ++i)
+				header.writeInt(0);
+
+			header.writeInt(length);
+
+			writeIntLE(header, 1000);
+			writeIntLE(header, this.shapeType);
+
+			writeDoubleLE(header, this.minX);
+			writeDoubleLE(header, this.minY);
+			writeDoubleLE(header, this.maxX);
+			writeDoubleLE(header, this.maxY);
+
+			for(int i = 0; i < 4; ++i)
+				writeDoubleLE(header, 0);
+
+			header.flush();
+
+			file.seek(0);
+			file.write(bytes.toByteArray());
+		}
+		finally {
+
+			file.close();
+		}
+	}
+
+	/**
+	 * Write the header and the field descriptors of the .dbf file.
+	 * 
+	 * @throws IOException
+	 */
+	protected void writeDbfHeader() throws IOException {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(bytes);
+
+		int recordLength = 1;
+		for(Integer length : this.fieldLengths)
+			recordLength += length;
+
+		// Version and a fixed date (so that the output is deterministic).
+
+		header.writeByte(0x03);
+		header.writeByte(112);
+		header.writeByte(1);
+		header.writeByte(1);
+
+		writeIntLE(header, this.recordCount);
+		writeShortLE(header, dbfHeaderLength());
+		writeShortLE(header, recordLength);
+
+		pad(header, 20, 0);
+
+		for(int i = 0; i < this.fieldNames.size(); ++i) {
+
+			String name = this.fieldNames.get(i);
+
+			header.writeBytes(name);
+			pad(header, 11 - name.length(), 0);
+
+			header.writeByte(this.fieldTypes.get(i));
+
+			pad(header, 4, 0);
+
+			header.writeByte(this.fieldLengths.get(i));
+			header.writeByte(0);
+
+			pad(header, 14, 0);
+		}
+
+		header.writeByte(0x0D);
+
+		header.flush();
+
+		RandomAccessFile file = new RandomAccessFile(this.basePath + ".dbf", "rw");
+
+		try {
+
+			file.seek(0);
+			file.write(bytes.toByteArray());
+		}
+		finally {
+
+			file.close();
+		}
+	}
+
+	/**
+	 * Give the length of the header of the .dbf file.
+	 * 
+	 * @return The length in bytes.
+	 */
+	protected int dbfHeaderLength() {
+
+		return 32 + 32 * this.fieldNames.size() + 1;
+	}
+
+	/**
+	 * Grow the bounding box so that it contains a given position.
+	 */
+	protected void expand(double x, double y) {
+
+		this.minX = Math.min(this.minX, x);
+		this.minY = Math.min(this.minY, y);
+		this.maxX = Math.max(this.maxX, x);
+		this.maxY = Math.max(this.maxY, y);
+	}
+
+	protected static void pad(DataOutputStream out, int n) throws IOException {
+
+		pad(out, n, ' ');
+	}
+
+	protected static void pad(DataOutputStream out, int n, int b) throws IOException {
+
+		for(int i = 0; i < n; ++i)
+			out.writeByte(b);
+	}
+
+	protected static void writeShortLE(DataOutputStream out, int v) throws IOException {
+
+		out.writeByte(v & 0xFF);
+		out.writeByte((v >>> 8) & 0xFF);
+	}
+
+	protected static void writeIntLE(DataOutputStream out, int v) throws IOException {
+
+		out.writeInt(Integer.reverseBytes(v));
+	}
+
+	protected static void writeDoubleLE(DataOutputStream out, double v) throws IOException {
+
+		out.writeLong(Long.reverseBytes(Double.doubleToLongBits(v)));
+	}
+
+}
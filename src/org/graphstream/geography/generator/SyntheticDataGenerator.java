@@ -0,0 +1,784 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.generator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * A deterministic generator of synthetic geographic data sets, used to load
+ * test the import and playback of large inputs.
+ * 
+ * The generated city is a regular grid of roads. Each block of road between two
+ * intersections is a way with an intermediate shape point. Buildings are
+ * rectangles randomly scattered over the city. Several snapshots of the city
+ * can be produced: between two snapshots, a given proportion (the churn rate)
+ * of the buildings and of the roads are changed. A change is either the
+ * removal of a feature, the addition of a feature, a move (of a building or of
+ * the shape point of a road) or the modification of a tag.
+ * 
+ * The same data can be written as OpenStreetMap XML files (one per snapshot,
+ * readable by the OSM sources) or as shapefiles (a Navteq-like pair of Z-level
+ * points and streets, plus the building footprints). Two runs with the same
+ * parameters and seed produce exactly the same files.
+ * 
+ * Note that GeoTools derives the ID of a shapefile feature from its row, so the
+ * identity of the features across the shapefile snapshots is only carried by
+ * their LINK_ID and ID attributes.
+ * 
+ * Files are written as a stream and the state of the city is kept in primitive
+ * arrays, so that data sets of tens of millions of features can be generated.
+ * 
+ * @author Merwan Achibet
+ */
+public class SyntheticDataGenerator {
+
+	/**
+	 * Values of the "highway" tag given to the roads.
+	 */
+	protected static final String[] ROAD_TYPES = {
+			"residential", "secondary", "primary", "tertiary", "service"
+	};
+
+	/**
+	 * The number of intersections on each side of the road grid.
+	 */
+	protected int side;
+
+	/**
+	 * The number of buildings in the first snapshot.
+	 */
+	protected int initialBuildings;
+
+	/**
+	 * The number of snapshots.
+	 */
+	protected int snapshots;
+
+	/**
+	 * The proportion of features changed between two snapshots.
+	 */
+	protected double churn;
+
+	/**
+	 * The seed of the random generator.
+	 */
+	protected long seed;
+
+	/**
+	 * Position of the first intersection and distance between two
+	 * intersections (in degrees by default, so that the data looks like
+	 * longitude/latitude coordinates).
+	 */
+	protected double originX = 0.1, originY = 49.49, spacing = 0.001;
+
+	/**
+	 * The random generator driving the evolution of the city.
+	 */
+	protected Random random;
+
+	/**
+	 * The number of road segments.
+	 */
+	protected int segmentCount;
+
+	/**
+	 * Position of the shape point of each road segment.
+	 */
+	protected double[] shapeX, shapeY;
+
+	/**
+	 * Index of the "highway" tag value of each road segment.
+	 */
+	protected int[] roadTypes;
+
+	/**
+	 * Existence of each road segment.
+	 */
+	protected boolean[] roadAlive;
+
+	/**
+	 * The number of buildings ever created.
+	 */
+	protected int buildingCount;
+
+	/**
+	 * Center and half size of each building.
+	 */
+	protected double[] centerX, centerY, halfWidth, halfHeight;
+
+	/**
+	 * Number of levels of each building (its changing tag).
+	 */
+	protected int[] levels;
+
+	/**
+	 * Indices of the existing buildings.
+	 */
+	protected int[] aliveBuildings;
+
+	/**
+	 * Number of existing buildings.
+	 */
+	protected int aliveBuildingCount;
+
+	/**
+	 * Position of each building in the list of existing buildings, or -1 if it
+	 * has been removed.
+	 */
+	protected int[] alivePositions;
+
+	/**
+	 * Instantiate a new generator.
+	 * 
+	 * @param roadNodes
+	 *            The approximate number of road intersections (rounded to a
+	 *            square grid).
+	 * @param buildings
+	 *            The number of buildings in the first snapshot.
+	 * @param snapshots
+	 *            The number of snapshots.
+	 * @param churn
+	 *            The proportion of buildings and roads changed between two
+	 *            snapshots (between 0 and 1).
+	 * @param seed
+	 *            The seed of the random generator.
+	 */
+	public SyntheticDataGenerator(int roadNodes, int buildings, int snapshots, double churn, long seed) {
+
+		this.side = Math.max(2, (int)Math.ceil(Math.sqrt(roadNodes)));
+
+		this.initialBuildings = buildings;
+		this.snapshots = snapshots;
+		this.churn = churn;
+		this.seed = seed;
+
+		this.segmentCount = 2 * this.side * (this.side - 1);
+	}
+
+	/**
+	 * Change the position of the first intersection and the distance between
+	 * two intersections.
+	 * 
+	 * @param originX
+	 *            The x-axis coordinate of the first intersection.
+	 * @param originY
+	 *            The y-axis coordinate of the first intersection.
+	 * @param spacing
+	 *            The distance between two intersections.
+	 */
+	public void setGeometry(double originX, double originY, double spacing) {
+
+		this.originX = originX;
+		this.originY = originY;
+		this.spacing = spacing;
+	}
+
+	/**
+	 * Write all the snapshots as OpenStreetMap XML files.
+	 * 
+	 * @param prefix
+	 *            The path prefix of the files, completed with "_t[step].osm".
+	 * @return The paths of the written files, in temporal order.
+	 * @throws IOException
+	 */
+	public String[] writeOSM(String prefix) throws IOException {
+
+		String[] fileNames = new String[this.snapshots];
+
+		reset();
+
+		for(int t = 0; t < this.snapshots; ++t) {
+
+			if(t > 0)
+				evolve();
+
+			fileNames[t] = prefix + "_t" + t + ".osm";
+
+			writeOSMSnapshot(fileNames[t]);
+		}
+
+		return fileNames;
+	}
+
+	/**
+	 * Write all the snapshots as shapefiles.
+	 * 
+	 * For each snapshot, three shapefiles are written: the Z-level points (with
+	 * LINK_ID, Z_LEVEL and INTRSECT attributes), the streets (with LINK_ID and
+	 * HIGHWAY attributes) and the buildings (with ID and LEVELS attributes).
+	 * 
+	 * @param prefix
+	 *            The path prefix of the files, completed with
+	 *            "_zlevels_t[step].shp", "_streets_t[step].shp" and
+	 *            "_buildings_t[step].shp".
+	 * @return For each snapshot, the paths of the Z-level, street and building
+	 *         files.
+	 * @throws IOException
+	 */
+	public String[][] writeSHP(String prefix) throws IOException {
+
+		String[][] fileNames = new String[this.snapshots][];
+
+		reset();
+
+		for(int t = 0; t < this.snapshots; ++t) {
+
+			if(t > 0)
+				evolve();
+
+			fileNames[t] = new String[]{
+					prefix + "_zlevels_t" + t, prefix + "_streets_t" + t, prefix + "_buildings_t" + t
+			};
+
+			writeSHPSnapshot(fileNames[t][0], fileNames[t][1], fileNames[t][2]);
+
+			for(int i = 0; i < 3; ++i)
+				fileNames[t][i] += ".shp";
+		}
+
+		return fileNames;
+	}
+
+	/**
+	 * Build the first snapshot of the city.
+	 */
+	protected void reset() {
+
+		this.random = new Random(this.seed);
+
+		// Roads.
+
+		this.shapeX = new double[this.segmentCount];
+		this.shapeY = new double[this.segmentCount];
+		this.roadTypes = new int[this.segmentCount];
+		this.roadAlive = new boolean[this.segmentCount];
+
+		for(int k = 0; k < this.segmentCount; ++k) {
+
+			this.roadAlive[k] = true;
+			this.roadTypes[k] = this.random.nextInt(ROAD_TYPES.length);
+
+			moveShapePoint(k);
+		}
+
+		// Buildings, with some room for the ones added by the evolution.
+
+		int capacity = this.initialBuildings + 16;
+
+		this.centerX = new double[capacity];
+		this.centerY = new double[capacity];
+		this.halfWidth = new double[capacity];
+		this.halfHeight = new double[capacity];
+		this.levels = new int[capacity];
+		this.aliveBuildings = new int[capacity];
+		this.alivePositions = new int[capacity];
+
+		this.buildingCount = 0;
+		this.aliveBuildingCount = 0;
+
+		for(int b = 0; b < this.initialBuildings; ++b)
+			addBuilding();
+	}
+
+	/**
+	 * Apply the changes between two snapshots.
+	 */
+	protected void evolve() {
+
+		// Buildings.
+
+		int changes = (int)Math.round(this.churn * this.aliveBuildingCount);
+
+		for(int i = 0; i < changes; ++i) {
+
+			int kind = this.random.nextInt(4);
+
+			if(kind == 1 || this.aliveBuildingCount == 0) {
+
+				addBuilding();
+
+				continue;
+			}
+
+			int b = this.aliveBuildings[this.random.nextInt(this.aliveBuildingCount)];
+
+			if(kind == 0) {
+
+				removeBuilding(b);
+			}
+			else if(kind == 2) {
+
+				this.centerX[b] += (this.random.nextDouble() - 0.5) * 0.2 * this.spacing;
+				this.centerY[b] += (this.random.nextDouble() - 0.5) * 0.2 * this.spacing;
+			}
+			else {
+
+				this.levels[b] = 1 + (this.levels[b] + this.random.nextInt(9)) % 10;
+			}
+		}
+
+		// Roads.
+
+		changes = (int)Math.round(this.churn * this.segmentCount);
+
+		for(int i = 0; i < changes; ++i) {
+
+			int kind = this.random.nextInt(4);
+			int k = this.random.nextInt(this.segmentCount);
+
+			if(kind == 0)
+				this.roadAlive[k] = false;
+			else if(kind == 1)
+				this.roadAlive[k] = true;
+			else if(kind == 2)
+				moveShapePoint(k);
+			else
+				this.roadTypes[k] = (this.roadTypes[k] + 1) % ROAD_TYPES.length;
+		}
+	}
+
+	/**
+	 * Create a new building at a random position.
+	 */
+	protected void addBuilding() {
+
+		if(this.buildingCount == this.centerX.length)
+			grow();
+
+		int b = this.buildingCount++;
+
+		double extent = (this.side - 1) * this.spacing;
+
+		this.centerX[b] = this.originX + this.random.nextDouble() * extent;
+		this.centerY[b] = this.originY + this.random.nextDouble() * extent;
+		this.halfWidth[b] = (0.05 + 0.1 * this.random.nextDouble()) * this.spacing;
+		this.halfHeight[b] = (0.05 + 0.1 * this.random.nextDouble()) * this.spacing;
+		this.levels[b] = 1 + this.random.nextInt(10);
+
+		this.alivePositions[b] = this.aliveBuildingCount;
+		this.aliveBuildings[this.aliveBuildingCount++] = b;
+	}
+
+	/**
+	 * Remove an existing building.
+	 * 
+	 * @param b
+	 *            The index of the building.
+	 */
+	protected void removeBuilding(int b) {
+
+		// Replace it by the last building of the list of existing buildings.
+
+		int position = this.alivePositions[b];
+		int last = this.aliveBuildings[--this.aliveBuildingCount];
+
+		this.aliveBuildings[position] = last;
+		this.alivePositions[last] = position;
+
+		this.alivePositions[b] = -1;
+	}
+
+	/**
+	 * Double the capacity of the building arrays.
+	 */
+	protected void grow() {
+
+		int capacity = this.centerX.length * 2;
+
+		this.centerX = copyOf(this.centerX, capacity);
+		this.centerY = copyOf(this.centerY, capacity);
+		this.halfWidth = copyOf(this.halfWidth, capacity);
+		this.halfHeight = copyOf(this.halfHeight, capacity);
+		this.levels = copyOf(this.levels, capacity);
+		this.aliveBuildings = copyOf(this.aliveBuildings, capacity);
+		this.alivePositions = copyOf(this.alivePositions, capacity);
+	}
+
+	/**
+	 * Put the shape point of a road segment near its middle.
+	 * 
+	 * @param k
+	 *            The index of the segment.
+	 */
+	protected void moveShapePoint(int k) {
+
+		int[] ends = segmentEnds(k);
+
+		double offset = (this.random.nextDouble() - 0.5) * 0.2 * this.spacing;
+
+		double midX = (intersectionX(ends[0]) + intersectionX(ends[1])) / 2;
+		double midY = (intersectionY(ends[0]) + intersectionY(ends[1])) / 2;
+
+		// Shift the shape point perpendicularly to the segment.
+
+		if(k < this.segmentCount / 2) {
+
+			this.shapeX[k] = midX;
+			this.shapeY[k] = midY + offset;
+		}
+		else {
+
+			this.shapeX[k] = midX + offset;
+			this.shapeY[k] = midY;
+		}
+	}
+
+	/**
+	 * Give the two intersections linked by a road segment. The first half of
+	 * the segments are horizontal, the second half are vertical.
+	 * 
+	 * @param k
+	 *            The index of the segment.
+	 * @return The indices of the two intersections.
+	 */
+	protected int[] segmentEnds(int k) {
+
+		int perLine = this.side - 1;
+
+		if(k < this.segmentCount / 2) {
+
+			int i = k / perLine, j = k % perLine;
+
+			return new int[]{
+					i * this.side + j, i * this.side + j + 1
+			};
+		}
+
+		k -= this.segmentCount / 2;
+
+		int j = k / perLine, i = k % perLine;
+
+		return new int[]{
+				i * this.side + j, (i + 1) * this.side + j
+		};
+	}
+
+	protected double intersectionX(int n) {
+
+		return this.originX + (n % this.side) * this.spacing;
+	}
+
+	protected double intersectionY(int n) {
+
+		return this.originY + (n / this.side) * this.spacing;
+	}
+
+	/*
+	 * OpenStreetMap IDs. Nodes are the intersections, then the shape points of
+	 * the segments, then the four corners of each building. Ways are the
+	 * segments then the buildings.
+	 */
+
+	protected long intersectionNodeId(int n) {
+
+		return 1 + n;
+	}
+
+	protected long shapeNodeId(int k) {
+
+		return 1 + (long)this.side * this.side + k;
+	}
+
+	protected long cornerNodeId(int b, int c) {
+
+		return 1 + (long)this.side * this.side + this.segmentCount + 4L * b + c;
+	}
+
+	protected long roadWayId(int k) {
+
+		return 1 + k;
+	}
+
+	protected long buildingWayId(int b) {
+
+		return 1 + (long)this.segmentCount + b;
+	}
+
+	/**
+	 * Give the four corners of a building, in clockwise order.
+	 * 
+	 * @param b
+	 *            The index of the building.
+	 * @param xs
+	 *            Receives the x-axis coordinates, the first corner is repeated
+	 *            at index 4.
+	 * @param ys
+	 *            Receives the y-axis coordinates, the first corner is repeated
+	 *            at index 4.
+	 */
+	protected void corners(int b, double[] xs, double[] ys) {
+
+		double x0 = this.centerX[b] - this.halfWidth[b], x1 = this.centerX[b] + this.halfWidth[b];
+		double y0 = this.centerY[b] - this.halfHeight[b], y1 = this.centerY[b] + this.halfHeight[b];
+
+		xs[0] = x0;
+		ys[0] = y0;
+		xs[1] = x0;
+		ys[1] = y1;
+		xs[2] = x1;
+		ys[2] = y1;
+		xs[3] = x1;
+		ys[3] = y0;
+		xs[4] = x0;
+		ys[4] = y0;
+	}
+
+	/**
+	 * Write the current state of the city as an OpenStreetMap XML file.
+	 * 
+	 * @param fileName
+	 *            The path to the file.
+	 * @throws IOException
+	 */
+	protected void writeOSMSnapshot(String fileName) throws IOException {
+
+		createParentDirectory(fileName);
+
+		Writer out = new BufferedWriter(new FileWriter(fileName), 1 << 16);
+
+		try {
+
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			out.write("<osm version=\"0.6\" generator=\"gs-geography\">\n");
+
+			// Nodes.
+
+			for(int n = 0, l = this.side * this.side; n < l; ++n)
+				writeNode(out, intersectionNodeId(n), intersectionX(n), intersectionY(n));
+
+			for(int k = 0; k < this.segmentCount; ++k)
+				if(this.roadAlive[k])
+					writeNode(out, shapeNodeId(k), this.shapeX[k], this.shapeY[k]);
+
+			double[] xs = new double[5], ys = new double[5];
+
+			for(int i = 0; i < this.aliveBuildingCount; ++i) {
+
+				int b = this.aliveBuildings[i];
+
+				corners(b, xs, ys);
+
+				for(int c = 0; c < 4; ++c)
+					writeNode(out, cornerNodeId(b, c), xs[c], ys[c]);
+			}
+
+			// Ways.
+
+			for(int k = 0; k < this.segmentCount; ++k) {
+
+				if(!this.roadAlive[k])
+					continue;
+
+				int[] ends = segmentEnds(k);
+
+				out.write("  <way id=\"" + roadWayId(k) + "\">\n");
+				writeNodeRef(out, intersectionNodeId(ends[0]));
+				writeNodeRef(out, shapeNodeId(k));
+				writeNodeRef(out, intersectionNodeId(ends[1]));
+				writeTag(out, "highway", ROAD_TYPES[this.roadTypes[k]]);
+				out.write("  </way>\n");
+			}
+
+			for(int i = 0; i < this.aliveBuildingCount; ++i) {
+
+				int b = this.aliveBuildings[i];
+
+				out.write("  <way id=\"" + buildingWayId(b) + "\">\n");
+				for(int c = 0; c < 4; ++c)
+					writeNodeRef(out, cornerNodeId(b, c));
+				writeNodeRef(out, cornerNodeId(b, 0));
+				writeTag(out, "building", "yes");
+				writeTag(out, "building:levels", Integer.toString(this.levels[b]));
+				out.write("  </way>\n");
+			}
+
+			out.write("</osm>\n");
+		}
+		finally {
+
+			out.close();
+		}
+	}
+
+	protected void writeNode(Writer out, long id, double x, double y) throws IOException {
+
+		out.write("  <node id=\"" + id + "\" lat=\"" + y + "\" lon=\"" + x + "\"/>\n");
+	}
+
+	protected void writeNodeRef(Writer out, long id) throws IOException {
+
+		out.write("    <nd ref=\"" + id + "\"/>\n");
+	}
+
+	protected void writeTag(Writer out, String key, String value) throws IOException {
+
+		out.write("    <tag k=\"" + key + "\" v=\"" + value + "\"/>\n");
+	}
+
+	/**
+	 * Write the current state of the city as three shapefiles.
+	 * 
+	 * @param zLevels
+	 *            The path of the Z-level points, without extension.
+	 * @param streets
+	 *            The path of the streets, without extension.
+	 * @param buildings
+	 *            The path of the buildings, without extension.
+	 * @throws IOException
+	 */
+	protected void writeSHPSnapshot(String zLevels, String streets, String buildings) throws IOException {
+
+		createParentDirectory(zLevels);
+
+		ShapefileWriter zWriter = new ShapefileWriter(zLevels, ShapefileWriter.POINT);
+		zWriter.addField("LINK_ID", 'N', 10);
+		zWriter.addField("Z_LEVEL", 'N', 2);
+		zWriter.addField("INTRSECT", 'C', 1);
+
+		ShapefileWriter streetWriter = new ShapefileWriter(streets, ShapefileWriter.POLYLINE);
+		streetWriter.addField("LINK_ID", 'N', 10);
+		streetWriter.addField("HIGHWAY", 'C', 16);
+
+		ShapefileWriter buildingWriter = new ShapefileWriter(buildings, ShapefileWriter.POLYGON);
+		buildingWriter.addField("ID", 'N', 12);
+		buildingWriter.addField("LEVELS", 'N', 3);
+
+		try {
+
+			double[] xs = new double[5], ys = new double[5];
+
+			for(int k = 0; k < this.segmentCount; ++k) {
+
+				if(!this.roadAlive[k])
+					continue;
+
+				int[] ends = segmentEnds(k);
+				long linkId = roadWayId(k);
+
+				// One Z-level point at each end of the street.
+
+				for(int e = 0; e < 2; ++e) {
+
+					xs[0] = intersectionX(ends[e]);
+					ys[0] = intersectionY(ends[e]);
+
+					zWriter.write(xs, ys, 1, linkId, 0, "Y");
+				}
+
+				xs[0] = intersectionX(ends[0]);
+				ys[0] = intersectionY(ends[0]);
+				xs[1] = this.shapeX[k];
+				ys[1] = this.shapeY[k];
+				xs[2] = intersectionX(ends[1]);
+				ys[2] = intersectionY(ends[1]);
+
+				streetWriter.write(xs, ys, 3, linkId, ROAD_TYPES[this.roadTypes[k]]);
+			}
+
+			for(int i = 0; i < this.aliveBuildingCount; ++i) {
+
+				int b = this.aliveBuildings[i];
+
+				corners(b, xs, ys);
+
+				buildingWriter.write(xs, ys, 5, buildingWayId(b), this.levels[b]);
+			}
+		}
+		finally {
+
+			zWriter.close();
+			streetWriter.close();
+			buildingWriter.close();
+		}
+	}
+
+	protected static void createParentDirectory(String fileName) {
+
+		File parent = new File(fileName).getAbsoluteFile().getParentFile();
+
+		if(parent != null && !parent.exists())
+			parent.mkdirs();
+	}
+
+	protected static double[] copyOf(double[] array, int length) {
+
+		double[] copy = new double[length];
+
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+
+		return copy;
+	}
+
+	protected static int[] copyOf(int[] array, int length) {
+
+		int[] copy = new int[length];
+
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+
+		return copy;
+	}
+
+	/**
+	 * Generate a data set from the command line.
+	 * 
+	 * Arguments: prefix roadNodes buildings snapshots churn [seed [osm|shp|both]]
+	 */
+	public static void main(String[] args) throws IOException {
+
+		if(args.length < 5) {
+
+			System.err.println("usage: SyntheticDataGenerator prefix roadNodes buildings snapshots churn [seed [osm|shp|both]]");
+
+			return;
+		}
+
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 12345;
+		String format = args.length > 6 ? args[6] : "osm";
+
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Double.parseDouble(args[4]), seed);
+
+		if(format.equals("osm") || format.equals("both"))
+			for(String fileName : generator.writeOSM(args[0]))
+				System.out.println(fileName);
+
+		if(format.equals("shp") || format.equals("both"))
+			for(String[] fileNames : generator.writeSHP(args[0]))
+				for(String fileName : fileNames)
+					System.out.println(fileName);
+	}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.index;
+
+/**
+ * A binary min-heap of index nodes and entries ordered by their distance to a
+ * query point, used by the best-first nearest neighbour queries.
+ * 
+ * The arrays are kept from one query to the next so that a query does not
+ * allocate once the heap has grown to its working size.
+ * 
+ * @author Merwan Achibet
+ */
+class DistanceHeap {
+
+	/**
+	 * The distances, in heap order.
+	 */
+	protected double[] keys;
+
+	/**
+	 * The object associated with each distance, if any.
+	 */
+	protected Object[] objects;
+
+	/**
+	 * The first integer associated with each distance.
+	 */
+	protected int[] firsts;
+
+	/**
+	 * The second integer associated with each distance.
+	 */
+	protected int[] seconds;
+
+	/**
+	 * The number of items in the heap.
+	 */
+	protected int size;
+
+	/**
+	 * The object of the last item popped.
+	 */
+	protected Object object;
+
+	/**
+	 * The first integer of the last item popped.
+	 */
+	protected int first;
+
+	/**
+	 * The second integer of the last item popped.
+	 */
+	protected int second;
+
+	DistanceHeap() {
+
+		this.keys = new double[64];
+		this.objects = new Object[64];
+		this.firsts = new int[64];
+		this.seconds = new int[64];
+
+		this.size = 0;
+	}
+
+	void clear() {
+
+		// Release the references so that the heap does not retain anything.
+
+		for(int i = 0; i < this.size; ++i)
+			this.objects[i] = null;
+
+		this.object = null;
+
+		this.size = 0;
+	}
+
+	boolean isEmpty() {
+
+		return this.size == 0;
+	}
+
+	/**
+	 * Add an item.
+	 * 
+	 * @param key
+	 *            The distance.
+	 * @param object
+	 *            The associated object, or null.
+	 * @param first
+	 *            The first associated integer.
+	 * @param second
+	 *            The second associated integer.
+	 */
+	void push(double key, Object object, int first, int second) {
+
+		if(this.size == this.keys.length)
+			grow();
+
+		// Sift the new item up.
+
+		int i = this.size++;
+
+		while(i > 0) {
+
+			int parent = (i - 1) / 2;
+
+			if(this.keys[parent] <= key)
+				break;
+
+			move(parent, i);
+
+			i = parent;
+		}
+
+		this.keys[i] = key;
+		this.objects[i] = object;
+		this.firsts[i] = first;
+		this.seconds[i] = second;
+	}
+
+	/**
+	 * Remove the closest item. Its associated values are available in the
+	 * object, first and second fields afterwards.
+	 * 
+	 * @return The distance of the item.
+	 */
+	double pop() {
+
+		double key = this.keys[0];
+
+		this.object = this.objects[0];
+		this.first = this.firsts[0];
+		this.second = this.seconds[0];
+
+		--this.size;
+
+		// Sift the last item down from the root.
+
+		double lastKey = this.keys[this.size];
+		Object lastObject = this.objects[this.size];
+		int lastFirst = this.firsts[this.size];
+		int lastSecond = this.seconds[this.size];
+
+		this.objects[this.size] = null;
+
+		int i = 0;
+
+		while(2 * i + 1 < this.size) {
+
+			int child = 2 * i + 1;
+
+			if(child + 1 < this.size && this.keys[child + 1] < this.keys[child])
+				++child;
+
+			if(this.keys[child] >= lastKey)
+				break;
+
+			move(child, i);
+
+			i = child;
+		}
+
+		if(this.size > 0) {
+
+			this.keys[i] = lastKey;
+			this.objects[i] = lastObject;
+			this.firsts[i] = lastFirst;
+			this.seconds[i] = lastSecond;
+		}
+
+		return key;
+	}
+
+	protected void move(int from, int to) {
+
+		this.keys[to] = this.keys[from];
+		this.objects[to] = this.objects[from];
+		this.firsts[to] = this.firsts[from];
+		this.seconds[to] = this.seconds[from];
+	}
+
+	protected void grow() {
+
+		int capacity = this.keys.length * 2;
+
+		double[] newKeys = new double[capacity];
+		System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+		this.keys = newKeys;
+
+		Object[] newObjects = new Object[capacity];
+		System.arraycopy(this.objects, 0, newObjects, 0, this.size);
+		this.objects = newObjects;
+
+		int[] newFirsts = new int[capacity];
+		System.arraycopy(this.firsts, 0, newFirsts, 0, this.size);
+		this.firsts = newFirsts;
+
+		int[] newSeconds = new int[capacity];
+		System.arraycopy(this.seconds, 0, newSeconds, 0, this.size);
+		this.seconds = newSeconds;
+	}
+
+}
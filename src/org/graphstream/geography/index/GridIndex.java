@@ -0,0 +1,857 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementShape;
+
+/**
+ * A spatial index storing point references to geometric elements in the
+ * buckets of a uniform grid.
+ * 
+ * For dense and evenly spread points (intersections, points of interest...),
+ * addressing the cell of a position in constant time is cheaper than going
+ * down a hierarchical structure. Like the quadtree, the grid only stores the
+ * points of the shapes.
+ * 
+ * The cell size is given in the units of the data. If it is not given, it is
+ * chosen from the extent of the first points so that a cell holds a few
+ * entries on average: a bulk load uses all its points, an incremental
+ * insertion waits until a sample of points has been gathered and scans them
+ * linearly in the meantime, then chooses the size again each time the cells
+ * become too crowded.
+ * 
+ * The cells are found through an open addressing hash table keyed by their
+ * packed coordinates, and each cell holds the indices of its entries in a
+ * primitive array.
+ * 
+ * @author Merwan Achibet
+ */
+public class GridIndex extends SpatialIndex {
+
+	/**
+	 * The number of points gathered before choosing the cell size
+	 * automatically.
+	 */
+	protected static final int SAMPLE_SIZE = 1024;
+
+	/**
+	 * The largest cell coordinate, in absolute value.
+	 */
+	protected static final int MAX_CELL_COORDINATE = 1 << 29;
+
+	/**
+	 * The side of a cell, or 0 if not chosen yet.
+	 */
+	protected double cellSize;
+
+	/**
+	 * True if the cell size is chosen from the data.
+	 */
+	protected boolean automaticCellSize;
+
+	/**
+	 * The number of points when the cell size was last chosen.
+	 */
+	protected int sizedCount;
+
+	/**
+	 * The average number of entries per cell aimed at when the cell size is
+	 * chosen automatically.
+	 */
+	protected int entriesPerCell = 8;
+
+	/**
+	 * The coordinates of the points.
+	 */
+	protected double[] xs;
+
+	protected double[] ys;
+
+	/**
+	 * The elements referenced by the points.
+	 */
+	protected Element[] elements;
+
+	/**
+	 * The steps during which the points are valid, from birth (inclusive) to
+	 * death (exclusive).
+	 */
+	protected int[] births;
+
+	protected int[] deaths;
+
+	/**
+	 * The number of points.
+	 */
+	protected int count;
+
+	/**
+	 * The coordinates of each non-empty cell.
+	 */
+	protected int[] cellXs;
+
+	protected int[] cellYs;
+
+	/**
+	 * The indices of the points of each non-empty cell.
+	 */
+	protected int[][] cellEntries;
+
+	/**
+	 * The number of points of each non-empty cell.
+	 */
+	protected int[] cellPopulations;
+
+	/**
+	 * The number of non-empty cells.
+	 */
+	protected int cellCount;
+
+	/**
+	 * The hash table from the packed coordinates of a cell to its index, or -1
+	 * for an empty slot.
+	 */
+	protected long[] tableKeys;
+
+	protected int[] tableCells;
+
+	/**
+	 * The range of the coordinates of the non-empty cells.
+	 */
+	protected int minCellX, minCellY, maxCellX, maxCellY;
+
+	/**
+	 * Instantiate a new grid spatial index which cell size is chosen from the
+	 * data.
+	 */
+	public GridIndex() {
+		this(0);
+	}
+
+	/**
+	 * Instantiate a new grid spatial index with a given cell size.
+	 * 
+	 * @param cellSize
+	 *            The side of a cell in the units of the data, or 0 to choose
+	 *            it from the data.
+	 */
+	public GridIndex(double cellSize) {
+
+		this.cellSize = cellSize;
+		this.automaticCellSize = !(cellSize > 0);
+
+		this.xs = new double[64];
+		this.ys = new double[64];
+		this.elements = new Element[64];
+		this.births = new int[64];
+		this.deaths = new int[64];
+
+		this.cellXs = new int[16];
+		this.cellYs = new int[16];
+		this.cellEntries = new int[16][];
+		this.cellPopulations = new int[16];
+
+		this.tableKeys = new long[32];
+		this.tableCells = new int[32];
+
+		Arrays.fill(this.tableCells, -1);
+
+		this.minCellX = Integer.MAX_VALUE;
+		this.minCellY = Integer.MAX_VALUE;
+		this.maxCellX = Integer.MIN_VALUE;
+		this.maxCellY = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Instantiate a new grid spatial index which cell size is chosen from the
+	 * data, aiming at a given average number of points per cell.
+	 * 
+	 * @param cellSize
+	 *            The side of a cell in the units of the data, or 0 to choose
+	 *            it from the data.
+	 * @param entriesPerCell
+	 *            The average number of points per cell aimed at when the
+	 *            cell size is chosen from the data.
+	 */
+	public GridIndex(double cellSize, int entriesPerCell) {
+		this(cellSize);
+
+		this.entriesPerCell = entriesPerCell;
+	}
+
+	/**
+	 * Give the side of a cell.
+	 * 
+	 * @return The cell size, or 0 if it has not been chosen yet.
+	 */
+	public double getCellSize() {
+
+		return this.cellSize;
+	}
+
+	@Override
+	public void add(ElementShape shape, int birth, int death) {
+
+		for(int i = 0; i < shape.getPointCount(); ++i)
+			addEntry(shape.getElement(), shape.getPointX(i), shape.getPointY(i), birth, death);
+	}
+
+	/**
+	 * Add the points of all the shapes, choosing the cell size from all of
+	 * them if necessary.
+	 */
+	@Override
+	public void bulkLoad(List<ElementShape> shapes, int[] births, int[] deaths) {
+
+		int first = this.count;
+
+		for(int i = 0; i < shapes.size(); ++i) {
+
+			ElementShape shape = shapes.get(i);
+
+			for(int j = 0; j < shape.getPointCount(); ++j)
+				append(shape.getElement(), shape.getPointX(j), shape.getPointY(j), birth(births, i), death(deaths, i));
+		}
+
+		if(this.automaticCellSize && this.count > 0)
+			chooseCellSize();
+		else
+			for(int point = first; point < this.count; ++point)
+				bucket(point);
+	}
+
+	@Override
+	public void addPoint(Element element, double x, double y) {
+
+		addEntry(element, x, y, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Insert a point in the grid.
+	 * 
+	 * @param element
+	 *            The referenced element.
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param birth
+	 *            The first step at which the point is valid.
+	 * @param death
+	 *            The first step at which the point is not valid anymore.
+	 */
+	protected void addEntry(Element element, double x, double y, int birth, int death) {
+
+		append(element, x, y, birth, death);
+
+		// The points are only put in cells once enough of them have been
+		// gathered to choose the cell size.
+
+		if(this.cellSize == 0) {
+
+			if(this.count >= SAMPLE_SIZE)
+				chooseCellSize();
+
+			return;
+		}
+
+		bucket(this.count - 1);
+
+		// Refine an automatic grid once the cells hold four times more points
+		// than aimed at. The cost is amortized as the number of points doubles
+		// at least between two refinements.
+
+		if(this.automaticCellSize && this.count >= 2 * this.sizedCount && this.count > 4 * this.entriesPerCell * this.cellCount)
+			chooseCellSize();
+	}
+
+	/**
+	 * Store a point without putting it in a cell.
+	 */
+	protected void append(Element element, double x, double y, int birth, int death) {
+
+		if(this.count == this.xs.length) {
+
+			this.xs = Arrays.copyOf(this.xs, this.count * 2);
+			this.ys = Arrays.copyOf(this.ys, this.count * 2);
+			this.elements = Arrays.copyOf(this.elements, this.count * 2);
+			this.births = Arrays.copyOf(this.births, this.count * 2);
+			this.deaths = Arrays.copyOf(this.deaths, this.count * 2);
+		}
+
+		this.xs[this.count] = x;
+		this.ys[this.count] = y;
+		this.elements[this.count] = element;
+		this.births[this.count] = birth;
+		this.deaths[this.count] = death;
+
+		++this.count;
+
+		if(element != null)
+			this.referencedElements.add(element);
+	}
+
+	/**
+	 * Choose the cell size from the extent of the points stored so far and put
+	 * them all in their cells.
+	 */
+	protected void chooseCellSize() {
+
+		clearCells();
+
+		this.sizedCount = this.count;
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		for(int point = 0; point < this.count; ++point) {
+
+			minX = Math.min(minX, this.xs[point]);
+			minY = Math.min(minY, this.ys[point]);
+			maxX = Math.max(maxX, this.xs[point]);
+			maxY = Math.max(maxY, this.ys[point]);
+		}
+
+		// Aim at a given number of points per cell if the points were evenly
+		// spread over the extent.
+
+		double area = Math.max(maxX - minX, Double.MIN_VALUE) * Math.max(maxY - minY, Double.MIN_VALUE);
+
+		this.cellSize = Math.sqrt(area * this.entriesPerCell / this.count);
+
+		if(!(this.cellSize > 0) || Double.isInfinite(this.cellSize))
+			this.cellSize = Math.max(1, Math.max(Math.abs(minX), Math.abs(minY))) * 0.000001;
+
+		for(int point = 0; point < this.count; ++point)
+			bucket(point);
+	}
+
+	/**
+	 * Empty the grid, the points being kept.
+	 */
+	protected void clearCells() {
+
+		Arrays.fill(this.cellEntries, 0, this.cellCount, null);
+		Arrays.fill(this.tableCells, -1);
+
+		this.cellCount = 0;
+
+		this.minCellX = Integer.MAX_VALUE;
+		this.minCellY = Integer.MAX_VALUE;
+		this.maxCellX = Integer.MIN_VALUE;
+		this.maxCellY = Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Put a stored point in its cell.
+	 */
+	protected void bucket(int point) {
+
+		int cellX = cellCoordinate(this.xs[point]);
+		int cellY = cellCoordinate(this.ys[point]);
+
+		int cell = findCell(cellX, cellY);
+
+		if(cell == -1)
+			cell = newCell(cellX, cellY);
+
+		if(this.cellPopulations[cell] == this.cellEntries[cell].length)
+			this.cellEntries[cell] = Arrays.copyOf(this.cellEntries[cell], 2 * this.cellPopulations[cell]);
+
+		this.cellEntries[cell][this.cellPopulations[cell]++] = point;
+	}
+
+	/**
+	 * Give the coordinate of the cell containing a coordinate. It is bounded
+	 * so that the cell coordinates, and the loops over them, never overflow:
+	 * the points beyond the bound share the cells on it, and as the points are
+	 * always checked against their own coordinates the queries remain exact.
+	 */
+	protected int cellCoordinate(double v) {
+
+		double cell = Math.floor(v / this.cellSize);
+
+		return (int)Math.max(-MAX_CELL_COORDINATE, Math.min(MAX_CELL_COORDINATE, cell));
+	}
+
+	/**
+	 * Give the index of a cell from its coordinates.
+	 * 
+	 * @return The index of the cell, or -1 if it is empty.
+	 */
+	protected int findCell(int cellX, int cellY) {
+
+		long key = key(cellX, cellY);
+
+		int mask = this.tableKeys.length - 1;
+
+		for(int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+
+			int cell = this.tableCells[slot];
+
+			if(cell == -1 || this.tableKeys[slot] == key)
+				return cell;
+		}
+	}
+
+	protected int newCell(int cellX, int cellY) {
+
+		if(this.cellCount == this.cellXs.length) {
+
+			this.cellXs = Arrays.copyOf(this.cellXs, 2 * this.cellCount);
+			this.cellYs = Arrays.copyOf(this.cellYs, 2 * this.cellCount);
+			this.cellEntries = Arrays.copyOf(this.cellEntries, 2 * this.cellCount);
+			this.cellPopulations = Arrays.copyOf(this.cellPopulations, 2 * this.cellCount);
+		}
+
+		int cell = this.cellCount++;
+
+		this.cellXs[cell] = cellX;
+		this.cellYs[cell] = cellY;
+		this.cellEntries[cell] = new int[4];
+		this.cellPopulations[cell] = 0;
+
+		this.minCellX = Math.min(this.minCellX, cellX);
+		this.minCellY = Math.min(this.minCellY, cellY);
+		this.maxCellX = Math.max(this.maxCellX, cellX);
+		this.maxCellY = Math.max(this.maxCellY, cellY);
+
+		// Keep the hash table at most half full.
+
+		if(2 * this.cellCount > this.tableKeys.length) {
+
+			this.tableKeys = new long[2 * this.tableKeys.length];
+			this.tableCells = new int[this.tableKeys.length];
+
+			Arrays.fill(this.tableCells, -1);
+
+			for(int c = 0; c < this.cellCount; ++c)
+				insertInTable(this.cellXs[c], this.cellYs[c], c);
+		}
+		else {
+
+			insertInTable(cellX, cellY, cell);
+		}
+
+		return cell;
+	}
+
+	protected void insertInTable(int cellX, int cellY, int cell) {
+
+		long key = key(cellX, cellY);
+
+		int mask = this.tableKeys.length - 1;
+		int slot = hash(key) & mask;
+
+		while(this.tableCells[slot] != -1)
+			slot = (slot + 1) & mask;
+
+		this.tableKeys[slot] = key;
+		this.tableCells[slot] = cell;
+	}
+
+	protected static long key(int cellX, int cellY) {
+
+		return ((long)cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	protected static int hash(long key) {
+
+		key *= 0x9E3779B97F4A7C15L;
+
+		return (int)(key ^ (key >>> 32));
+	}
+
+	@Override
+	public void writeTo(DataOutput out, Map<Element, Integer> elementIndices) throws IOException {
+
+		out.writeInt(this.entriesPerCell);
+		out.writeBoolean(this.automaticCellSize);
+		out.writeDouble(this.cellSize);
+		out.writeInt(this.sizedCount);
+
+		// The points.
+
+		writeDoubles(out, this.xs, this.count);
+		writeDoubles(out, this.ys, this.count);
+		writeElements(out, this.elements, this.count, elementIndices);
+		writeInts(out, this.births, this.count);
+		writeInts(out, this.deaths, this.count);
+
+		out.writeInt(this.count);
+
+		// The cells and the hash table addressing them.
+
+		out.writeInt(this.cellCount);
+
+		writeInts(out, this.cellXs, this.cellCount);
+		writeInts(out, this.cellYs, this.cellCount);
+		writeInts(out, this.cellPopulations, this.cellCount);
+
+		out.writeInt(this.cellEntries.length);
+
+		for(int cell = 0; cell < this.cellCount; ++cell)
+			writeInts(out, this.cellEntries[cell], this.cellPopulations[cell]);
+
+		writeLongs(out, this.tableKeys, this.tableKeys.length);
+		writeInts(out, this.tableCells, this.tableCells.length);
+
+		out.writeInt(this.minCellX);
+		out.writeInt(this.minCellY);
+		out.writeInt(this.maxCellX);
+		out.writeInt(this.maxCellY);
+
+		writeReferencedElements(out, this.referencedElements, elementIndices);
+	}
+
+	@Override
+	public void readFrom(ByteBuffer in, Element[] elementsByIndex) throws IOException {
+
+		checkParameter(in.getInt() == this.entriesPerCell);
+		checkParameter((in.get() != 0) == this.automaticCellSize);
+
+		double cellSize = in.getDouble();
+
+		checkParameter(this.automaticCellSize || cellSize == this.cellSize);
+
+		int sizedCount = in.getInt();
+
+		double[] xs = readDoubles(in);
+		double[] ys = readDoubles(in);
+		Element[] elements = readElements(in, elementsByIndex);
+		int[] births = readInts(in);
+		int[] deaths = readInts(in);
+
+		int count = in.getInt();
+
+		int cellCount = in.getInt();
+
+		int[] cellXs = readInts(in);
+		int[] cellYs = readInts(in);
+		int[] cellPopulations = readInts(in);
+
+		int[][] cellEntries = new int[in.getInt()][];
+
+		checkParameter(cellCount <= cellEntries.length);
+
+		for(int cell = 0; cell < cellCount; ++cell)
+			cellEntries[cell] = readInts(in);
+
+		long[] tableKeys = readLongs(in);
+		int[] tableCells = readInts(in);
+
+		int minCellX = in.getInt();
+		int minCellY = in.getInt();
+		int maxCellX = in.getInt();
+		int maxCellY = in.getInt();
+
+		HashSet<Element> referencedElements = readReferencedElements(in, elementsByIndex);
+
+		// Everything was decoded, replace the content of the index.
+
+		this.cellSize = cellSize;
+		this.sizedCount = sizedCount;
+
+		this.xs = xs;
+		this.ys = ys;
+		this.elements = elements;
+		this.births = births;
+		this.deaths = deaths;
+		this.count = count;
+
+		this.cellXs = cellXs;
+		this.cellYs = cellYs;
+		this.cellEntries = cellEntries;
+		this.cellPopulations = cellPopulations;
+		this.cellCount = cellCount;
+
+		this.tableKeys = tableKeys;
+		this.tableCells = tableCells;
+
+		this.minCellX = minCellX;
+		this.minCellY = minCellY;
+		this.maxCellX = maxCellX;
+		this.maxCellY = maxCellY;
+
+		this.referencedElements = referencedElements;
+	}
+
+	@Override
+	public SpatialIndexSnapshot snapshot() {
+
+		return new SpatialIndexSnapshot(pointBoxes(this.xs, this.ys, this.count), this.elements, this.births, this.deaths, this.count, this.referencedElements, this.entriesPerCell * 2, this.distanceOffset);
+	}
+
+	@Override
+	public int size() {
+
+		return this.count;
+	}
+
+	@Override
+	public void visitElementsIn(double minX, double minY, double maxX, double maxY, int step, SpatialIndexVisitor visitor) {
+
+		search(minX, minY, maxX, maxY, 0, 0, Double.POSITIVE_INFINITY, step, visitor);
+	}
+
+	@Override
+	public void visitElementsWithin(double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		search(x - radius, y - radius, x + radius, y + radius, x, y, radius, step, visitor);
+	}
+
+	/**
+	 * Visit the points in a rectangle and at a given distance of a position
+	 * or closer.
+	 * 
+	 * The cells covering the rectangle are addressed directly, or all the
+	 * non-empty cells are scanned if there are fewer of them.
+	 * 
+	 * @param radius
+	 *            The maximum distance, infinite to only test the rectangle.
+	 */
+	protected void search(double minX, double minY, double maxX, double maxY, double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		// Until the cell size is chosen, the points are scanned linearly.
+
+		if(this.cellSize == 0) {
+
+			for(int point = 0; point < this.count; ++point)
+				if(!visitPoint(point, minX, minY, maxX, maxY, x, y, radius, step, visitor))
+					return;
+
+			return;
+		}
+
+		if(this.cellCount == 0)
+			return;
+
+		int fromX = Math.max(cellCoordinate(minX), this.minCellX);
+		int fromY = Math.max(cellCoordinate(minY), this.minCellY);
+		int toX = Math.min(cellCoordinate(maxX), this.maxCellX);
+		int toY = Math.min(cellCoordinate(maxY), this.maxCellY);
+
+		if(fromX > toX || fromY > toY)
+			return;
+
+		if((double)(toX - fromX + 1) * (toY - fromY + 1) <= this.cellCount) {
+
+			for(int cellX = fromX; cellX <= toX; ++cellX)
+				for(int cellY = fromY; cellY <= toY; ++cellY) {
+
+					int cell = findCell(cellX, cellY);
+
+					if(cell != -1 && !visitCell(cell, minX, minY, maxX, maxY, x, y, radius, step, visitor))
+						return;
+				}
+		}
+		else {
+
+			for(int cell = 0; cell < this.cellCount; ++cell)
+				if(this.cellXs[cell] >= fromX && this.cellXs[cell] <= toX && this.cellYs[cell] >= fromY && this.cellYs[cell] <= toY)
+					if(!visitCell(cell, minX, minY, maxX, maxY, x, y, radius, step, visitor))
+						return;
+		}
+	}
+
+	protected boolean visitCell(int cell, double minX, double minY, double maxX, double maxY, double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		int[] entries = this.cellEntries[cell];
+
+		for(int i = 0, n = this.cellPopulations[cell]; i < n; ++i)
+			if(!visitPoint(entries[i], minX, minY, maxX, maxY, x, y, radius, step, visitor))
+				return false;
+
+		return true;
+	}
+
+	protected boolean visitPoint(int point, double minX, double minY, double maxX, double maxY, double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		double px = this.xs[point];
+		double py = this.ys[point];
+
+		if(px < minX || px > maxX || py < minY || py > maxY)
+			return true;
+
+		if(!isAlive(this.births[point], this.deaths[point], step))
+			return true;
+
+		if(radius != Double.POSITIVE_INFINITY && distance(x, y, px, py, px, py) > radius)
+			return true;
+
+		return visitor.visit(this.elements[point]);
+	}
+
+	/**
+	 * Find the elements closest to a position by visiting the cells in rings
+	 * of growing size around the cell of the position, until the next ring
+	 * cannot hold anything closer than the results.
+	 */
+	@Override
+	public int getNearestElements(double x, double y, int step, int k, Element[] elements, double[] distances) {
+
+		k = Math.min(k, elements.length);
+
+		if(k == 0)
+			return 0;
+
+		// The distances are needed to sort the results.
+
+		double[] resultDistances = distances != null && distances.length >= k ? distances : new double[k];
+
+		int found = 0;
+
+		if(this.cellSize == 0) {
+
+			for(int point = 0; point < this.count; ++point)
+				found = insertNearest(point, x, y, step, k, elements, resultDistances, found);
+
+			return found;
+		}
+
+		if(this.cellCount == 0)
+			return 0;
+
+		int centerX = cellCoordinate(x);
+		int centerY = cellCoordinate(y);
+
+		int maxRing = Math.max(Math.max(Math.abs(this.minCellX - centerX), Math.abs(this.maxCellX - centerX)), Math.max(Math.abs(this.minCellY - centerY), Math.abs(this.maxCellY - centerY)));
+
+		for(int ring = 0; ring <= maxRing; ++ring) {
+
+			// When the rings get larger than the set of non-empty cells, it is
+			// cheaper to go through all of them. The points already seen are
+			// not recorded twice.
+
+			if((double)(2 * ring + 1) * (2 * ring + 1) > 2 * this.cellCount) {
+
+				for(int cell = 0; cell < this.cellCount; ++cell)
+					for(int i = 0, n = this.cellPopulations[cell]; i < n; ++i)
+						found = insertNearest(this.cellEntries[cell][i], x, y, step, k, elements, resultDistances, found);
+
+				break;
+			}
+
+			// Visit the cells of the ring.
+
+			for(int cellX = centerX - ring; cellX <= centerX + ring; ++cellX) {
+
+				boolean edge = cellX == centerX - ring || cellX == centerX + ring;
+
+				for(int cellY = centerY - ring; cellY <= centerY + ring; cellY += edge ? 1 : 2 * ring) {
+
+					int cell = findCell(cellX, cellY);
+
+					if(cell != -1)
+						for(int i = 0, n = this.cellPopulations[cell]; i < n; ++i)
+							found = insertNearest(this.cellEntries[cell][i], x, y, step, k, elements, resultDistances, found);
+				}
+			}
+
+			// Stop when the next ring is farther than the last result.
+
+			if(found == k) {
+
+				double nextRing = Math.min(Math.min(x - (centerX - ring) * this.cellSize, (centerX + ring + 1) * this.cellSize - x), Math.min(y - (centerY - ring) * this.cellSize, (centerY + ring + 1) * this.cellSize - y));
+
+				if(resultDistances[k - 1] <= nextRing)
+					break;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Insert a point among the results of a nearest neighbour query, which are
+	 * kept sorted by distance with one result per element.
+	 * 
+	 * @return The new number of results.
+	 */
+	protected int insertNearest(int point, double x, double y, int step, int k, Element[] elements, double[] distances, int found) {
+
+		if(!isAlive(this.births[point], this.deaths[point], step))
+			return found;
+
+		double distance = distance(x, y, this.xs[point], this.ys[point], this.xs[point], this.ys[point]);
+
+		if(found == k && distance >= distances[k - 1])
+			return found;
+
+		Element element = this.elements[point];
+
+		// Remove the element if it is already a result, unless closer.
+
+		for(int i = 0; i < found; ++i)
+			if(elements[i] == element) {
+
+				if(distances[i] <= distance)
+					return found;
+
+				System.arraycopy(elements, i + 1, elements, i, found - i - 1);
+				System.arraycopy(distances, i + 1, distances, i, found - i - 1);
+
+				--found;
+
+				break;
+			}
+
+		// Insert the point at its rank.
+
+		int rank = Math.min(found, k - 1);
+
+		while(rank > 0 && distances[rank - 1] > distance) {
+
+			elements[rank] = elements[rank - 1];
+			distances[rank] = distances[rank - 1];
+
+			--rank;
+		}
+
+		elements[rank] = element;
+		distances[rank] = distance;
+
+		return Math.min(found + 1, k);
+	}
+
+}
@@ -0,0 +1,802 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementShape;
+
+/**
+ * A spatial index used to store point references to geometric elements in a
+ * quadtree.
+ * 
+ * The quadtree does not accept lines or polygons, only points, so the shapes
+ * are stored as their vertices. Use an RTreeIndex when the elements are lines
+ * or polygons.
+ * 
+ * The extent of the tree is learned from the data instead of being fixed:
+ * a bulk load uses the exact extent of the points, an incremental insertion
+ * uses the extent of the points gathered in the root until it first needs to
+ * be split. A point falling outside of the tree afterwards makes the root grow
+ * by doubling its size, the existing cells being kept as they are.
+ * 
+ * The cells and the points are stored in flat arrays. The points of a leaf
+ * are chained through an array of successors.
+ * 
+ * @author Antoine Dutot
+ * @author Merwan Achibet
+ */
+public class QuadtreeIndex extends SpatialIndex {
+
+	/**
+	 * The number of points in a single cell of the quadtree.
+	 */
+	protected int pointsPerCell = 32;
+
+	/**
+	 * The maximum depth of the quadtree.
+	 */
+	protected int maxDepth = 20;
+
+	/**
+	 * The coordinates of the points.
+	 */
+	protected double[] xs;
+
+	protected double[] ys;
+
+	/**
+	 * The elements referenced by the points.
+	 */
+	protected Element[] elements;
+
+	/**
+	 * The steps during which the points are valid, from birth (inclusive) to
+	 * death (exclusive).
+	 */
+	protected int[] births;
+
+	protected int[] deaths;
+
+	/**
+	 * The next point of the same cell for each point, or -1.
+	 */
+	protected int[] nextPoints;
+
+	/**
+	 * The number of points.
+	 */
+	protected int count;
+
+	/**
+	 * The minimum corner and the side of each cell.
+	 */
+	protected double[] cellXs;
+
+	protected double[] cellYs;
+
+	protected double[] cellSizes;
+
+	/**
+	 * The four sub-cells of each cell (south-west, south-east, north-west,
+	 * north-east), or -1 for a leaf.
+	 */
+	protected int[] subCells;
+
+	/**
+	 * The first point of each leaf, or -1.
+	 */
+	protected int[] firstPoints;
+
+	/**
+	 * The number of points of each leaf.
+	 */
+	protected int[] populations;
+
+	/**
+	 * The number of cells.
+	 */
+	protected int cellCount;
+
+	/**
+	 * The root cell.
+	 */
+	protected int root;
+
+	/**
+	 * True once the extent of the root has been determined.
+	 */
+	protected boolean bounded;
+
+	/**
+	 * The heap used by the nearest neighbour queries.
+	 */
+	protected DistanceHeap heap = new DistanceHeap();
+
+	/**
+	 * Instantiate a new quadtree spatial index.
+	 */
+	public QuadtreeIndex() {
+
+		this.xs = new double[64];
+		this.ys = new double[64];
+		this.elements = new Element[64];
+		this.births = new int[64];
+		this.deaths = new int[64];
+		this.nextPoints = new int[64];
+
+		this.cellXs = new double[16];
+		this.cellYs = new double[16];
+		this.cellSizes = new double[16];
+		this.subCells = new int[4 * 16];
+		this.firstPoints = new int[16];
+		this.populations = new int[16];
+
+		this.root = newCell(0, 0, 0);
+		this.bounded = false;
+	}
+
+	/**
+	 * Instantiate a new quadtree spatial index with a given structure.
+	 * 
+	 * @param pointsPerCell
+	 *            The number of points above which a cell is split.
+	 * @param maxDepth
+	 *            The maximum depth of the quadtree.
+	 */
+	public QuadtreeIndex(int pointsPerCell, int maxDepth) {
+		this();
+
+		this.pointsPerCell = pointsPerCell;
+		this.maxDepth = maxDepth;
+	}
+
+	/**
+	 * Set the extent of the quadtree before any point is inserted, for
+	 * example from the known bounding box of the input data.
+	 * 
+	 * @param minX
+	 *            The minimum x-axis coordinate.
+	 * @param minY
+	 *            The minimum y-axis coordinate.
+	 * @param maxX
+	 *            The maximum x-axis coordinate.
+	 * @param maxY
+	 *            The maximum y-axis coordinate.
+	 */
+	public void setExtent(double minX, double minY, double maxX, double maxY) {
+
+		if(this.count > 0)
+			throw new IllegalStateException("the extent of a non-empty spatial index cannot be changed");
+
+		this.cellXs[this.root] = minX;
+		this.cellYs[this.root] = minY;
+		this.cellSizes[this.root] = side(maxX - minX, maxY - minY, minX, minY);
+
+		this.bounded = true;
+	}
+
+	@Override
+	public void add(ElementShape shape, int birth, int death) {
+
+		for(int i = 0; i < shape.getPointCount(); ++i)
+			addEntry(shape.getElement(), shape.getPointX(i), shape.getPointY(i), birth, death);
+	}
+
+	/**
+	 * Add the points of all the shapes in Z-order.
+	 * 
+	 * The extent of the quadtree is first set to the extent of the points if
+	 * the index is empty. Inserting neighbouring points consecutively then
+	 * fills the cells one after the other instead of splitting them all over
+	 * the tree.
+	 */
+	@Override
+	public void bulkLoad(List<ElementShape> shapes, int[] births, int[] deaths) {
+
+		int pointCount = 0;
+
+		for(ElementShape shape : shapes)
+			pointCount += shape.getPointCount();
+
+		if(pointCount == 0)
+			return;
+
+		// Gather the coordinates of the points and compute their extent.
+
+		double[] pointXs = new double[pointCount];
+		double[] pointYs = new double[pointCount];
+		int[] shapeIndices = new int[pointCount];
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		int point = 0;
+
+		for(int i = 0; i < shapes.size(); ++i) {
+
+			ElementShape shape = shapes.get(i);
+
+			for(int j = 0; j < shape.getPointCount(); ++j, ++point) {
+
+				pointXs[point] = shape.getPointX(j);
+				pointYs[point] = shape.getPointY(j);
+				shapeIndices[point] = i;
+
+				minX = Math.min(minX, pointXs[point]);
+				minY = Math.min(minY, pointYs[point]);
+				maxX = Math.max(maxX, pointXs[point]);
+				maxY = Math.max(maxY, pointYs[point]);
+			}
+		}
+
+		if(this.count == 0)
+			setExtent(minX, minY, maxX, maxY);
+
+		// Sort the points along the Z-order curve. The position on the curve
+		// fills the high half of the sort keys, the index of the point the low
+		// half.
+
+		long[] keys = new long[pointCount];
+
+		for(int i = 0; i < keys.length; ++i)
+			keys[i] = (zOrder(pointXs[i], pointYs[i], minX, minY, maxX, maxY) << 32) | i;
+
+		Arrays.sort(keys);
+
+		for(long key : keys) {
+
+			int i = (int)key;
+			int shape = shapeIndices[i];
+
+			addEntry(shapes.get(shape).getElement(), pointXs[i], pointYs[i], birth(births, shape), death(deaths, shape));
+		}
+	}
+
+	/**
+	 * Add references to the points of an element into the spatial index.
+	 * 
+	 * @param shape
+	 *            The element shape to insert.
+	 */
+	public void addElementPoints(ElementShape shape) {
+
+		add(shape);
+	}
+
+	@Override
+	public void addPoint(Element element, double x, double y) {
+
+		addEntry(element, x, y, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Insert a point in the quadtree.
+	 * 
+	 * @param element
+	 *            The referenced element.
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param birth
+	 *            The first step at which the point is valid.
+	 * @param death
+	 *            The first step at which the point is not valid anymore.
+	 */
+	protected void addEntry(Element element, double x, double y, int birth, int death) {
+
+		if(this.count == this.xs.length) {
+
+			this.xs = Arrays.copyOf(this.xs, this.count * 2);
+			this.ys = Arrays.copyOf(this.ys, this.count * 2);
+			this.elements = Arrays.copyOf(this.elements, this.count * 2);
+			this.births = Arrays.copyOf(this.births, this.count * 2);
+			this.deaths = Arrays.copyOf(this.deaths, this.count * 2);
+			this.nextPoints = Arrays.copyOf(this.nextPoints, this.count * 2);
+		}
+
+		int point = this.count++;
+
+		this.xs[point] = x;
+		this.ys[point] = y;
+		this.elements[point] = element;
+		this.births[point] = birth;
+		this.deaths[point] = death;
+
+		if(element != null)
+			this.referencedElements.add(element);
+
+		// Until its extent is known, the root gathers all the points.
+
+		if(!this.bounded) {
+
+			link(this.root, point);
+
+			if(this.populations[this.root] > this.pointsPerCell) {
+
+				bound();
+				split(this.root, 0);
+			}
+
+			return;
+		}
+
+		// Grow the root until it covers the point.
+
+		while(!covers(this.root, x, y))
+			growRoot(x, y);
+
+		// Go down to the leaf containing the point.
+
+		int cell = this.root;
+		int depth = 0;
+
+		while(this.subCells[4 * cell] != -1) {
+
+			cell = this.subCells[4 * cell + quadrant(cell, x, y)];
+			++depth;
+		}
+
+		link(cell, point);
+
+		if(this.populations[cell] > this.pointsPerCell && depth < this.maxDepth)
+			split(cell, depth);
+	}
+
+	/**
+	 * Give the root the extent of the points it gathered so far.
+	 */
+	protected void bound() {
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		for(int point = this.firstPoints[this.root]; point != -1; point = this.nextPoints[point]) {
+
+			minX = Math.min(minX, this.xs[point]);
+			minY = Math.min(minY, this.ys[point]);
+			maxX = Math.max(maxX, this.xs[point]);
+			maxY = Math.max(maxY, this.ys[point]);
+		}
+
+		this.cellXs[this.root] = minX;
+		this.cellYs[this.root] = minY;
+		this.cellSizes[this.root] = side(maxX - minX, maxY - minY, minX, minY);
+
+		this.bounded = true;
+	}
+
+	/**
+	 * Give the side of a square cell covering an extent, which is never null.
+	 */
+	protected static double side(double width, double height, double x, double y) {
+
+		double side = Math.max(width, height);
+
+		if(side > 0)
+			return side;
+
+		return Math.max(1, Math.max(Math.abs(x), Math.abs(y))) * 0.000001;
+	}
+
+	/**
+	 * Replace the root by a cell twice larger, extending towards a point.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate of the point.
+	 * @param y
+	 *            The y-axis coordinate of the point.
+	 */
+	protected void growRoot(double x, double y) {
+
+		double size = this.cellSizes[this.root];
+
+		boolean west = x < this.cellXs[this.root];
+		boolean south = y < this.cellYs[this.root];
+
+		double rootX = west ? this.cellXs[this.root] - size : this.cellXs[this.root];
+		double rootY = south ? this.cellYs[this.root] - size : this.cellYs[this.root];
+
+		int newRoot = newCell(rootX, rootY, 2 * size);
+
+		// The old root takes the place of the quadrant opposite to the point.
+
+		int oldQuadrant = (west ? 1 : 0) | (south ? 2 : 0);
+
+		for(int q = 0; q < 4; ++q) {
+
+			int sub = q == oldQuadrant ? this.root : newCell(rootX + (q & 1) * size, rootY + (q >> 1) * size, size);
+
+			this.subCells[4 * newRoot + q] = sub;
+		}
+
+		this.root = newRoot;
+	}
+
+	/**
+	 * Divide a leaf into four sub-cells and distribute its points among them,
+	 * dividing further the sub-cells that are still too populated.
+	 * 
+	 * @param cell
+	 *            The leaf.
+	 * @param depth
+	 *            The depth of the leaf.
+	 */
+	protected void split(int cell, int depth) {
+
+		double half = this.cellSizes[cell] / 2;
+
+		for(int q = 0; q < 4; ++q) {
+
+			int sub = newCell(this.cellXs[cell] + (q & 1) * half, this.cellYs[cell] + (q >> 1) * half, half);
+
+			this.subCells[4 * cell + q] = sub;
+		}
+
+		int point = this.firstPoints[cell];
+
+		while(point != -1) {
+
+			int next = this.nextPoints[point];
+
+			link(this.subCells[4 * cell + quadrant(cell, this.xs[point], this.ys[point])], point);
+
+			point = next;
+		}
+
+		this.firstPoints[cell] = -1;
+		this.populations[cell] = 0;
+
+		for(int q = 0; q < 4; ++q) {
+
+			int sub = this.subCells[4 * cell + q];
+
+			if(this.populations[sub] > this.pointsPerCell && depth + 1 < this.maxDepth)
+				split(sub, depth + 1);
+		}
+	}
+
+	/**
+	 * Create a new leaf.
+	 * 
+	 * @return The index of the new cell.
+	 */
+	protected int newCell(double x, double y, double size) {
+
+		if(this.cellCount == this.cellSizes.length) {
+
+			int capacity = this.cellCount * 2;
+
+			this.cellXs = Arrays.copyOf(this.cellXs, capacity);
+			this.cellYs = Arrays.copyOf(this.cellYs, capacity);
+			this.cellSizes = Arrays.copyOf(this.cellSizes, capacity);
+			this.subCells = Arrays.copyOf(this.subCells, 4 * capacity);
+			this.firstPoints = Arrays.copyOf(this.firstPoints, capacity);
+			this.populations = Arrays.copyOf(this.populations, capacity);
+		}
+
+		int cell = this.cellCount++;
+
+		this.cellXs[cell] = x;
+		this.cellYs[cell] = y;
+		this.cellSizes[cell] = size;
+
+		this.subCells[4 * cell] = -1;
+		this.firstPoints[cell] = -1;
+		this.populations[cell] = 0;
+
+		return cell;
+	}
+
+	protected void link(int cell, int point) {
+
+		this.nextPoints[point] = this.firstPoints[cell];
+		this.firstPoints[cell] = point;
+
+		++this.populations[cell];
+	}
+
+	/**
+	 * Give the quadrant of a cell containing a position.
+	 */
+	protected int quadrant(int cell, double x, double y) {
+
+		double half = this.cellSizes[cell] / 2;
+
+		int q = 0;
+
+		if(x >= this.cellXs[cell] + half)
+			q |= 1;
+
+		if(y >= this.cellYs[cell] + half)
+			q |= 2;
+
+		return q;
+	}
+
+	protected boolean covers(int cell, double x, double y) {
+
+		return x >= this.cellXs[cell] && x <= this.cellXs[cell] + this.cellSizes[cell] && y >= this.cellYs[cell] && y <= this.cellYs[cell] + this.cellSizes[cell];
+	}
+
+	/**
+	 * Give an immutable copy of the index, the points becoming degenerate
+	 * bounding boxes in a packed R-tree.
+	 */
+	@Override
+	public void writeTo(DataOutput out, Map<Element, Integer> elementIndices) throws IOException {
+
+		out.writeInt(this.pointsPerCell);
+		out.writeInt(this.maxDepth);
+
+		// The points.
+
+		writeDoubles(out, this.xs, this.count);
+		writeDoubles(out, this.ys, this.count);
+		writeElements(out, this.elements, this.count, elementIndices);
+		writeInts(out, this.births, this.count);
+		writeInts(out, this.deaths, this.count);
+		writeInts(out, this.nextPoints, this.count);
+
+		out.writeInt(this.count);
+
+		// The cells.
+
+		writeDoubles(out, this.cellXs, this.cellCount);
+		writeDoubles(out, this.cellYs, this.cellCount);
+		writeDoubles(out, this.cellSizes, this.cellCount);
+		writeInts(out, this.subCells, 4 * this.cellCount);
+		writeInts(out, this.firstPoints, this.cellCount);
+		writeInts(out, this.populations, this.cellCount);
+
+		out.writeInt(this.cellCount);
+		out.writeInt(this.root);
+		out.writeBoolean(this.bounded);
+
+		writeReferencedElements(out, this.referencedElements, elementIndices);
+	}
+
+	@Override
+	public void readFrom(ByteBuffer in, Element[] elementsByIndex) throws IOException {
+
+		checkParameter(in.getInt() == this.pointsPerCell);
+		checkParameter(in.getInt() == this.maxDepth);
+
+		double[] xs = readDoubles(in);
+		double[] ys = readDoubles(in);
+		Element[] elements = readElements(in, elementsByIndex);
+		int[] births = readInts(in);
+		int[] deaths = readInts(in);
+		int[] nextPoints = readInts(in);
+
+		int count = in.getInt();
+
+		double[] cellXs = readDoubles(in);
+		double[] cellYs = readDoubles(in);
+		double[] cellSizes = readDoubles(in);
+		int[] subCells = readInts(in);
+		int[] firstPoints = readInts(in);
+		int[] populations = readInts(in);
+
+		int cellCount = in.getInt();
+		int root = in.getInt();
+		boolean bounded = in.get() != 0;
+
+		HashSet<Element> referencedElements = readReferencedElements(in, elementsByIndex);
+
+		// Everything was decoded, replace the content of the index.
+
+		this.xs = xs;
+		this.ys = ys;
+		this.elements = elements;
+		this.births = births;
+		this.deaths = deaths;
+		this.nextPoints = nextPoints;
+		this.count = count;
+
+		this.cellXs = cellXs;
+		this.cellYs = cellYs;
+		this.cellSizes = cellSizes;
+		this.subCells = subCells;
+		this.firstPoints = firstPoints;
+		this.populations = populations;
+		this.cellCount = cellCount;
+		this.root = root;
+		this.bounded = bounded;
+
+		this.referencedElements = referencedElements;
+	}
+
+	@Override
+	public SpatialIndexSnapshot snapshot() {
+
+		return new SpatialIndexSnapshot(pointBoxes(this.xs, this.ys, this.count), this.elements, this.births, this.deaths, this.count, this.referencedElements, this.pointsPerCell, this.distanceOffset);
+	}
+
+	@Override
+	public int size() {
+
+		return this.count;
+	}
+
+	@Override
+	public void visitElementsIn(double minX, double minY, double maxX, double maxY, int step, SpatialIndexVisitor visitor) {
+
+		visitCell(this.root, minX, minY, maxX, maxY, 0, 0, Double.POSITIVE_INFINITY, step, visitor);
+	}
+
+	@Override
+	public void visitElementsWithin(double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		visitCell(this.root, x - radius, y - radius, x + radius, y + radius, x, y, radius, step, visitor);
+	}
+
+	/**
+	 * Recursively go down the quadtree through all the cells that overlap the
+	 * query and visit the points that match it.
+	 * 
+	 * Contrary to a descent along a single branch, the points lying in a
+	 * neighbouring cell are found when the query straddles a cell boundary.
+	 * 
+	 * @param cell
+	 *            The current cell of the quadtree.
+	 * @param minX
+	 *            The minimum x-axis coordinate of the rectangle.
+	 * @param minY
+	 *            The minimum y-axis coordinate of the rectangle.
+	 * @param maxX
+	 *            The maximum x-axis coordinate of the rectangle.
+	 * @param maxY
+	 *            The maximum y-axis coordinate of the rectangle.
+	 * @param x
+	 *            The x-axis coordinate of the position.
+	 * @param y
+	 *            The y-axis coordinate of the position.
+	 * @param radius
+	 *            The maximum distance, infinite to only test the rectangle.
+	 * @param step
+	 *            The time step, or ALL_STEPS.
+	 * @param visitor
+	 *            The visitor receiving the elements.
+	 * @return False if the visitor stopped the query, true otherwise.
+	 */
+	protected boolean visitCell(int cell, double minX, double minY, double maxX, double maxY, double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		if(this.subCells[4 * cell] == -1) {
+
+			for(int point = this.firstPoints[cell]; point != -1; point = this.nextPoints[point]) {
+
+				double px = this.xs[point];
+				double py = this.ys[point];
+
+				if(px < minX || px > maxX || py < minY || py > maxY)
+					continue;
+
+				if(!isAlive(this.births[point], this.deaths[point], step))
+					continue;
+
+				if(radius != Double.POSITIVE_INFINITY && distance(x, y, px, py, px, py) > radius)
+					continue;
+
+				if(!visitor.visit(this.elements[point]))
+					return false;
+			}
+		}
+		else {
+
+			// Go down the quadtree through the sub-cells overlapping the query.
+
+			for(int q = 0; q < 4; ++q) {
+
+				int sub = this.subCells[4 * cell + q];
+
+				if(this.cellXs[sub] > maxX || this.cellXs[sub] + this.cellSizes[sub] < minX || this.cellYs[sub] > maxY || this.cellYs[sub] + this.cellSizes[sub] < minY)
+					continue;
+
+				if(radius != Double.POSITIVE_INFINITY && distance(x, y, sub) > radius)
+					continue;
+
+				if(!visitCell(sub, minX, minY, maxX, maxY, x, y, radius, step, visitor))
+					return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public int getNearestElements(double x, double y, int step, int k, Element[] elements, double[] distances) {
+
+		k = Math.min(k, elements.length);
+
+		// The heap holds cells as (cell, 0) and points as (point, 1).
+
+		this.heap.clear();
+
+		this.heap.push(0, null, this.root, 0);
+
+		// Expand the closest item until enough points have been popped.
+
+		int found = 0;
+
+		while(found < k && !this.heap.isEmpty()) {
+
+			double distance = this.heap.pop();
+
+			if(this.heap.second == 1) {
+
+				found = addNearest(this.elements[this.heap.first], distance, elements, distances, found);
+			}
+			else {
+
+				int cell = this.heap.first;
+
+				if(this.subCells[4 * cell] == -1) {
+
+					for(int point = this.firstPoints[cell]; point != -1; point = this.nextPoints[point])
+						if(isAlive(this.births[point], this.deaths[point], step))
+							this.heap.push(distance(x, y, this.xs[point], this.ys[point], this.xs[point], this.ys[point]), null, point, 1);
+				}
+				else {
+
+					for(int q = 0; q < 4; ++q)
+						this.heap.push(distance(x, y, this.subCells[4 * cell + q]), null, this.subCells[4 * cell + q], 0);
+				}
+			}
+		}
+
+		this.heap.clear();
+
+		return found;
+	}
+
+	/**
+	 * Give the distance from a position to a cell of the quadtree.
+	 */
+	protected double distance(double x, double y, int cell) {
+
+		return distance(x, y, this.cellXs[cell], this.cellYs[cell], this.cellXs[cell] + this.cellSizes[cell], this.cellYs[cell] + this.cellSizes[cell]);
+	}
+
+}
@@ -0,0 +1,791 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.index;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementShape;
+
+/**
+ * A spatial index storing the bounding boxes of geometric elements in an
+ * R-tree.
+ * 
+ * Contrary to the quadtree index, the whole extent of a line or a polygon is
+ * referenced, which makes it suitable for elements that are not points.
+ * 
+ * The tree is packed with the Sort-Tile-Recursive algorithm: the entries are
+ * sorted along the x-axis, cut into vertical slices, sorted along the y-axis
+ * inside each slice and grouped into full nodes. The upper levels are built the
+ * same way from the nodes of the level below. The entries and the nodes are
+ * stored in flat arrays.
+ * 
+ * Range, radius and nearest neighbour queries only visit the nodes whose
+ * bounding box can contain results. The distance of an entry is the distance
+ * to its bounding box.
+ * 
+ * Entries added after the last packing are kept in a small pending area that
+ * is scanned linearly and the tree is packed again when it grows too large, so
+ * adding all the shapes first and querying afterwards amounts to a bulk load.
+ * 
+ * @author Merwan Achibet
+ */
+public class RTreeIndex extends SpatialIndex {
+
+	/**
+	 * The maximum number of children of a node.
+	 */
+	protected int nodeCapacity = 16;
+
+	/**
+	 * The bounding boxes of the entries (minX, minY, maxX, maxY for each
+	 * entry).
+	 */
+	protected double[] boxes;
+
+	/**
+	 * The elements referenced by the entries.
+	 */
+	protected Element[] elements;
+
+	/**
+	 * The steps during which the entries are valid, from birth (inclusive) to
+	 * death (exclusive).
+	 */
+	protected int[] births;
+
+	protected int[] deaths;
+
+	/**
+	 * The number of entries.
+	 */
+	protected int count;
+
+	/**
+	 * The number of entries covered by the packed tree. The following entries
+	 * are pending.
+	 */
+	protected int packedCount;
+
+	/**
+	 * The bounding boxes of the nodes of each level of the tree, from the
+	 * leaves to the root.
+	 */
+	protected ArrayList<double[]> levelBoxes;
+
+	/**
+	 * The number of nodes of each level of the tree.
+	 */
+	protected ArrayList<Integer> levelSizes;
+
+	/**
+	 * For each level above the leaves, the indices of the nodes of the level
+	 * below, grouped by parent node.
+	 */
+	protected ArrayList<int[]> levelChildren;
+
+	/**
+	 * The heap used by the nearest neighbour queries.
+	 */
+	protected DistanceHeap heap;
+
+	/**
+	 * Instantiate a new R-tree spatial index.
+	 */
+	public RTreeIndex() {
+
+		this.boxes = new double[4 * 64];
+		this.elements = new Element[64];
+		this.births = new int[64];
+		this.deaths = new int[64];
+
+		this.count = 0;
+		this.packedCount = 0;
+
+		this.levelBoxes = new ArrayList<double[]>();
+		this.levelSizes = new ArrayList<Integer>();
+		this.levelChildren = new ArrayList<int[]>();
+
+		this.heap = new DistanceHeap();
+	}
+
+	/**
+	 * Instantiate a new R-tree spatial index with a given node capacity.
+	 * 
+	 * @param nodeCapacity
+	 *            The maximum number of children of a node.
+	 */
+	public RTreeIndex(int nodeCapacity) {
+		this();
+
+		this.nodeCapacity = nodeCapacity;
+	}
+
+	@Override
+	public void add(ElementShape shape, int birth, int death) {
+
+		addShape(shape, birth, death);
+	}
+
+	/**
+	 * Add all the shapes and pack the tree once.
+	 * 
+	 * The Sort-Tile-Recursive packing already orders the entries spatially,
+	 * so no space-filling curve is needed here.
+	 */
+	@Override
+	public void bulkLoad(List<ElementShape> shapes, int[] births, int[] deaths) {
+
+		for(int i = 0; i < shapes.size(); ++i)
+			addShape(shapes.get(i), birth(births, i), death(deaths, i));
+
+		pack();
+	}
+
+	@Override
+	public void addPoint(Element element, double x, double y) {
+
+		addEntry(element, x, y, x, y, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Add the bounding box of the points of a shape to the pending area of
+	 * the index. Shapes without any point are ignored.
+	 * 
+	 * @param shape
+	 *            The shape.
+	 * @param birth
+	 *            The first step at which the entry is valid.
+	 * @param death
+	 *            The first step at which the entry is not valid anymore.
+	 */
+	protected void addShape(ElementShape shape, int birth, int death) {
+
+		int pointCount = shape.getPointCount();
+
+		if(pointCount == 0)
+			return;
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		for(int i = 0; i < pointCount; ++i) {
+
+			double x = shape.getPointX(i);
+			double y = shape.getPointY(i);
+
+			minX = Math.min(minX, x);
+			minY = Math.min(minY, y);
+			maxX = Math.max(maxX, x);
+			maxY = Math.max(maxY, y);
+		}
+
+		addEntry(shape.getElement(), minX, minY, maxX, maxY, birth, death);
+	}
+
+	/**
+	 * Add an entry to the pending area of the index.
+	 * 
+	 * @param element
+	 *            The referenced element.
+	 * @param minX
+	 *            The minimum x-axis coordinate of the bounding box.
+	 * @param minY
+	 *            The minimum y-axis coordinate of the bounding box.
+	 * @param maxX
+	 *            The maximum x-axis coordinate of the bounding box.
+	 * @param maxY
+	 *            The maximum y-axis coordinate of the bounding box.
+	 * @param birth
+	 *            The first step at which the entry is valid.
+	 * @param death
+	 *            The first step at which the entry is not valid anymore.
+	 */
+	protected void addEntry(Element element, double minX, double minY, double maxX, double maxY, int birth, int death) {
+
+		if(this.count == this.elements.length) {
+
+			Element[] newElements = new Element[this.count * 2];
+			System.arraycopy(this.elements, 0, newElements, 0, this.count);
+			this.elements = newElements;
+
+			double[] newBoxes = new double[this.count * 8];
+			System.arraycopy(this.boxes, 0, newBoxes, 0, this.count * 4);
+			this.boxes = newBoxes;
+
+			this.births = Arrays.copyOf(this.births, this.count * 2);
+			this.deaths = Arrays.copyOf(this.deaths, this.count * 2);
+		}
+
+		int offset = 4 * this.count;
+
+		this.boxes[offset] = minX;
+		this.boxes[offset + 1] = minY;
+		this.boxes[offset + 2] = maxX;
+		this.boxes[offset + 3] = maxY;
+
+		this.elements[this.count] = element;
+		this.births[this.count] = birth;
+		this.deaths[this.count] = death;
+
+		++this.count;
+
+		if(element != null)
+			this.referencedElements.add(element);
+	}
+
+	@Override
+	public SpatialIndexSnapshot snapshot() {
+
+		return new SpatialIndexSnapshot(this.boxes, this.elements, this.births, this.deaths, this.count, this.referencedElements, this.nodeCapacity, this.distanceOffset);
+	}
+
+	@Override
+	public void writeTo(DataOutput out, Map<Element, Integer> elementIndices) throws IOException {
+
+		out.writeInt(this.nodeCapacity);
+
+		writeDoubles(out, this.boxes, 4 * this.count);
+		writeElements(out, this.elements, this.count, elementIndices);
+		writeInts(out, this.births, this.count);
+		writeInts(out, this.deaths, this.count);
+
+		out.writeInt(this.count);
+		out.writeInt(this.packedCount);
+
+		// The levels of the packed tree.
+
+		out.writeInt(this.levelSizes.size());
+
+		for(int level = 0; level < this.levelSizes.size(); ++level) {
+
+			int size = this.levelSizes.get(level);
+
+			out.writeInt(size);
+
+			writeDoubles(out, this.levelBoxes.get(level), 4 * size);
+
+			if(level > 0)
+				writeInts(out, this.levelChildren.get(level), this.levelSizes.get(level - 1));
+		}
+
+		writeReferencedElements(out, this.referencedElements, elementIndices);
+	}
+
+	@Override
+	public void readFrom(ByteBuffer in, Element[] elementsByIndex) throws IOException {
+
+		checkParameter(in.getInt() == this.nodeCapacity);
+
+		double[] boxes = readDoubles(in);
+		Element[] elements = readElements(in, elementsByIndex);
+		int[] births = readInts(in);
+		int[] deaths = readInts(in);
+
+		int count = in.getInt();
+		int packedCount = in.getInt();
+
+		ArrayList<double[]> levelBoxes = new ArrayList<double[]>();
+		ArrayList<Integer> levelSizes = new ArrayList<Integer>();
+		ArrayList<int[]> levelChildren = new ArrayList<int[]>();
+
+		for(int level = 0, levelCount = in.getInt(); level < levelCount; ++level) {
+
+			levelSizes.add(in.getInt());
+			levelBoxes.add(readDoubles(in));
+			levelChildren.add(level > 0 ? readInts(in) : null);
+		}
+
+		HashSet<Element> referencedElements = readReferencedElements(in, elementsByIndex);
+
+		// Everything was decoded, replace the content of the index.
+
+		this.boxes = boxes;
+		this.elements = elements;
+		this.births = births;
+		this.deaths = deaths;
+		this.count = count;
+		this.packedCount = packedCount;
+
+		this.levelBoxes = levelBoxes;
+		this.levelSizes = levelSizes;
+		this.levelChildren = levelChildren;
+
+		this.referencedElements = referencedElements;
+	}
+
+	/**
+	 * Pack all the entries into the tree with the Sort-Tile-Recursive
+	 * algorithm.
+	 * 
+	 * This is called automatically by the queries when too many entries are
+	 * pending but it can be called explicitly once all the shapes have been
+	 * added.
+	 */
+	public void pack() {
+
+		this.levelBoxes.clear();
+		this.levelSizes.clear();
+		this.levelChildren.clear();
+
+		this.packedCount = this.count;
+
+		if(this.count == 0)
+			return;
+
+		// Order the entries into tiles and rearrange the arrays accordingly.
+
+		int[] order = tile(this.boxes, this.count);
+
+		double[] sortedBoxes = new double[this.boxes.length];
+		Element[] sortedElements = new Element[this.elements.length];
+		int[] sortedBirths = new int[this.births.length];
+		int[] sortedDeaths = new int[this.deaths.length];
+
+		for(int i = 0; i < this.count; ++i) {
+
+			System.arraycopy(this.boxes, 4 * order[i], sortedBoxes, 4 * i, 4);
+			sortedElements[i] = this.elements[order[i]];
+			sortedBirths[i] = this.births[order[i]];
+			sortedDeaths[i] = this.deaths[order[i]];
+		}
+
+		this.boxes = sortedBoxes;
+		this.elements = sortedElements;
+		this.births = sortedBirths;
+		this.deaths = sortedDeaths;
+
+		// Build the leaves from consecutive groups of entries.
+
+		int leafCount = (this.count + this.nodeCapacity - 1) / this.nodeCapacity;
+		double[] leafBoxes = new double[4 * leafCount];
+
+		for(int leaf = 0; leaf < leafCount; ++leaf) {
+
+			int from = leaf * this.nodeCapacity;
+			int to = Math.min(from + this.nodeCapacity, this.count);
+
+			union(this.boxes, null, from, to, leafBoxes, leaf);
+		}
+
+		this.levelBoxes.add(leafBoxes);
+		this.levelSizes.add(leafCount);
+		this.levelChildren.add(null);
+
+		// Build the upper levels until a single root remains.
+
+		while(this.levelSizes.get(this.levelSizes.size() - 1) > 1) {
+
+			double[] lowerBoxes = this.levelBoxes.get(this.levelBoxes.size() - 1);
+			int lowerCount = this.levelSizes.get(this.levelSizes.size() - 1);
+
+			int[] children = tile(lowerBoxes, lowerCount);
+
+			int nodeCount = (lowerCount + this.nodeCapacity - 1) / this.nodeCapacity;
+			double[] nodeBoxes = new double[4 * nodeCount];
+
+			for(int node = 0; node < nodeCount; ++node) {
+
+				int from = node * this.nodeCapacity;
+				int to = Math.min(from + this.nodeCapacity, lowerCount);
+
+				union(lowerBoxes, children, from, to, nodeBoxes, node);
+			}
+
+			this.levelBoxes.add(nodeBoxes);
+			this.levelSizes.add(nodeCount);
+			this.levelChildren.add(children);
+		}
+	}
+
+	/**
+	 * Give the Sort-Tile-Recursive order of a set of boxes.
+	 * 
+	 * @param boxes
+	 *            The boxes (minX, minY, maxX, maxY for each box).
+	 * @param n
+	 *            The number of boxes.
+	 * @return The indices of the boxes, ordered so that consecutive groups of
+	 *         nodeCapacity boxes are spatially close.
+	 */
+	protected int[] tile(double[] boxes, int n) {
+
+		int[] order = new int[n];
+
+		for(int i = 0; i < n; ++i)
+			order[i] = i;
+
+		// Compute the centers of the boxes.
+
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+
+		for(int i = 0; i < n; ++i) {
+
+			xs[i] = (boxes[4 * i] + boxes[4 * i + 2]) / 2;
+			ys[i] = (boxes[4 * i + 1] + boxes[4 * i + 3]) / 2;
+		}
+
+		// Cut the boxes sorted by x into vertical slices, then sort each slice
+		// by y.
+
+		int nodeCount = (n + this.nodeCapacity - 1) / this.nodeCapacity;
+		int sliceCount = (int)Math.ceil(Math.sqrt(nodeCount));
+		int sliceSize = sliceCount * this.nodeCapacity;
+
+		sort(order, 0, n, xs);
+
+		for(int from = 0; from < n; from += sliceSize)
+			sort(order, from, Math.min(from + sliceSize, n), ys);
+
+		return order;
+	}
+
+	/**
+	 * Sort a range of indices by the values they point to, with a three-way
+	 * quicksort that copes well with the many equal coordinates of gridded
+	 * data.
+	 * 
+	 * @param order
+	 *            The indices.
+	 * @param from
+	 *            The first position of the range (inclusive).
+	 * @param to
+	 *            The last position of the range (exclusive).
+	 * @param keys
+	 *            The values by index.
+	 */
+	protected static void sort(int[] order, int from, int to, double[] keys) {
+
+		while(to - from > 1) {
+
+			double pivot = keys[order[from + (to - from) / 2]];
+
+			int lt = from;
+			int gt = to - 1;
+			int i = from;
+
+			while(i <= gt) {
+
+				double key = keys[order[i]];
+
+				if(key < pivot)
+					swap(order, lt++, i++);
+				else if(key > pivot)
+					swap(order, i, gt--);
+				else
+					++i;
+			}
+
+			// Recurse on the smaller part to bound the stack depth.
+
+			if(lt - from < to - gt - 1) {
+
+				sort(order, from, lt, keys);
+				from = gt + 1;
+			}
+			else {
+
+				sort(order, gt + 1, to, keys);
+				to = lt;
+			}
+		}
+	}
+
+	protected static void swap(int[] array, int i, int j) {
+
+		int tmp = array[i];
+		array[i] = array[j];
+		array[j] = tmp;
+	}
+
+	/**
+	 * Compute the bounding box of a group of boxes.
+	 * 
+	 * @param boxes
+	 *            The boxes.
+	 * @param indices
+	 *            The indices of the boxes, or null if the group is made of
+	 *            consecutive boxes.
+	 * @param from
+	 *            The first position of the group in the indices (inclusive).
+	 * @param to
+	 *            The last position of the group in the indices (exclusive).
+	 * @param target
+	 *            The array receiving the bounding box.
+	 * @param position
+	 *            The position of the bounding box in the target array.
+	 */
+	protected static void union(double[] boxes, int[] indices, int from, int to, double[] target, int position) {
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+
+		for(int i = from; i < to; ++i) {
+
+			int offset = 4 * (indices == null ? i : indices[i]);
+
+			minX = Math.min(minX, boxes[offset]);
+			minY = Math.min(minY, boxes[offset + 1]);
+			maxX = Math.max(maxX, boxes[offset + 2]);
+			maxY = Math.max(maxY, boxes[offset + 3]);
+		}
+
+		target[4 * position] = minX;
+		target[4 * position + 1] = minY;
+		target[4 * position + 2] = maxX;
+		target[4 * position + 3] = maxY;
+	}
+
+	/**
+	 * Pack the tree again if too many entries are pending.
+	 */
+	protected void checkForPacking() {
+
+		if(this.count - this.packedCount > Math.max(this.nodeCapacity, this.packedCount / 8))
+			pack();
+	}
+
+	@Override
+	public int size() {
+
+		return this.count;
+	}
+
+	@Override
+	public void visitElementsIn(double minX, double minY, double maxX, double maxY, int step, SpatialIndexVisitor visitor) {
+
+		search(minX, minY, maxX, maxY, 0, 0, Double.POSITIVE_INFINITY, step, visitor);
+	}
+
+	@Override
+	public void visitElementsWithin(double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		search(x - radius, y - radius, x + radius, y + radius, x, y, radius, step, visitor);
+	}
+
+	/**
+	 * Visit the entries intersecting a rectangle and at a given distance of a
+	 * position or closer.
+	 * 
+	 * @param minX
+	 *            The minimum x-axis coordinate of the rectangle.
+	 * @param minY
+	 *            The minimum y-axis coordinate of the rectangle.
+	 * @param maxX
+	 *            The maximum x-axis coordinate of the rectangle.
+	 * @param maxY
+	 *            The maximum y-axis coordinate of the rectangle.
+	 * @param x
+	 *            The x-axis coordinate of the position.
+	 * @param y
+	 *            The y-axis coordinate of the position.
+	 * @param radius
+	 *            The maximum distance, infinite to only test the rectangle.
+	 * @param step
+	 *            The time step, or ALL_STEPS.
+	 * @param visitor
+	 *            The visitor receiving the elements.
+	 */
+	protected void search(double minX, double minY, double maxX, double maxY, double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		checkForPacking();
+
+		// Descend the packed tree from the root.
+
+		int top = this.levelSizes.size() - 1;
+
+		if(top >= 0)
+			for(int node = 0; node < this.levelSizes.get(top); ++node)
+				if(matches(this.levelBoxes.get(top), node, minX, minY, maxX, maxY, x, y, radius))
+					if(!searchInNode(top, node, minX, minY, maxX, maxY, x, y, radius, step, visitor))
+						return;
+
+		// Scan the pending entries.
+
+		for(int i = this.packedCount; i < this.count; ++i)
+			if(matches(this.boxes, i, minX, minY, maxX, maxY, x, y, radius) && isAlive(this.births[i], this.deaths[i], step))
+				if(!visitor.visit(this.elements[i]))
+					return;
+	}
+
+	/**
+	 * Recursively visit the entries of a node that match a query.
+	 * 
+	 * @param level
+	 *            The level of the node (0 for the leaves).
+	 * @param node
+	 *            The index of the node in its level.
+	 * @return False if the visitor stopped the query, true otherwise.
+	 */
+	protected boolean searchInNode(int level, int node, double minX, double minY, double maxX, double maxY, double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		int from = node * this.nodeCapacity;
+
+		if(level == 0) {
+
+			int to = Math.min(from + this.nodeCapacity, this.packedCount);
+
+			for(int i = from; i < to; ++i)
+				if(matches(this.boxes, i, minX, minY, maxX, maxY, x, y, radius) && isAlive(this.births[i], this.deaths[i], step))
+					if(!visitor.visit(this.elements[i]))
+						return false;
+		}
+		else {
+
+			int[] children = this.levelChildren.get(level);
+			double[] childBoxes = this.levelBoxes.get(level - 1);
+
+			int to = Math.min(from + this.nodeCapacity, this.levelSizes.get(level - 1));
+
+			for(int i = from; i < to; ++i)
+				if(matches(childBoxes, children[i], minX, minY, maxX, maxY, x, y, radius))
+					if(!searchInNode(level - 1, children[i], minX, minY, maxX, maxY, x, y, radius, step, visitor))
+						return false;
+		}
+
+		return true;
+	}
+
+	protected static boolean matches(double[] boxes, int i, double minX, double minY, double maxX, double maxY, double x, double y, double radius) {
+
+		if(!intersects(boxes, i, minX, minY, maxX, maxY))
+			return false;
+
+		if(radius == Double.POSITIVE_INFINITY)
+			return true;
+
+		return distance(boxes, i, x, y) <= radius;
+	}
+
+	/**
+	 * Give the heap used by the nearest neighbour queries of the calling
+	 * thread.
+	 * 
+	 * @return The heap.
+	 */
+	protected DistanceHeap heap() {
+
+		return this.heap;
+	}
+
+	protected static double distance(double[] boxes, int i, double x, double y) {
+
+		int offset = 4 * i;
+
+		return distance(x, y, boxes[offset], boxes[offset + 1], boxes[offset + 2], boxes[offset + 3]);
+	}
+
+	@Override
+	public int getNearestElements(double x, double y, int step, int k, Element[] elements, double[] distances) {
+
+		checkForPacking();
+
+		k = Math.min(k, elements.length);
+
+		// The heap holds nodes as (level, index) and entries as (-1, index).
+
+		DistanceHeap heap = heap();
+
+		heap.clear();
+
+		int top = this.levelSizes.size() - 1;
+
+		if(top >= 0)
+			for(int node = 0; node < this.levelSizes.get(top); ++node)
+				heap.push(distance(this.levelBoxes.get(top), node, x, y), null, top, node);
+
+		for(int i = this.packedCount; i < this.count; ++i)
+			if(isAlive(this.births[i], this.deaths[i], step))
+				heap.push(distance(this.boxes, i, x, y), null, -1, i);
+
+		// Expand the closest item until enough entries have been popped.
+
+		int found = 0;
+
+		while(found < k && !heap.isEmpty()) {
+
+			double distance = heap.pop();
+
+			int level = heap.first;
+			int node = heap.second;
+
+			if(level == -1) {
+
+				found = addNearest(this.elements[node], distance, elements, distances, found);
+			}
+			else if(level == 0) {
+
+				int from = node * this.nodeCapacity;
+				int to = Math.min(from + this.nodeCapacity, this.packedCount);
+
+				for(int i = from; i < to; ++i)
+					if(isAlive(this.births[i], this.deaths[i], step))
+						heap.push(distance(this.boxes, i, x, y), null, -1, i);
+			}
+			else {
+
+				int[] children = this.levelChildren.get(level);
+				double[] childBoxes = this.levelBoxes.get(level - 1);
+
+				int from = node * this.nodeCapacity;
+				int to = Math.min(from + this.nodeCapacity, this.levelSizes.get(level - 1));
+
+				for(int i = from; i < to; ++i)
+					heap.push(distance(childBoxes, children[i], x, y), null, level - 1, children[i]);
+			}
+		}
+
+		heap.clear();
+
+		return found;
+	}
+
+	protected static boolean intersects(double[] boxes, int i, double minX, double minY, double maxX, double maxY) {
+
+		int offset = 4 * i;
+
+		return boxes[offset] <= maxX && boxes[offset + 2] >= minX && boxes[offset + 1] <= maxY && boxes[offset + 3] >= minY;
+	}
+
+}
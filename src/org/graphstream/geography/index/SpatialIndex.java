@@ -31,229 +31,403 @@
 
 package org.graphstream.geography.index;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.graphstream.geography.Element;
 import org.graphstream.geography.ElementShape;
-import org.miv.pherd.Particle;
-import org.miv.pherd.ParticleBox;
-import org.miv.pherd.ntree.Anchor;
-import org.miv.pherd.ntree.BarycenterCellData;
-import org.miv.pherd.ntree.Cell;
-import org.miv.pherd.ntree.CellSpace;
-import org.miv.pherd.ntree.QuadtreeCellSpace;
 
 /**
- * A spatial index used to store point references to geometric elements.
+ * A spatial index used to store references to geometric elements.
  * 
  * An instance of this class is optionally used to speed up spatial querying on
- * huge sets of geographic objects.
+ * huge sets of geographic objects. Three implementations are available: a
+ * quadtree storing the points of the shapes (QuadtreeIndex), a uniform grid
+ * storing the same points for dense data (GridIndex) and an R-tree storing the
+ * bounding boxes of the shapes (RTreeIndex).
  * 
- * XXX This spatial index uses a quadtree implementation (from pherd) that does
- * not accept lines or polygons, only points. So it's not really adapted to
- * complex spatial queries like intersection tests. I think gs-geometry would be
- * better off using another quadtree implementation. Writing one from scratch
- * would be a bit of work but it would be more adapted. Or maybe there are
- * other libraries to achieve this work?
+ * Each entry is valid during an interval of time steps, from its birth
+ * (inclusive) to its death (exclusive), so that the index can be queried as it
+ * was at a given step. Queries that do not specify a step see all the entries.
  * 
- * @author Antoine Dutot
  * @author Merwan Achibet
  */
-public class SpatialIndex {
+public abstract class SpatialIndex extends SpatialIndexQuery {
 
-	/**
-	 * The container for the quadtree.
-	 */
-	protected ParticleBox box;
+	public static enum Type {
+		QUADTREE, RTREE, GRID
+	};
 
 	/**
-	 * The number of points in a single cell of the quadtree.
+	 * Instantiate a new spatial index of a given type.
+	 * 
+	 * @param type
+	 *            The type of the index.
+	 * @return The new spatial index.
 	 */
-	protected int pointsPerCell = 100;
+	public static SpatialIndex create(Type type) {
 
-	/**
-	 * The maximum depth of the quadtree.
-	 */
-	protected int maxDepth = 50;
+		if(type == Type.RTREE)
+			return new RTreeIndex();
+
+		if(type == Type.GRID)
+			return new GridIndex();
+
+		return new QuadtreeIndex();
+	}
 
 	/**
-	 * The distance at which two points are considered on the same position.
+	 * Instantiate a new spatial index of a given type and structure.
+	 * 
+	 * @param type
+	 *            The type of the index.
+	 * @param entriesPerNode
+	 *            The number of entries above which a quadtree cell is split,
+	 *            the number of children of an R-tree node or the average
+	 *            number of entries of a grid cell.
+	 * @param maxDepth
+	 *            The maximum depth of a quadtree (ignored by the others).
+	 * @return The new spatial index.
 	 */
-	protected double distanceOffset = 0.1;
+	public static SpatialIndex create(Type type, int entriesPerNode, int maxDepth) {
+
+		if(type == Type.RTREE)
+			return new RTreeIndex(entriesPerNode);
+
+		if(type == Type.GRID)
+			return new GridIndex(0, entriesPerNode);
+
+		return new QuadtreeIndex(entriesPerNode, maxDepth);
+	}
 
 	/**
-	 * The number of additions/removals before a reorganization of the quadtree
-	 * is needed.
+	 * Reference the shape of an element in the spatial index.
+	 * 
+	 * @param shape
+	 *            The element shape to insert.
 	 */
-	protected int stepsbetweenReorganizations = 1000;
+	public void add(ElementShape shape) {
+
+		add(shape, Integer.MIN_VALUE, Integer.MAX_VALUE);
+	}
 
 	/**
-	 * The number of additions/removals that occured since the last
-	 * reorganization.
+	 * Reference the shape of an element in the spatial index during an
+	 * interval of time steps.
+	 * 
+	 * @param shape
+	 *            The element shape to insert.
+	 * @param birth
+	 *            The first step at which the shape is valid.
+	 * @param death
+	 *            The first step at which the shape is not valid anymore.
 	 */
-	protected int modificationsSinceReorganization = 0;
+	public abstract void add(ElementShape shape, int birth, int death);
 
 	/**
-	 * Instantiate a new spatial index.
+	 * Reference a whole set of shapes in the spatial index at once.
+	 * 
+	 * This is faster than adding the shapes one by one since the index is
+	 * built in a single pass instead of being reorganized as it grows. The
+	 * shapes can still be added one by one afterwards.
+	 * 
+	 * @param shapes
+	 *            The element shapes to insert.
 	 */
-	public SpatialIndex() {
-
-		CellSpace space = new QuadtreeCellSpace(new Anchor(-1, -1, 0), new Anchor(1, 1, 0));
+	public void bulkLoad(List<ElementShape> shapes) {
 
-		this.box = new ParticleBox(this.pointsPerCell, space, new BarycenterCellData());
-
-		this.box.getNTree().setDepthMax(this.maxDepth);
+		bulkLoad(shapes, null, null);
 	}
 
 	/**
-	 * Add references to the points of an element into the spatial index.
+	 * Reference a whole set of shapes in the spatial index at once, each one
+	 * during an interval of time steps.
 	 * 
-	 * @param shape
-	 *            The element shape to insert.
+	 * @param shapes
+	 *            The element shapes to insert.
+	 * @param births
+	 *            The first step at which each shape is valid, or null.
+	 * @param deaths
+	 *            The first step at which each shape is not valid anymore, or
+	 *            null.
 	 */
-	public void addElementPoints(ElementShape shape) {
+	public void bulkLoad(List<ElementShape> shapes, int[] births, int[] deaths) {
 
-		List<SpatialIndexPoint> points = shape.toSpatialIndexPoints();
+		for(int i = 0; i < shapes.size(); ++i)
+			add(shapes.get(i), birth(births, i), death(deaths, i));
+	}
 
-		for(SpatialIndexPoint point : points) {
+	/**
+	 * Add a given point to the spatial index, valid at every step.
+	 * 
+	 * @param element
+	 *            The element referenced by the point.
+	 * @param x
+	 *            The x-axis coordinate of the point.
+	 * @param y
+	 *            The y-axis coordinate of the point.
+	 */
+	public abstract void addPoint(Element element, double x, double y);
 
-			this.box.addParticle(point);
+	/**
+	 * Give the position of a point along a Z-order (Morton) curve covering an
+	 * extent, so that sorting points by this value keeps neighbours close.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate of the point.
+	 * @param y
+	 *            The y-axis coordinate of the point.
+	 * @param minX
+	 *            The minimum x-axis coordinate of the extent.
+	 * @param minY
+	 *            The minimum y-axis coordinate of the extent.
+	 * @param maxX
+	 *            The maximum x-axis coordinate of the extent.
+	 * @param maxY
+	 *            The maximum y-axis coordinate of the extent.
+	 * @return The position along the curve, on 32 bits.
+	 */
+	protected static long zOrder(double x, double y, double minX, double minY, double maxX, double maxY) {
 
-			++this.modificationsSinceReorganization;
-		}
+		long cx = maxX > minX ? (long)((x - minX) / (maxX - minX) * 0xFFFF) : 0;
+		long cy = maxY > minY ? (long)((y - minY) / (maxY - minY) * 0xFFFF) : 0;
 
-		checkForReorganization();
+		return spread(cx) | (spread(cy) << 1);
 	}
 
 	/**
-	 * Add a given point to the spatial index.
-	 * 
-	 * @param point
-	 *            The point.
+	 * Insert a zero bit before each of the 16 lowest bits of a value.
 	 */
-	public void addPoint(SpatialIndexPoint point) {
+	protected static long spread(long v) {
 
-		this.box.addParticle(point);
+		v &= 0xFFFF;
 
-		++this.modificationsSinceReorganization;
-		checkForReorganization();
+		v = (v | (v << 8)) & 0x00FF00FF;
+		v = (v | (v << 4)) & 0x0F0F0F0F;
+		v = (v | (v << 2)) & 0x33333333;
+		v = (v | (v << 1)) & 0x55555555;
+
+		return v;
 	}
 
 	/**
-	 * Recompute the quadtree structure if necessary.
-	 * 
-	 * If it is called often, the quadtree will be efficiently structured but if
-	 * it is called too often the import process will be slown down a lot so an
-	 * appropriate middle ground has to be found.
+	 * Give the degenerate bounding boxes of a set of points, as expected by a
+	 * snapshot.
 	 */
-	protected void checkForReorganization() {
+	protected static double[] pointBoxes(double[] xs, double[] ys, int count) {
 
-		if(this.modificationsSinceReorganization > this.stepsbetweenReorganizations) {
+		double[] boxes = new double[4 * count];
 
-			// Reorganize the quadtree.
+		for(int point = 0; point < count; ++point) {
 
-			this.box.step();
+			boxes[4 * point] = xs[point];
+			boxes[4 * point + 1] = ys[point];
+			boxes[4 * point + 2] = xs[point];
+			boxes[4 * point + 3] = ys[point];
+		}
 
-			// Reset the counter.
+		return boxes;
+	}
 
-			this.modificationsSinceReorganization = 0;
-		}
+	protected static int birth(int[] births, int i) {
+
+		return births == null ? Integer.MIN_VALUE : births[i];
 	}
 
-	/**
-	 * Get the number of stored elements.
-	 * 
-	 * @return The number of elements.
-	 */
-	public int size() {
+	protected static int death(int[] deaths, int i) {
 
-		return this.box.getParticleCount();
+		return deaths == null ? Integer.MAX_VALUE : deaths[i];
 	}
 
 	/**
-	 * Check if an element is already stored in the spatial index.
+	 * Write the entries and the structure of the index, so that it can be
+	 * restored by {@link #readFrom(ByteBuffer, Element[])} without being
+	 * built again.
 	 * 
-	 * @param element
-	 *            The element.
-	 * @return True if the element is already in the index, false otherwise.
+	 * The elements are written as their position in a list that must be
+	 * given back when the index is read.
+	 * 
+	 * @param out
+	 *            The output.
+	 * @param elementIndices
+	 *            The position of each referenced element.
+	 * @throws IOException
 	 */
-	public boolean contains(Element element) {
-
-		return this.box.getParticle(element.getId()) != null;
-	}
+	public abstract void writeTo(DataOutput out, Map<Element, Integer> elementIndices) throws IOException;
 
 	/**
-	 * Give the elements at a specific position.
+	 * Restore the entries and the structure written by
+	 * {@link #writeTo(DataOutput, Map)}, replacing the current ones.
 	 * 
-	 * The position criterion is based on a distance calculation which depends
-	 * on the distance offset of the spatial index. This value can be
-	 * parameterized and must be chosed appropriately with the scale of the
-	 * input data.
+	 * The index must have the same structure parameters as the written one.
+	 * It is only modified once everything has been decoded.
 	 * 
-	 * @param x
-	 *            The x-axis coordinate.
-	 * @param y
-	 *            The y-axis coordinate.
-	 * @return A list of elements at this position.
+	 * @param in
+	 *            The input.
+	 * @param elementsByIndex
+	 *            The elements, by position.
+	 * @throws IOException
+	 *             If the data does not match the index.
 	 */
-	public ArrayList<Element> getElementsAt(double x, double y) {
+	public abstract void readFrom(ByteBuffer in, Element[] elementsByIndex) throws IOException;
 
-		// Start the descent from the root of the quadtree.
+	/**
+	 * Write the first values of an array and its length.
+	 */
+	protected static void writeDoubles(DataOutput out, double[] array, int used) throws IOException {
 
-		Cell root = this.box.getNTree().getRootCell();
+		out.writeInt(array.length);
+		out.writeInt(used);
 
-		return searchInCell(root, x, y);
+		for(int i = 0; i < used; ++i)
+			out.writeDouble(array[i]);
+	}
+
+	protected static void writeInts(DataOutput out, int[] array, int used) throws IOException {
+
+		out.writeInt(array.length);
+		out.writeInt(used);
+
+		for(int i = 0; i < used; ++i)
+			out.writeInt(array[i]);
+	}
+
+	protected static void writeLongs(DataOutput out, long[] array, int used) throws IOException {
+
+		out.writeInt(array.length);
+		out.writeInt(used);
+
+		for(int i = 0; i < used; ++i)
+			out.writeLong(array[i]);
+	}
+
+	protected static void writeElements(DataOutput out, Element[] array, int used, Map<Element, Integer> elementIndices) throws IOException {
+
+		out.writeInt(array.length);
+		out.writeInt(used);
+
+		for(int i = 0; i < used; ++i)
+			out.writeInt(array[i] == null ? -1 : elementIndices.get(array[i]));
+	}
+
+	protected static void writeReferencedElements(DataOutput out, HashSet<Element> referencedElements, Map<Element, Integer> elementIndices) throws IOException {
+
+		out.writeInt(referencedElements.size());
+
+		for(Element element : referencedElements)
+			out.writeInt(elementIndices.get(element));
 	}
 
 	/**
-	 * Recursively go down the quadtree until a leaf has been found and give the
-	 * list of points of that cell that are at a given position.
-	 * 
-	 * @param cell
-	 *            The current cell of the quadtree.
-	 * @param x
-	 *            The x-axis coordinate.
-	 * @param y
-	 *            The y-axis coordinate.
-	 * @return A list of elements at this position.
+	 * Read an array written by {@link #writeDoubles(DataOutput, double[], int)},
+	 * with its original length.
 	 */
-	protected ArrayList<Element> searchInCell(Cell cell, double x, double y) {
+	protected static double[] readDoubles(ByteBuffer in) throws IOException {
 
-		if(cell.isLeaf()) {
+		double[] array = new double[in.getInt()];
 
-			// If we are in a leaf, accurately select the elements at the (x,y)
-			// position.
+		int used = readUsed(in, array.length);
 
-			ArrayList<Element> elements = new ArrayList<Element>();
+		in.asDoubleBuffer().get(array, 0, used);
+		in.position(in.position() + 8 * used);
 
-			Iterator<? extends Particle> iterator = cell.getParticles();
+		return array;
+	}
 
-			while(iterator.hasNext()) {
+	protected static int[] readInts(ByteBuffer in) throws IOException {
 
-				SpatialIndexPoint point = (SpatialIndexPoint)iterator.next();
+		int[] array = new int[in.getInt()];
 
-				if(point.isAt(x, y, this.distanceOffset))
-					elements.add(point.getReferencedElement());
-			}
+		int used = readUsed(in, array.length);
 
-			return elements;
-		}
-		else {
+		in.asIntBuffer().get(array, 0, used);
+		in.position(in.position() + 4 * used);
+
+		return array;
+	}
+
+	protected static long[] readLongs(ByteBuffer in) throws IOException {
+
+		long[] array = new long[in.getInt()];
+
+		int used = readUsed(in, array.length);
+
+		in.asLongBuffer().get(array, 0, used);
+		in.position(in.position() + 8 * used);
+
+		return array;
+	}
 
-			// Otherwise, go down the quadtree through the appropriate sub-cell.
+	protected static Element[] readElements(ByteBuffer in, Element[] elementsByIndex) throws IOException {
 
-			for(int i = 0, divs = cell.getSpace().getDivisions(); i < divs; ++i) {
+		Element[] array = new Element[in.getInt()];
 
-				Cell subCell = cell.getSub(i);
+		int used = readUsed(in, array.length);
 
-				if(subCell.contains(x, y, 0))
-					return searchInCell(subCell, x, y);
-			}
+		for(int i = 0; i < used; ++i) {
+
+			int index = in.getInt();
+
+			array[i] = index == -1 ? null : elementsByIndex[index];
 		}
 
-		return null;
+		return array;
+	}
+
+	protected static HashSet<Element> readReferencedElements(ByteBuffer in, Element[] elementsByIndex) throws IOException {
+
+		int size = in.getInt();
+
+		HashSet<Element> referencedElements = new HashSet<Element>(size * 4 / 3 + 1);
+
+		for(int i = 0; i < size; ++i)
+			referencedElements.add(elementsByIndex[in.getInt()]);
+
+		return referencedElements;
+	}
+
+	protected static int readUsed(ByteBuffer in, int length) throws IOException {
+
+		int used = in.getInt();
+
+		if(used < 0 || used > length)
+			throw new IOException("bad spatial index array");
+
+		return used;
+	}
+
+	/**
+	 * Check that a structure parameter read from the input matches the one
+	 * of the index.
+	 */
+	protected static void checkParameter(boolean matches) throws IOException {
+
+		if(!matches)
+			throw new IOException("the spatial index does not match");
+	}
+
+	/**
+	 * Give an immutable copy of the index that can be queried from several
+	 * threads at the same time.
+	 * 
+	 * @return The snapshot.
+	 */
+	public abstract SpatialIndexSnapshot snapshot();
+
+	/**
+	 * Set the distance at which two points are considered on the same
+	 * position.
+	 * 
+	 * @param distanceOffset
+	 *            The distance offset.
+	 */
+	public void setDistanceOffset(double distanceOffset) {
+
+		this.distanceOffset = distanceOffset;
 	}
 
 }
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.graphstream.geography.Element;
+
+/**
+ * The queries of a spatial index.
+ * 
+ * This type gives no way to modify the entries, it is shared by the spatial
+ * indexes and by their immutable snapshots.
+ * 
+ * @author Merwan Achibet
+ */
+public abstract class SpatialIndexQuery {
+
+	/**
+	 * The step given to queries that must see the entries of all the steps.
+	 */
+	public static final int ALL_STEPS = Integer.MIN_VALUE;
+
+	/**
+	 * The distance at which two points are considered on the same position.
+	 */
+	protected double distanceOffset = 0.1;
+
+	/**
+	 * The elements referenced at least once in the index.
+	 */
+	protected HashSet<Element> referencedElements = new HashSet<Element>();
+
+	/**
+	 * Get the number of stored entries.
+	 * 
+	 * @return The number of entries.
+	 */
+	public abstract int size();
+
+	/**
+	 * Check if an element is already stored in the spatial index.
+	 * 
+	 * @param element
+	 *            The element.
+	 * @return True if the element is already in the index, false otherwise.
+	 */
+	public boolean contains(Element element) {
+
+		return this.referencedElements.contains(element);
+	}
+
+	/**
+	 * Give the elements at a specific position.
+	 * 
+	 * The position criterion is based on a distance calculation which depends
+	 * on the distance offset of the spatial index. This value can be
+	 * parameterized and must be chosed appropriately with the scale of the
+	 * input data.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @return A list of elements at this position.
+	 */
+	public ArrayList<Element> getElementsAt(double x, double y) {
+
+		return getElementsAt(x, y, ALL_STEPS);
+	}
+
+	/**
+	 * Give the elements at a specific position at a given time step.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param step
+	 *            The time step.
+	 * @return A list of elements at this position.
+	 */
+	public ArrayList<Element> getElementsAt(double x, double y, int step) {
+
+		final ArrayList<Element> elements = new ArrayList<Element>();
+
+		visitElementsIn(x - this.distanceOffset, y - this.distanceOffset, x + this.distanceOffset, y + this.distanceOffset, step, new SpatialIndexVisitor() {
+
+			public boolean visit(Element element) {
+
+				elements.add(element);
+
+				return true;
+			}
+		});
+
+		return elements;
+	}
+
+	/**
+	 * Visit the elements which intersect a rectangle.
+	 * 
+	 * @param minX
+	 *            The minimum x-axis coordinate of the rectangle.
+	 * @param minY
+	 *            The minimum y-axis coordinate of the rectangle.
+	 * @param maxX
+	 *            The maximum x-axis coordinate of the rectangle.
+	 * @param maxY
+	 *            The maximum y-axis coordinate of the rectangle.
+	 * @param visitor
+	 *            The visitor receiving the elements.
+	 */
+	public void visitElementsIn(double minX, double minY, double maxX, double maxY, SpatialIndexVisitor visitor) {
+
+		visitElementsIn(minX, minY, maxX, maxY, ALL_STEPS, visitor);
+	}
+
+	/**
+	 * Visit the elements which intersect a rectangle at a given time step.
+	 * 
+	 * @param minX
+	 *            The minimum x-axis coordinate of the rectangle.
+	 * @param minY
+	 *            The minimum y-axis coordinate of the rectangle.
+	 * @param maxX
+	 *            The maximum x-axis coordinate of the rectangle.
+	 * @param maxY
+	 *            The maximum y-axis coordinate of the rectangle.
+	 * @param step
+	 *            The time step, or ALL_STEPS.
+	 * @param visitor
+	 *            The visitor receiving the elements.
+	 */
+	public abstract void visitElementsIn(double minX, double minY, double maxX, double maxY, int step, SpatialIndexVisitor visitor);
+
+	/**
+	 * Visit the elements at a given distance of a position or closer.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param radius
+	 *            The maximum distance.
+	 * @param visitor
+	 *            The visitor receiving the elements.
+	 */
+	public void visitElementsWithin(double x, double y, double radius, SpatialIndexVisitor visitor) {
+
+		visitElementsWithin(x, y, radius, ALL_STEPS, visitor);
+	}
+
+	/**
+	 * Visit the elements at a given distance of a position or closer, at a
+	 * given time step.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param radius
+	 *            The maximum distance.
+	 * @param step
+	 *            The time step, or ALL_STEPS.
+	 * @param visitor
+	 *            The visitor receiving the elements.
+	 */
+	public abstract void visitElementsWithin(double x, double y, double radius, int step, SpatialIndexVisitor visitor);
+
+	/**
+	 * Find the elements closest to a position, from the closest to the
+	 * farthest.
+	 * 
+	 * The index is explored best-first and each element is reported once,
+	 * with the distance of its closest entry. The results are written in
+	 * buffers supplied by the caller.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param k
+	 *            The maximum number of elements to find, bounded by the size
+	 *            of the buffer.
+	 * @param elements
+	 *            The buffer receiving the elements.
+	 * @param distances
+	 *            The buffer receiving the distances, or null.
+	 * @return The number of elements found.
+	 */
+	public int getNearestElements(double x, double y, int k, Element[] elements, double[] distances) {
+
+		return getNearestElements(x, y, ALL_STEPS, k, elements, distances);
+	}
+
+	/**
+	 * Find the elements closest to a position at a given time step, from the
+	 * closest to the farthest.
+	 * 
+	 * @param x
+	 *            The x-axis coordinate.
+	 * @param y
+	 *            The y-axis coordinate.
+	 * @param step
+	 *            The time step, or ALL_STEPS.
+	 * @param k
+	 *            The maximum number of elements to find, bounded by the size
+	 *            of the buffer.
+	 * @param elements
+	 *            The buffer receiving the elements.
+	 * @param distances
+	 *            The buffer receiving the distances, or null.
+	 * @return The number of elements found.
+	 */
+	public abstract int getNearestElements(double x, double y, int step, int k, Element[] elements, double[] distances);
+
+	/**
+	 * Check if an entry is valid at a given time step.
+	 * 
+	 * @param birth
+	 *            The first step at which the entry is valid.
+	 * @param death
+	 *            The first step at which the entry is not valid anymore.
+	 * @param step
+	 *            The time step, or ALL_STEPS.
+	 * @return True if the entry is valid at the step.
+	 */
+	protected static boolean isAlive(int birth, int death, int step) {
+
+		return step == ALL_STEPS || (birth <= step && step < death);
+	}
+
+	/**
+	 * Give the distance from a position to a rectangle.
+	 * 
+	 * @return The distance, zero if the position is inside the rectangle.
+	 */
+	protected static double distance(double x, double y, double minX, double minY, double maxX, double maxY) {
+
+		double dx = Math.max(0, Math.max(minX - x, x - maxX));
+		double dy = Math.max(0, Math.max(minY - y, y - maxY));
+
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Record a result of a nearest neighbour query unless its element has
+	 * already been found through a closer entry.
+	 * 
+	 * @return The new number of results.
+	 */
+	protected static int addNearest(Element element, double distance, Element[] elements, double[] distances, int found) {
+
+		for(int i = 0; i < found; ++i)
+			if(elements[i] == element)
+				return found;
+
+		elements[found] = element;
+
+		if(distances != null)
+			distances[found] = distance;
+
+		return found + 1;
+	}
+
+	/**
+	 * Give the distance at which two points are considered on the same
+	 * position.
+	 * 
+	 * @return The distance offset.
+	 */
+	public double getDistanceOffset() {
+
+		return this.distanceOffset;
+	}
+
+}
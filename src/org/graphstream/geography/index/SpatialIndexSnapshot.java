@@ -0,0 +1,143 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.index;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.graphstream.geography.Element;
+
+/**
+ * An immutable, read-optimized copy of a spatial index.
+ * 
+ * A snapshot is a fully packed R-tree stored in flat arrays that are never
+ * modified once built, so any number of threads can query it without locking
+ * once it has been safely published (through a volatile field for example).
+ * The nearest neighbour queries use one heap per thread. A snapshot only
+ * exposes the queries of a spatial index.
+ * 
+ * A writer keeps filling the original index and takes a new snapshot when
+ * the readers must see the changes, then publishes it in place of the old
+ * one.
+ * 
+ * @author Merwan Achibet
+ */
+public class SpatialIndexSnapshot extends SpatialIndexQuery {
+
+	/**
+	 * The packed R-tree holding the entries. It is never modified once built
+	 * and never handed out.
+	 */
+	protected final RTreeIndex tree;
+
+	/**
+	 * Copy the entries of an index and pack them.
+	 * 
+	 * @param boxes
+	 *            The bounding boxes of the entries.
+	 * @param elements
+	 *            The elements referenced by the entries.
+	 * @param births
+	 *            The first step at which each entry is valid.
+	 * @param deaths
+	 *            The first step at which each entry is not valid anymore.
+	 * @param count
+	 *            The number of entries.
+	 * @param referencedElements
+	 *            The elements referenced by the index.
+	 * @param nodeCapacity
+	 *            The maximum number of children of a node.
+	 * @param distanceOffset
+	 *            The distance at which two points are considered on the same
+	 *            position.
+	 */
+	SpatialIndexSnapshot(double[] boxes, Element[] elements, int[] births, int[] deaths, int count, HashSet<Element> referencedElements, int nodeCapacity, double distanceOffset) {
+
+		// The tree uses one heap per thread for the nearest neighbour queries.
+
+		this.tree = new RTreeIndex(nodeCapacity) {
+
+			protected final ThreadLocal<DistanceHeap> heaps = new ThreadLocal<DistanceHeap>() {
+
+				@Override
+				protected DistanceHeap initialValue() {
+
+					return new DistanceHeap();
+				}
+			};
+
+			@Override
+			protected DistanceHeap heap() {
+
+				return this.heaps.get();
+			}
+		};
+
+		this.tree.boxes = Arrays.copyOf(boxes, 4 * count);
+		this.tree.elements = Arrays.copyOf(elements, count);
+		this.tree.births = Arrays.copyOf(births, count);
+		this.tree.deaths = Arrays.copyOf(deaths, count);
+		this.tree.count = count;
+		this.tree.heap = null;
+
+		this.tree.pack();
+
+		this.referencedElements = new HashSet<Element>(referencedElements);
+
+		this.distanceOffset = distanceOffset;
+	}
+
+	@Override
+	public int size() {
+
+		return this.tree.size();
+	}
+
+	@Override
+	public void visitElementsIn(double minX, double minY, double maxX, double maxY, int step, SpatialIndexVisitor visitor) {
+
+		this.tree.visitElementsIn(minX, minY, maxX, maxY, step, visitor);
+	}
+
+	@Override
+	public void visitElementsWithin(double x, double y, double radius, int step, SpatialIndexVisitor visitor) {
+
+		this.tree.visitElementsWithin(x, y, radius, step, visitor);
+	}
+
+	@Override
+	public int getNearestElements(double x, double y, int step, int k, Element[] elements, double[] distances) {
+
+		return this.tree.getNearestElements(x, y, step, k, elements, distances);
+	}
+
+}
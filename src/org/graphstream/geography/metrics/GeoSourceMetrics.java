@@ -0,0 +1,514 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Timers and counters describing the work done by a geo source.
+ * 
+ * Each phase of the import (opening, traversing and closing the input files,
+ * first and second pass of the read, playback of the time steps) is timed and
+ * the main quantities (scanned and matched features, diffs, missing node
+ * references, emitted events) are counted. The metrics can be exported as an
+ * MBean to be watched with any JMX console.
+ * 
+ * The messages printed during the import also go through this class so that a
+ * faulty input file cannot flood the console: no more than a given number of
+ * messages are printed each second, the others are only counted.
+ * 
+ * @author Merwan Achibet
+ */
+public class GeoSourceMetrics implements GeoSourceMetricsMBean {
+
+	/**
+	 * The timed phases of an import.
+	 */
+	public static enum Phase {
+		OPEN, TRAVERSE, CLOSE, FIRST_PASS, SECOND_PASS, INDEX_BUILD, CACHE_LOAD, CACHE_STORE, STEP, SEEK
+	};
+
+	/**
+	 * The counted quantities of an import.
+	 */
+	public static enum Counter {
+		FEATURES_SCANNED, DIFFS_CREATED, EMPTY_DIFFS_DROPPED, MISSING_NODE_REFS, EVENTS_EMITTED
+	};
+
+	/**
+	 * Accumulated time of each phase, in nanoseconds.
+	 */
+	protected AtomicLongArray phaseTimes;
+
+	/**
+	 * Number of calls of each phase.
+	 */
+	protected AtomicLongArray phaseCalls;
+
+	/**
+	 * Time of the last played time step, in nanoseconds.
+	 */
+	protected volatile long lastStepTime;
+
+	/**
+	 * Value of each counter.
+	 */
+	protected AtomicLongArray counters;
+
+	/**
+	 * Number of matched features, indexed by the category of the descriptor
+	 * that matched them.
+	 */
+	protected ConcurrentHashMap<String, AtomicLong> featuresMatched;
+
+	/**
+	 * Number of messages that were not printed because of rate limiting.
+	 */
+	protected AtomicLong suppressedMessages;
+
+	/**
+	 * Maximum number of messages printed per second.
+	 */
+	protected volatile int maxMessagesPerSecond = 10;
+
+	/**
+	 * Should progress messages be printed?
+	 */
+	protected volatile boolean verbose = true;
+
+	/**
+	 * Start of the current one second window of the rate limiter.
+	 */
+	protected long windowStart;
+
+	/**
+	 * Number of messages printed in the current window.
+	 */
+	protected int messagesInWindow;
+
+	/**
+	 * Number of messages suppressed in the current window.
+	 */
+	protected int suppressedInWindow;
+
+	/**
+	 * The name under which the metrics are registered as an MBean.
+	 */
+	protected ObjectName objectName;
+
+	/**
+	 * Instantiate a new set of metrics.
+	 */
+	public GeoSourceMetrics() {
+
+		this.phaseTimes = new AtomicLongArray(Phase.values().length);
+		this.phaseCalls = new AtomicLongArray(Phase.values().length);
+
+		this.counters = new AtomicLongArray(Counter.values().length);
+
+		this.featuresMatched = new ConcurrentHashMap<String, AtomicLong>();
+
+		this.suppressedMessages = new AtomicLong();
+	}
+
+	/**
+	 * Give the start time of a phase, to be given back to
+	 * {@link #stop(Phase, long)} once the phase is over.
+	 * 
+	 * @return The current time in nanoseconds.
+	 */
+	public long start() {
+
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record the end of a phase.
+	 * 
+	 * @param phase
+	 *            The phase.
+	 * @param start
+	 *            The start time given by {@link #start()}.
+	 */
+	public void stop(Phase phase, long start) {
+
+		long elapsed = System.nanoTime() - start;
+
+		this.phaseTimes.addAndGet(phase.ordinal(), elapsed);
+		this.phaseCalls.incrementAndGet(phase.ordinal());
+
+		if(phase == Phase.STEP)
+			this.lastStepTime = elapsed;
+	}
+
+	/**
+	 * Increment a counter.
+	 * 
+	 * @param counter
+	 *            The counter.
+	 */
+	public void increment(Counter counter) {
+
+		this.counters.incrementAndGet(counter.ordinal());
+	}
+
+	/**
+	 * Record a feature matched by the descriptor of a given category.
+	 * 
+	 * @param category
+	 *            The category of the descriptor.
+	 */
+	public void matched(String category) {
+
+		AtomicLong count = this.featuresMatched.get(category);
+
+		if(count == null) {
+
+			AtomicLong newCount = new AtomicLong();
+
+			count = this.featuresMatched.putIfAbsent(category, newCount);
+
+			if(count == null)
+				count = newCount;
+		}
+
+		count.incrementAndGet();
+	}
+
+	/**
+	 * Give the accumulated time of a phase.
+	 * 
+	 * @param phase
+	 *            The phase.
+	 * @return The time in milliseconds.
+	 */
+	public double getTime(Phase phase) {
+
+		return this.phaseTimes.get(phase.ordinal()) / 1e6;
+	}
+
+	/**
+	 * Give the value of a counter.
+	 * 
+	 * @param counter
+	 *            The counter.
+	 * @return The value.
+	 */
+	public long get(Counter counter) {
+
+		return this.counters.get(counter.ordinal());
+	}
+
+	/**
+	 * Print a progress message on the standard output, if the source is
+	 * verbose and the rate limit allows it.
+	 * 
+	 * @param format
+	 *            The format of the message.
+	 * @param args
+	 *            The arguments of the format.
+	 */
+	public void info(String format, Object... args) {
+
+		if(this.verbose)
+			print(System.out, format, args);
+	}
+
+	/**
+	 * Print a warning on the error output, if the rate limit allows it.
+	 * 
+	 * @param format
+	 *            The format of the message.
+	 * @param args
+	 *            The arguments of the format.
+	 */
+	public void warning(String format, Object... args) {
+
+		print(System.err, format, args);
+	}
+
+	/**
+	 * Print a message if the rate limit allows it. When a new window opens,
+	 * the number of messages suppressed during the previous one is reported.
+	 * 
+	 * @param out
+	 *            The stream to print to.
+	 * @param format
+	 *            The format of the message.
+	 * @param args
+	 *            The arguments of the format.
+	 */
+	protected synchronized void print(PrintStream out, String format, Object... args) {
+
+		long now = System.currentTimeMillis();
+
+		if(now - this.windowStart >= 1000) {
+
+			if(this.suppressedInWindow > 0)
+				System.err.printf("(%d messages suppressed)%n", this.suppressedInWindow);
+
+			this.windowStart = now;
+			this.messagesInWindow = 0;
+			this.suppressedInWindow = 0;
+		}
+
+		if(this.messagesInWindow < this.maxMessagesPerSecond) {
+
+			++this.messagesInWindow;
+
+			out.printf(format, args);
+			out.println();
+		}
+		else {
+
+			++this.suppressedInWindow;
+
+			this.suppressedMessages.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Register the metrics as an MBean on the platform MBean server.
+	 * 
+	 * @param name
+	 *            The name of the source, used in the name of the MBean.
+	 */
+	public void register(String name) {
+
+		try {
+
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+			this.objectName = new ObjectName("org.graphstream.geography:type=GeoSource,name=" + ObjectName.quote(name));
+
+			server.registerMBean(this, this.objectName);
+		}
+		catch (Exception e) {
+
+			throw new RuntimeException("JMX error : " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Unregister the metrics from the platform MBean server.
+	 */
+	public void unregister() {
+
+		if(this.objectName == null)
+			return;
+
+		try {
+
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+
+			this.objectName = null;
+		}
+		catch (Exception e) {
+
+			throw new RuntimeException("JMX error : " + e.getMessage());
+		}
+	}
+
+	public double getOpenTime() {
+
+		return getTime(Phase.OPEN);
+	}
+
+	public double getTraverseTime() {
+
+		return getTime(Phase.TRAVERSE);
+	}
+
+	public double getCloseTime() {
+
+		return getTime(Phase.CLOSE);
+	}
+
+	public double getFirstPassTime() {
+
+		return getTime(Phase.FIRST_PASS);
+	}
+
+	public double getSecondPassTime() {
+
+		return getTime(Phase.SECOND_PASS);
+	}
+
+	public double getIndexBuildTime() {
+
+		return getTime(Phase.INDEX_BUILD);
+	}
+
+	public double getCacheLoadTime() {
+
+		return getTime(Phase.CACHE_LOAD);
+	}
+
+	public double getCacheStoreTime() {
+
+		return getTime(Phase.CACHE_STORE);
+	}
+
+	public double getStepTime() {
+
+		return getTime(Phase.STEP);
+	}
+
+	public double getSeekTime() {
+
+		return getTime(Phase.SEEK);
+	}
+
+	public long getSeekCount() {
+
+		return this.phaseCalls.get(Phase.SEEK.ordinal());
+	}
+
+	public double getLastStepTime() {
+
+		return this.lastStepTime / 1e6;
+	}
+
+	public long getStepCount() {
+
+		return this.phaseCalls.get(Phase.STEP.ordinal());
+	}
+
+	public long getFeaturesScanned() {
+
+		return get(Counter.FEATURES_SCANNED);
+	}
+
+	public Map<String, Long> getFeaturesMatched() {
+
+		HashMap<String, Long> matched = new HashMap<String, Long>();
+
+		for(Entry<String, AtomicLong> entry : this.featuresMatched.entrySet())
+			matched.put(entry.getKey(), entry.getValue().get());
+
+		return matched;
+	}
+
+	public long getDiffsCreated() {
+
+		return get(Counter.DIFFS_CREATED);
+	}
+
+	public long getEmptyDiffsDropped() {
+
+		return get(Counter.EMPTY_DIFFS_DROPPED);
+	}
+
+	public long getMissingNodeRefs() {
+
+		return get(Counter.MISSING_NODE_REFS);
+	}
+
+	public long getEventsEmitted() {
+
+		return get(Counter.EVENTS_EMITTED);
+	}
+
+	public long getSuppressedMessages() {
+
+		return this.suppressedMessages.get();
+	}
+
+	public int getMaxMessagesPerSecond() {
+
+		return this.maxMessagesPerSecond;
+	}
+
+	public void setMaxMessagesPerSecond(int maxMessagesPerSecond) {
+
+		this.maxMessagesPerSecond = maxMessagesPerSecond;
+	}
+
+	public boolean isVerbose() {
+
+		return this.verbose;
+	}
+
+	public void setVerbose(boolean verbose) {
+
+		this.verbose = verbose;
+	}
+
+	public void reset() {
+
+		for(int i = 0; i < this.phaseTimes.length(); ++i) {
+			this.phaseTimes.set(i, 0);
+			this.phaseCalls.set(i, 0);
+		}
+
+		for(int i = 0; i < this.counters.length(); ++i)
+			this.counters.set(i, 0);
+
+		this.featuresMatched.clear();
+
+		this.suppressedMessages.set(0);
+
+		this.lastStepTime = 0;
+	}
+
+	@Override
+	public String toString() {
+
+		String s = new String();
+
+		s += "GeoSourceMetrics";
+
+		s += String.format(" | open: %.1fms | traverse: %.1fms | close: %.1fms", getOpenTime(), getTraverseTime(), getCloseTime());
+		s += String.format(" | first pass: %.1fms | second pass: %.1fms | index build: %.1fms", getFirstPassTime(), getSecondPassTime(), getIndexBuildTime());
+		s += String.format(" | cache load: %.1fms | cache store: %.1fms", getCacheLoadTime(), getCacheStoreTime());
+		s += String.format(" | steps: %d in %.1fms", getStepCount(), getStepTime());
+		s += String.format(" | seeks: %d in %.1fms", getSeekCount(), getSeekTime());
+
+		s += " | features: " + getFeaturesScanned() + " scanned, " + getFeaturesMatched() + " matched";
+		s += " | diffs: " + getDiffsCreated() + " created, " + getEmptyDiffsDropped() + " dropped";
+		s += " | missing node refs: " + getMissingNodeRefs();
+		s += " | events: " + getEventsEmitted();
+
+		return s;
+	}
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the metrics collected by a geo source.
+ * 
+ * Times are given in milliseconds and accumulated over all the calls of a
+ * phase since the creation of the source (or since the last reset).
+ * 
+ * @author Merwan Achibet
+ */
+public interface GeoSourceMetricsMBean {
+
+	/**
+	 * Give the time spent opening the input files.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getOpenTime();
+
+	/**
+	 * Give the time spent going through the content of the input files.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getTraverseTime();
+
+	/**
+	 * Give the time spent closing the input files.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getCloseTime();
+
+	/**
+	 * Give the time spent in the first pass of the import (aggregation and
+	 * creation of the elements).
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getFirstPassTime();
+
+	/**
+	 * Give the time spent in the second pass of the import (computation of the
+	 * diffs).
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getSecondPassTime();
+
+	/**
+	 * Give the time spent building the spatial index.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getIndexBuildTime();
+
+	/**
+	 * Give the time spent loading the result of the import from the cache.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getCacheLoadTime();
+
+	/**
+	 * Give the time spent writing the result of the import to the cache.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getCacheStoreTime();
+
+	/**
+	 * Give the time spent playing all the time steps so far.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getStepTime();
+
+	/**
+	 * Give the time spent playing the last time step.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getLastStepTime();
+
+	/**
+	 * Give the number of time steps played so far.
+	 * 
+	 * @return The number of steps.
+	 */
+	long getStepCount();
+
+	/**
+	 * Give the time spent seeking time steps, or undoing them, so far.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	double getSeekTime();
+
+	/**
+	 * Give the number of seeks so far, the undone steps included.
+	 * 
+	 * @return The number of seeks.
+	 */
+	long getSeekCount();
+
+	/**
+	 * Give the number of geographic features read from the input files.
+	 * 
+	 * @return The number of features.
+	 */
+	long getFeaturesScanned();
+
+	/**
+	 * Give the number of features matched by each descriptor, indexed by the
+	 * category of the descriptor.
+	 * 
+	 * @return The number of matched features per category.
+	 */
+	Map<String, Long> getFeaturesMatched();
+
+	/**
+	 * Give the number of diffs added to the diff chains of the elements.
+	 * 
+	 * @return The number of diffs.
+	 */
+	long getDiffsCreated();
+
+	/**
+	 * Give the number of diffs dropped because they did not represent any
+	 * change.
+	 * 
+	 * @return The number of empty diffs.
+	 */
+	long getEmptyDiffsDropped();
+
+	/**
+	 * Give the number of references to nodes that could not be resolved.
+	 * 
+	 * @return The number of missing node references.
+	 */
+	long getMissingNodeRefs();
+
+	/**
+	 * Give the number of events sent to the sinks.
+	 * 
+	 * @return The number of events.
+	 */
+	long getEventsEmitted();
+
+	/**
+	 * Give the number of log messages that were not printed because of rate
+	 * limiting.
+	 * 
+	 * @return The number of suppressed messages.
+	 */
+	long getSuppressedMessages();
+
+	/**
+	 * Give the maximum number of log messages printed per second.
+	 * 
+	 * @return The number of messages.
+	 */
+	int getMaxMessagesPerSecond();
+
+	/**
+	 * Set the maximum number of log messages printed per second.
+	 * 
+	 * @param maxMessagesPerSecond
+	 *            The number of messages.
+	 */
+	void setMaxMessagesPerSecond(int maxMessagesPerSecond);
+
+	/**
+	 * Check if progress messages (like the current time step) are printed.
+	 * 
+	 * @return True if progress messages are printed, false otherwise.
+	 */
+	boolean isVerbose();
+
+	/**
+	 * Print or hide progress messages.
+	 * 
+	 * @param verbose
+	 *            True to print progress messages, false to hide them.
+	 */
+	void setVerbose(boolean verbose);
+
+	/**
+	 * Reset all the timers and counters.
+	 */
+	void reset();
+
+}
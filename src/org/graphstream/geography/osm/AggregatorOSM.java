@@ -41,6 +41,7 @@ import org.graphstream.geography.ElementDescriptor;
 import org.graphstream.geography.FileDescriptor;
 import org.graphstream.geography.GeoSource;
 import org.graphstream.geography.Vertex;
+import org.graphstream.geography.metrics.GeoSourceMetrics.Counter;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -104,6 +105,8 @@ public class AggregatorOSM extends Aggregator {
 
 			nu.xom.Element xmlElement = xmlElements.get(i);
 
+			this.source.getMetrics().increment(Counter.FEATURES_SCANNED);
+
 			for(ElementDescriptor descriptor : fileDescriptor.getDescriptors())
 				if(descriptor.matches(xmlElement, this)) {
 
@@ -319,7 +322,8 @@ public class AggregatorOSM extends Aggregator {
 			
 			if(coord != null)
 				vertices.add(new Vertex(coord.x, coord.y, nodeId));
-			else System.err.printf("ignoring coord for node %s, referenced in line, but not found%n", nodeId);
+			else
+				sourceOSM.getMetrics().warning("ignoring coord for node %s, referenced in line, but not found", nodeId);
 		}
 		
 		return vertices;
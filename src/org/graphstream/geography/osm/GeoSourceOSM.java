@@ -34,6 +34,7 @@ package org.graphstream.geography.osm;
 import java.util.HashMap;
 
 import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.metrics.GeoSourceMetrics.Counter;
 
 import com.vividsolutions.jts.geom.Coordinate;
 
@@ -95,7 +96,8 @@ public abstract class GeoSourceOSM extends GeoSource {
 		if(coo != null)
 			return new Coordinate(this.nodePositions.get(id));
 		else {
-			System.err.printf("cannot find node position id %s%n", id);
+			this.metrics.increment(Counter.MISSING_NODE_REFS);
+			this.metrics.warning("cannot find node position id %s", id);
 			//return new Coordinate(0, 0);
 			return null;
 			//throw new RuntimeException("XXX");
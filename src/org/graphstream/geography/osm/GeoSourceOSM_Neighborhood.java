@@ -33,39 +33,139 @@ package org.graphstream.geography.osm;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.graphstream.geography.AttributeFilter;
+import org.graphstream.geography.Element;
 import org.graphstream.geography.ElementDescriptor;
 import org.graphstream.geography.ElementShape;
 import org.graphstream.geography.ElementDiff;
 import org.graphstream.geography.FileDescriptor;
 import org.graphstream.geography.Polygon;
+import org.graphstream.geography.index.SpatialIndex;
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.triangulate.DelaunayTriangulationBuilder;
+import com.vividsolutions.jts.triangulate.quadedge.QuadEdge;
+import com.vividsolutions.jts.triangulate.quadedge.QuadEdgeSubdivision;
+import com.vividsolutions.jts.triangulate.quadedge.Vertex;
 
 /**
  * This geographical source implementation produces a neighborhood graph
  * according to euclidean distance.
  * 
  * The user needs to specify the distance threshold under which two buildings
- * are considered neighbors.
+ * are considered neighbors. The distance is measured between the centroids of
+ * the buildings by default. It can also be measured between their footprints,
+ * which is exact for large or elongated buildings: the candidates are first
+ * pruned with the envelopes of the footprints, and the exact distance
+ * computation stops as soon as the footprints are known to be close enough.
+ * 
+ * Instead of a radius, the neighborhood can also be the Delaunay triangulation
+ * of the centroids, its Gabriel subgraph or the k nearest neighbors of each
+ * centroid. These do not depend on a distance threshold, so that the number
+ * of edges stays proportional to the number of buildings whatever the
+ * density. They are computed over all the buildings at the end of each time
+ * step, in O(n log n), and only the edges that changed are sent.
+ * 
+ * The neighbors of each building are recorded, so that a building which moves
+ * keeps its node and only gains or loses the edges that changed.
+ * 
+ * When a time step only inserts buildings in an empty graph, as the first
+ * step does, the buildings are placed in bulk: the neighbor pairs are computed
+ * tile by tile on several threads and the edges are sent once all the nodes
+ * have been placed.
  * 
  * @author Merwan Achibet
  */
 public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 
+	/**
+	 * The definitions of the neighborhood of a building.
+	 */
+	public static enum NeighborhoodType {
+		RADIUS, DELAUNAY, GABRIEL, K_NEAREST
+	};
+
+	/**
+	 * The ways of measuring the distance between two buildings.
+	 */
+	public static enum DistanceMode {
+		CENTROID, FOOTPRINT
+	};
+
 	/**
 	 * The neighborhood radius. If two buildings are separated by a distance
 	 * less than this threshold, then they are considered neighbors.
 	 */
 	protected double radius;
 
+	/**
+	 * The definition of the neighborhood.
+	 */
+	protected NeighborhoodType neighborhoodType;
+
+	/**
+	 * The number of neighbors of each building in the k nearest neighbors
+	 * neighborhood.
+	 */
+	protected int nearestNeighborCount;
+
+	/**
+	 * How the distance between two buildings is measured.
+	 */
+	protected DistanceMode distanceMode;
+
 	/**
 	 * Record of buildings already placed into the output graph.
 	 */
 	protected HashMap<String, Coordinate> placedBuildings;
 
+	/**
+	 * Was a building placed, moved or removed since the neighborhood of all
+	 * the buildings was last computed?
+	 */
+	protected boolean placementChanged;
+
+	/**
+	 * The footprints of the placed buildings, in the footprint distance mode.
+	 */
+	protected HashMap<String, Geometry> placedFootprints;
+
+	/**
+	 * The factory building the footprints.
+	 */
+	protected GeometryFactory geometryFactory;
+
+	/**
+	 * The placed buildings bucketed in square cells whose side is the radius.
+	 * A building is in all the cells overlapped by its extent, that is its
+	 * centroid or the envelope of its footprint, so that its neighbors can
+	 * only be in the cells overlapped by its extent grown by the radius.
+	 */
+	protected HashMap<Long, ArrayList<String>> placedBuildingCells;
+
+	/**
+	 * The edges of each placed building, by neighbor ID. The edge linking a
+	 * building to itself is not recorded.
+	 */
+	protected HashMap<String, HashMap<String, String>> neighbors;
+
+	/**
+	 * The number of threads computing the neighbor pairs of a bulk step.
+	 */
+	protected int parallelism;
+
 	/**
 	 * The descriptor matching geographic objects with representations of
 	 * buildings.
@@ -91,7 +191,17 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 
 		this.radius = radius;
 
+		this.neighborhoodType = NeighborhoodType.RADIUS;
+		this.nearestNeighborCount = 4;
+		this.distanceMode = DistanceMode.CENTROID;
+
 		this.placedBuildings = new HashMap<String, Coordinate>();
+		this.placedFootprints = new HashMap<String, Geometry>();
+		this.geometryFactory = new GeometryFactory();
+		this.placedBuildingCells = new HashMap<Long, ArrayList<String>>();
+		this.neighbors = new HashMap<String, HashMap<String, String>>();
+
+		this.parallelism = Runtime.getRuntime().availableProcessors();
 
 		// By default, there is no attribute worth keeping.
 
@@ -136,12 +246,128 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 		return this.buildingAttributeFilter;
 	}
 
+	/**
+	 * Set the definition of the neighborhood. The radius and the distance
+	 * mode are only used by the radius neighborhood.
+	 * 
+	 * @param neighborhoodType
+	 *            The type of neighborhood.
+	 */
+	public void setNeighborhoodType(NeighborhoodType neighborhoodType) {
+
+		if(!this.placedBuildings.isEmpty())
+			throw new IllegalStateException("the neighborhood type cannot be changed once buildings are placed");
+
+		this.neighborhoodType = neighborhoodType;
+	}
+
+	/**
+	 * Give the definition of the neighborhood.
+	 * 
+	 * @return The type of neighborhood.
+	 */
+	public NeighborhoodType getNeighborhoodType() {
+
+		return this.neighborhoodType;
+	}
+
+	/**
+	 * Set the number of neighbors of each building in the k nearest
+	 * neighbors neighborhood. A building is linked to its k nearest neighbors
+	 * and to the buildings it is one of the k nearest neighbors of.
+	 * 
+	 * @param nearestNeighborCount
+	 *            The number of neighbors, at least one.
+	 */
+	public void setNearestNeighborCount(int nearestNeighborCount) {
+
+		if(nearestNeighborCount < 1)
+			throw new IllegalArgumentException("the number of nearest neighbors must be at least one");
+
+		this.nearestNeighborCount = nearestNeighborCount;
+	}
+
+	/**
+	 * Give the number of neighbors of each building in the k nearest
+	 * neighbors neighborhood.
+	 * 
+	 * @return The number of neighbors.
+	 */
+	public int getNearestNeighborCount() {
+
+		return this.nearestNeighborCount;
+	}
+
+	/**
+	 * Set how the distance between two buildings is measured. In the
+	 * footprint mode, two buildings are neighbors if their footprints are not
+	 * farther than the radius.
+	 * 
+	 * @param distanceMode
+	 *            The distance mode.
+	 */
+	public void setDistanceMode(DistanceMode distanceMode) {
+
+		if(!this.placedBuildings.isEmpty())
+			throw new IllegalStateException("the distance mode cannot be changed once buildings are placed");
+
+		this.distanceMode = distanceMode;
+	}
+
+	/**
+	 * Give how the distance between two buildings is measured.
+	 * 
+	 * @return The distance mode.
+	 */
+	public DistanceMode getDistanceMode() {
+
+		return this.distanceMode;
+	}
+
+	/**
+	 * Set the number of threads computing the neighbor pairs when the
+	 * buildings are placed in bulk. One thread computes them on the calling
+	 * thread.
+	 * 
+	 * @param parallelism
+	 *            The number of threads, at least one.
+	 */
+	public void setParallelism(int parallelism) {
+
+		if(parallelism < 1)
+			throw new IllegalArgumentException("the parallelism must be at least one");
+
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Give the number of threads computing the neighbor pairs when the
+	 * buildings are placed in bulk.
+	 * 
+	 * @return The number of threads.
+	 */
+	public int getParallelism() {
+
+		return this.parallelism;
+	}
+
 	@Override
 	public void nextEvents() {
 
-		ArrayList<ElementDiff> buildingDiffsAtStep = getElementDiffsAtStep(this.currentTimeStep);
+		diffEvents(getElementDiffsAtStep(this.currentTimeStep));
+	}
+
+	@Override
+	protected void diffEvents(List<ElementDiff> buildingDiffs) {
+
+		if(isBulkStep(buildingDiffs)) {
 
-		for(ElementDiff buildingDiff : buildingDiffsAtStep) {
+			placeBuildingsInBulk(buildingDiffs);
+
+			return;
+		}
+
+		for(ElementDiff buildingDiff : buildingDiffs) {
 
 			// It the building is deleted remove it from the graph.
 
@@ -156,6 +382,8 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 
 				placeBuilding(buildingDiff);
 
+				replicateNodeAttributes(buildingDiff.getElementId(), buildingDiff);
+
 				computeNeighborhood(buildingDiff);
 			}
 
@@ -163,24 +391,44 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 
 			else {
 
-				// Replicate to the graph the attributes that may have changed.
+				// If the shape of the building has changed (in particular, its
+				// position), move it and update the edges that changed, then
+				// replicate the attributes that may have changed.
 
-				replicateNodeAttributes(buildingDiff.getElementId(), buildingDiff);
+				if(buildingDiff.getShape() != null && this.placedBuildings.containsKey(buildingDiff.getElementId())) {
 
-				// If the shape of the building has changed (in particular, its
-				// position), replace it and then recompute its neighborhood
-				// relationships.
+					moveBuilding(buildingDiff);
+
+					replicateNodeAttributes(buildingDiff.getElementId(), buildingDiff);
+				}
 
-				if(buildingDiff.getShape() != null) {
+				// If the building was not placed, place it with all its
+				// attributes.
 
-					removeBuilding(buildingDiff);
+				else if(buildingDiff.getShape() != null) {
 
 					placeBuilding(buildingDiff);
 
+					replicateNodeAttributes(buildingDiff.getElementId(), getElementViewAtStep(buildingDiff.getElementId(), this.currentTimeStep));
+
 					computeNeighborhood(buildingDiff);
 				}
+
+				// Otherwise, replicate to the graph the attributes that may have
+				// changed.
+
+				else {
+
+					replicateNodeAttributes(buildingDiff.getElementId(), buildingDiff);
+				}
 			}
 		}
+
+		// The other neighborhoods depend on all the buildings and are updated
+		// once they have all been placed.
+
+		if(this.neighborhoodType != NeighborhoodType.RADIUS && this.placementChanged)
+			updateGlobalNeighborhood();
 	}
 
 	/**
@@ -197,14 +445,79 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 
 		// Put it at the appropriate position.
 
-		Coordinate centroid = ((Polygon)buildingDiff.getShape()).getCentroid();
+		Polygon polygon = (Polygon)buildingDiff.getShape();
+		Coordinate centroid = polygon.getCentroid();
 
 		sendNodeAttributeAdded(this.id, buildingDiff.getElementId(), "x", centroid.x);
 		sendNodeAttributeAdded(this.id, buildingDiff.getElementId(), "y", centroid.y);
 
-		// Record that the building has been added.
+		// Record that the building has been added, forgetting its previous
+		// position if it was already placed.
+
+		if(this.placedBuildings.containsKey(buildingDiff.getElementId()))
+			removeFromCells(buildingDiff.getElementId());
+
+		recordBuilding(buildingDiff.getElementId(), polygon, centroid);
+
+		if(!this.neighbors.containsKey(buildingDiff.getElementId()))
+			this.neighbors.put(buildingDiff.getElementId(), new HashMap<String, String>());
+	}
+
+	/**
+	 * Move the node representing a placed building to the new centroid of the
+	 * building, and only remove and add the edges to the buildings that
+	 * stopped or started being its neighbors.
+	 * 
+	 * @param buildingDiff
+	 *            The building diff, with a new shape.
+	 */
+	protected void moveBuilding(ElementDiff buildingDiff) {
+
+		String buildingId = buildingDiff.getElementId();
+
+		Polygon polygon = (Polygon)buildingDiff.getShape();
+
+		Coordinate previousCentroid = this.placedBuildings.get(buildingId);
+		Coordinate centroid = polygon.getCentroid();
+
+		// Only the centroid matters in the centroid mode, while the footprint
+		// may change around the same centroid.
+
+		if(centroid.equals2D(previousCentroid) && this.distanceMode == DistanceMode.CENTROID)
+			return;
+
+		// Move the node.
+
+		if(!centroid.equals2D(previousCentroid)) {
+
+			sendNodeAttributeChanged(this.id, buildingId, "x", previousCentroid.x, centroid.x);
+			sendNodeAttributeChanged(this.id, buildingId, "y", previousCentroid.y, centroid.y);
+		}
+
+		removeFromCells(buildingId);
+
+		recordBuilding(buildingId, polygon, centroid);
+
+		// The other neighborhoods are updated at the end of the time step.
+
+		if(this.neighborhoodType != NeighborhoodType.RADIUS)
+			return;
 
-		this.placedBuildings.put(buildingDiff.getElementId(), centroid);
+		// Compare the previous neighbors with the new ones.
+
+		HashSet<String> newNeighbors = new HashSet<String>(findNeighbors(buildingId, null));
+
+		newNeighbors.remove(buildingId);
+
+		HashMap<String, String> edges = this.neighbors.get(buildingId);
+
+		for(String otherId : new ArrayList<String>(edges.keySet()))
+			if(!newNeighbors.contains(otherId))
+				unlinkBuildings(buildingId, otherId);
+
+		for(String otherId : newNeighbors)
+			if(!edges.containsKey(otherId))
+				linkBuildings(buildingId, otherId);
 	}
 
 	/**
@@ -219,9 +532,210 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 
 		sendNodeRemoved(this.id, buildingDiff.getElementId());
 
-		// Remove the building from our local record.
+		// Remove the building from our local record. Its edges have been
+		// removed along with its node.
+
+		if(this.placedBuildings.containsKey(buildingDiff.getElementId()))
+			removeFromCells(buildingDiff.getElementId());
 
 		this.placedBuildings.remove(buildingDiff.getElementId());
+
+		this.placementChanged = true;
+		this.placedFootprints.remove(buildingDiff.getElementId());
+
+		HashMap<String, String> edges = this.neighbors.remove(buildingDiff.getElementId());
+
+		if(edges != null)
+			for(Entry<String, String> edge : edges.entrySet()) {
+
+				this.neighbors.get(edge.getKey()).remove(buildingDiff.getElementId());
+
+				this.emitted.removeEdge(edge.getValue());
+			}
+
+		// In the radius mode, the building is also linked to itself since it
+		// was placed.
+
+		if(this.neighborhoodType == NeighborhoodType.RADIUS)
+			this.emitted.removeEdge(this.edgeIds.newEdgeId(null, buildingDiff.getElementId(), buildingDiff.getElementId()));
+	}
+
+	/**
+	 * Add an edge between two buildings and record it.
+	 * 
+	 * The edge goes from the smaller building ID to the larger one, so that its
+	 * ID does not depend on which building was placed first and a seek gives
+	 * the same edges as the sequential playback.
+	 * 
+	 * @param buildingId
+	 *            The ID of a building.
+	 * @param otherId
+	 *            The ID of the other building.
+	 */
+	protected void linkBuildings(String buildingId, String otherId) {
+
+		String fromId = buildingId.compareTo(otherId) <= 0 ? buildingId : otherId;
+		String toId = fromId == buildingId ? otherId : buildingId;
+
+		String edgeId = this.edgeIds.newEdgeId(null, fromId, toId);
+
+		sendEdgeAdded(this.id, edgeId, fromId, toId, false);
+
+		if(!buildingId.equals(otherId)) {
+
+			this.neighbors.get(buildingId).put(otherId, edgeId);
+			this.neighbors.get(otherId).put(buildingId, edgeId);
+		}
+	}
+
+	/**
+	 * Remove the edge between two buildings and forget it.
+	 * 
+	 * @param buildingId
+	 *            The ID of a building.
+	 * @param otherId
+	 *            The ID of the other building.
+	 */
+	protected void unlinkBuildings(String buildingId, String otherId) {
+
+		String edgeId = this.neighbors.get(buildingId).remove(otherId);
+
+		this.neighbors.get(otherId).remove(buildingId);
+
+		sendEdgeRemoved(this.id, edgeId);
+	}
+
+	/**
+	 * Record the position, and the footprint in the footprint mode, of a
+	 * building and add it to the cells overlapped by its extent.
+	 * 
+	 * @param buildingId
+	 *            The ID of the building.
+	 * @param polygon
+	 *            The shape of the building.
+	 * @param centroid
+	 *            The centroid of the building.
+	 */
+	protected void recordBuilding(String buildingId, Polygon polygon, Coordinate centroid) {
+
+		Coordinate previousCentroid = this.placedBuildings.put(buildingId, centroid);
+
+		if(previousCentroid == null || !centroid.equals2D(previousCentroid))
+			this.placementChanged = true;
+
+		if(this.distanceMode == DistanceMode.FOOTPRINT)
+			this.placedFootprints.put(buildingId, footprint(polygon));
+
+		double[] extent = extent(buildingId);
+
+		for(long x = cellCoordinate(extent[0]); x <= cellCoordinate(extent[2]); ++x)
+			for(long y = cellCoordinate(extent[1]); y <= cellCoordinate(extent[3]); ++y) {
+
+				Long cell = cellKey(x, y);
+
+				ArrayList<String> cellBuildings = this.placedBuildingCells.get(cell);
+
+				if(cellBuildings == null) {
+
+					cellBuildings = new ArrayList<String>();
+
+					this.placedBuildingCells.put(cell, cellBuildings);
+				}
+
+				cellBuildings.add(buildingId);
+			}
+	}
+
+	/**
+	 * Remove a building from the cells overlapped by its recorded extent.
+	 * 
+	 * @param buildingId
+	 *            The ID of the building.
+	 */
+	protected void removeFromCells(String buildingId) {
+
+		double[] extent = extent(buildingId);
+
+		for(long x = cellCoordinate(extent[0]); x <= cellCoordinate(extent[2]); ++x)
+			for(long y = cellCoordinate(extent[1]); y <= cellCoordinate(extent[3]); ++y) {
+
+				Long cell = cellKey(x, y);
+
+				ArrayList<String> cellBuildings = this.placedBuildingCells.get(cell);
+
+				if(cellBuildings == null)
+					continue;
+
+				cellBuildings.remove(buildingId);
+
+				if(cellBuildings.isEmpty())
+					this.placedBuildingCells.remove(cell);
+			}
+	}
+
+	/**
+	 * Give the extent of a placed building: its centroid, or the envelope of
+	 * its footprint in the footprint mode.
+	 * 
+	 * @param buildingId
+	 *            The ID of the building.
+	 * @return The minimum and maximum coordinates of the extent.
+	 */
+	protected double[] extent(String buildingId) {
+
+		if(this.distanceMode == DistanceMode.FOOTPRINT) {
+
+			Envelope envelope = this.placedFootprints.get(buildingId).getEnvelopeInternal();
+
+			return new double[] {envelope.getMinX(), envelope.getMinY(), envelope.getMaxX(), envelope.getMaxY()};
+		}
+
+		Coordinate centroid = this.placedBuildings.get(buildingId);
+
+		return new double[] {centroid.x, centroid.y, centroid.x, centroid.y};
+	}
+
+	/**
+	 * Build the footprint of a building as a JTS geometry.
+	 * 
+	 * The ring is closed if needed. Shapes with too few points to form a
+	 * polygon give a line or a point.
+	 * 
+	 * @param polygon
+	 *            The shape of the building.
+	 * @return The footprint.
+	 */
+	protected Geometry footprint(Polygon polygon) {
+
+		int pointCount = polygon.getPointCount();
+
+		if(pointCount == 0)
+			return this.geometryFactory.createPoint((Coordinate)null);
+
+		boolean closed = polygon.getPointX(0) == polygon.getPointX(pointCount - 1) && polygon.getPointY(0) == polygon.getPointY(pointCount - 1);
+
+		Coordinate[] coordinates = new Coordinate[closed ? pointCount : pointCount + 1];
+
+		for(int i = 0; i < pointCount; ++i)
+			coordinates[i] = new Coordinate(polygon.getPointX(i), polygon.getPointY(i));
+
+		coordinates[coordinates.length - 1] = coordinates[0];
+
+		Geometry footprint;
+
+		if(coordinates.length >= 4)
+			footprint = this.geometryFactory.createPolygon(this.geometryFactory.createLinearRing(coordinates), null);
+		else if(coordinates.length >= 2)
+			footprint = this.geometryFactory.createLineString(coordinates);
+		else
+			footprint = this.geometryFactory.createPoint(coordinates[0]);
+
+		// Compute the envelope now, the footprints being read by several
+		// threads when the buildings are placed in bulk.
+
+		footprint.getEnvelopeInternal();
+
+		return footprint;
 	}
 
 	/**
@@ -234,13 +748,474 @@ public class GeoSourceOSM_Neighborhood extends GeoSourceOSM {
 	 */
 	protected void computeNeighborhood(ElementDiff buildingDiff) {
 
-		Coordinate centroid = ((Polygon)buildingDiff.getShape()).getCentroid();
+		// The other neighborhoods are computed at the end of the time step.
 
-		String buildingId = buildingDiff.getElementId();
+		if(this.neighborhoodType != NeighborhoodType.RADIUS)
+			return;
+
+		for(String otherId : findNeighbors(buildingDiff.getElementId(), null))
+			linkBuildings(buildingDiff.getElementId(), otherId);
+	}
+
+	/**
+	 * Give the placed buildings which are neighbors of a placed building,
+	 * including the building itself.
+	 * 
+	 * Only the records of the buildings are read, so several threads can look
+	 * for neighbors at once.
+	 * 
+	 * @param buildingId
+	 *            The ID of the building.
+	 * @param ranks
+	 *            The order in which the buildings have been placed, to only
+	 *            give the neighbors placed before the building, or null.
+	 * @return The IDs of the neighbors.
+	 */
+	protected ArrayList<String> findNeighbors(String buildingId, HashMap<String, Integer> ranks) {
+
+		ArrayList<String> neighborIds = new ArrayList<String>();
+
+		HashSet<String> candidates = new HashSet<String>();
+
+		// Only the buildings of the cells overlapped by the extent of the
+		// building grown by the radius can be close enough.
+
+		double[] extent = extent(buildingId);
+
+		for(long x = cellCoordinate(extent[0] - this.radius); x <= cellCoordinate(extent[2] + this.radius); ++x)
+			for(long y = cellCoordinate(extent[1] - this.radius); y <= cellCoordinate(extent[3] + this.radius); ++y) {
+
+				ArrayList<String> cellBuildings = this.placedBuildingCells.get(cellKey(x, y));
+
+				if(cellBuildings == null)
+					continue;
+
+				for(String otherId : cellBuildings)
+					if(candidates.add(otherId) && (ranks == null || ranks.get(otherId) <= ranks.get(buildingId)) && areNeighbors(buildingId, otherId))
+						neighborIds.add(otherId);
+			}
+
+		return neighborIds;
+	}
+
+	/**
+	 * Check if two placed buildings are neighbors.
+	 * 
+	 * In the footprint mode, JTS compares the envelopes of the footprints
+	 * before computing the distance between their edges, and stops as soon as
+	 * two edges are close enough.
+	 * 
+	 * @param buildingId
+	 *            The ID of a building.
+	 * @param otherId
+	 *            The ID of the other building.
+	 * @return True if the buildings are neighbors, false otherwise.
+	 */
+	protected boolean areNeighbors(String buildingId, String otherId) {
+
+		if(this.distanceMode == DistanceMode.FOOTPRINT)
+			return this.placedFootprints.get(buildingId).isWithinDistance(this.placedFootprints.get(otherId), this.radius);
+
+		return this.placedBuildings.get(buildingId).distance(this.placedBuildings.get(otherId)) < this.radius;
+	}
+
+	/**
+	 * Compute the neighborhood of all the placed buildings and only send the
+	 * edges that appeared or disappeared since the previous time step. This is
+	 * only needed when the centroids of the buildings changed.
+	 */
+	protected void updateGlobalNeighborhood() {
+
+		HashMap<String, HashSet<String>> adjacency = computeGlobalNeighborhood();
+
+		this.placementChanged = false;
+
+		// Remove the edges that disappeared.
+
+		ArrayList<String[]> removedPairs = new ArrayList<String[]>();
+
+		for(Entry<String, HashMap<String, String>> buildingEdges : this.neighbors.entrySet())
+			for(String otherId : buildingEdges.getValue().keySet())
+				if(buildingEdges.getKey().compareTo(otherId) < 0 && !adjacency.get(buildingEdges.getKey()).contains(otherId))
+					removedPairs.add(new String[] {buildingEdges.getKey(), otherId});
+
+		for(String[] pair : removedPairs)
+			unlinkBuildings(pair[0], pair[1]);
+
+		// Add the new ones.
+
+		for(Entry<String, HashSet<String>> buildingNeighbors : adjacency.entrySet())
+			for(String otherId : buildingNeighbors.getValue())
+				if(!this.neighbors.get(buildingNeighbors.getKey()).containsKey(otherId))
+					linkBuildings(buildingNeighbors.getKey(), otherId);
+	}
+
+	/**
+	 * Compute the neighborhood of all the placed buildings, according to the
+	 * type of neighborhood.
+	 * 
+	 * @return The neighbors of each building.
+	 */
+	protected HashMap<String, HashSet<String>> computeGlobalNeighborhood() {
+
+		HashMap<String, HashSet<String>> adjacency = new HashMap<String, HashSet<String>>();
+
+		for(String buildingId : this.placedBuildings.keySet())
+			adjacency.put(buildingId, new HashSet<String>());
+
+		if(this.neighborhoodType == NeighborhoodType.K_NEAREST)
+			computeNearestNeighbors(adjacency);
+		else
+			computeTriangulation(adjacency, this.neighborhoodType == NeighborhoodType.GABRIEL);
+
+		return adjacency;
+	}
+
+	/**
+	 * Link the buildings along the edges of the Delaunay triangulation of
+	 * their centroids, or of its Gabriel subgraph.
+	 * 
+	 * The triangulation is computed by JTS, which sorts the centroids before
+	 * inserting them. An edge of the triangulation belongs to the Gabriel
+	 * graph if no centroid is inside the circle which diameter it is, and only
+	 * the two vertices facing the edge in its adjacent triangles need to be
+	 * checked for that. Buildings sharing the same centroid are linked
+	 * together.
+	 * 
+	 * @param adjacency
+	 *            The neighbors of each building, filled by this method.
+	 * @param gabriel
+	 *            True to only keep the edges of the Gabriel graph.
+	 */
+	protected void computeTriangulation(HashMap<String, HashSet<String>> adjacency, boolean gabriel) {
+
+		HashMap<Coordinate, ArrayList<String>> buildingsAt = new HashMap<Coordinate, ArrayList<String>>();
+
+		for(Entry<String, Coordinate> buildingCentroid : this.placedBuildings.entrySet()) {
+
+			ArrayList<String> buildingIds = buildingsAt.get(buildingCentroid.getValue());
+
+			if(buildingIds == null) {
+
+				buildingIds = new ArrayList<String>();
+
+				buildingsAt.put(buildingCentroid.getValue(), buildingIds);
+			}
+
+			buildingIds.add(buildingCentroid.getKey());
+		}
+
+		for(ArrayList<String> buildingIds : buildingsAt.values())
+			for(String buildingId : buildingIds)
+				for(String otherId : buildingIds)
+					addNeighbors(adjacency, buildingId, otherId);
+
+		if(buildingsAt.size() < 2)
+			return;
+
+		DelaunayTriangulationBuilder builder = new DelaunayTriangulationBuilder();
+
+		builder.setSites(buildingsAt.keySet());
+
+		QuadEdgeSubdivision subdivision = builder.getSubdivision();
+
+		for(Object o : subdivision.getPrimaryEdges(false)) {
+
+			QuadEdge edge = (QuadEdge)o;
+
+			if(gabriel && !isGabrielEdge(subdivision, edge))
+				continue;
+
+			for(String buildingId : buildingsAt.get(edge.orig().getCoordinate()))
+				for(String otherId : buildingsAt.get(edge.dest().getCoordinate()))
+					addNeighbors(adjacency, buildingId, otherId);
+		}
+	}
+
+	/**
+	 * Check if an edge of a Delaunay triangulation belongs to the Gabriel
+	 * graph.
+	 * 
+	 * @param subdivision
+	 *            The triangulation.
+	 * @param edge
+	 *            The edge.
+	 * @return True if the vertices facing the edge are outside the circle
+	 *         which diameter is the edge.
+	 */
+	protected boolean isGabrielEdge(QuadEdgeSubdivision subdivision, QuadEdge edge) {
+
+		Coordinate p = edge.orig().getCoordinate();
+		Coordinate q = edge.dest().getCoordinate();
+
+		for(Vertex facing : new Vertex[] {edge.lNext().dest(), edge.sym().lNext().dest()}) {
+
+			if(subdivision.isFrameVertex(facing))
+				continue;
+
+			// The angle at the facing vertex is obtuse if the vertex is inside
+			// the circle.
+
+			Coordinate r = facing.getCoordinate();
+
+			if((p.x - r.x) * (q.x - r.x) + (p.y - r.y) * (q.y - r.y) < 0)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Link each building to its k nearest neighbors, found through an R-tree
+	 * spatial index of the centroids, which adapts to the density of the
+	 * buildings. The index refers to the building elements of the source.
+	 * 
+	 * @param adjacency
+	 *            The neighbors of each building, filled by this method.
+	 */
+	protected void computeNearestNeighbors(HashMap<String, HashSet<String>> adjacency) {
+
+		SpatialIndex index = SpatialIndex.create(SpatialIndex.Type.RTREE);
+
+		for(Entry<String, Coordinate> buildingCentroid : this.placedBuildings.entrySet())
+			index.addPoint(this.elements.get(buildingCentroid.getKey()), buildingCentroid.getValue().x, buildingCentroid.getValue().y);
+
+		// The building itself is usually the nearest one.
+
+		Element[] nearest = new Element[this.nearestNeighborCount + 1];
+
+		for(Entry<String, Coordinate> buildingCentroid : this.placedBuildings.entrySet()) {
+
+			int found = index.getNearestElements(buildingCentroid.getValue().x, buildingCentroid.getValue().y, nearest.length, nearest, null);
+
+			int linked = 0;
+
+			for(int i = 0; i < found && linked < this.nearestNeighborCount; ++i) {
+
+				String otherId = nearest[i].getId();
+
+				if(!otherId.equals(buildingCentroid.getKey())) {
+
+					addNeighbors(adjacency, buildingCentroid.getKey(), otherId);
+
+					++linked;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Record that two different buildings are neighbors.
+	 * 
+	 * @param adjacency
+	 *            The neighbors of each building.
+	 * @param buildingId
+	 *            The ID of a building.
+	 * @param otherId
+	 *            The ID of the other building.
+	 */
+	protected void addNeighbors(HashMap<String, HashSet<String>> adjacency, String buildingId, String otherId) {
+
+		if(buildingId.equals(otherId))
+			return;
+
+		adjacency.get(buildingId).add(otherId);
+		adjacency.get(otherId).add(buildingId);
+	}
+
+	/**
+	 * Check if the buildings of a time step can be placed in bulk, that is if
+	 * they are all inserted in an empty graph.
+	 * 
+	 * @param buildingDiffs
+	 *            The building diffs of the time step.
+	 * @return True if the step can be placed in bulk, false otherwise.
+	 */
+	protected boolean isBulkStep(List<ElementDiff> buildingDiffs) {
+
+		if(this.neighborhoodType != NeighborhoodType.RADIUS || !this.placedBuildings.isEmpty() || buildingDiffs.size() < 2)
+			return false;
+
+		for(ElementDiff buildingDiff : buildingDiffs)
+			if(!buildingDiff.isBase())
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * Place all the buildings of a time step and then link the neighbors.
+	 * 
+	 * The nodes are sent first, in the order of the diffs. The cells of the
+	 * placed buildings then serve as tiles: each task finds the neighbors of
+	 * the buildings of its tiles in the tiles themselves and in the
+	 * surrounding ones. The edges are identical to those of a placement one
+	 * building at a time: each pair is linked from the building placed last.
+	 * 
+	 * @param buildingDiffs
+	 *            The building diffs of the time step, all base diffs.
+	 */
+	protected void placeBuildingsInBulk(List<ElementDiff> buildingDiffs) {
+
+		// Place the nodes and remember the order of placement.
+
+		final HashMap<String, Integer> ranks = new HashMap<String, Integer>();
+
+		for(ElementDiff buildingDiff : buildingDiffs) {
+
+			placeBuilding(buildingDiff);
+
+			replicateNodeAttributes(buildingDiff.getElementId(), buildingDiff);
+
+			ranks.put(buildingDiff.getElementId(), ranks.size());
+		}
+
+		// Split the tiles between the tasks.
+
+		ArrayList<Long> tiles = new ArrayList<Long>(this.placedBuildingCells.keySet());
+
+		int taskCount = Math.min(tiles.size(), this.parallelism * 4);
+
+		ArrayList<Callable<ArrayList<String[]>>> tasks = new ArrayList<Callable<ArrayList<String[]>>>();
+
+		for(int task = 0; task < taskCount; ++task) {
+
+			final List<Long> taskTiles = tiles.subList(task * tiles.size() / taskCount, (task + 1) * tiles.size() / taskCount);
+
+			tasks.add(new Callable<ArrayList<String[]>>() {
+
+				public ArrayList<String[]> call() {
+
+					return computeNeighborPairs(taskTiles, ranks);
+				}
+			});
+		}
+
+		// Compute the pairs and send the edges in the order of the tasks.
+
+		for(ArrayList<String[]> pairs : runTasks(tasks))
+			for(String[] pair : pairs)
+				linkBuildings(pair[0], pair[1]);
+	}
+
+	/**
+	 * Find the neighbors of the buildings of some tiles among the buildings
+	 * placed before them (including themselves).
+	 * 
+	 * Only the placement records are read, so several tasks can run at once.
+	 * 
+	 * @param tiles
+	 *            The keys of the tiles.
+	 * @param ranks
+	 *            The order in which the buildings have been placed.
+	 * @return The neighbor pairs, the building placed last first.
+	 */
+	protected ArrayList<String[]> computeNeighborPairs(List<Long> tiles, HashMap<String, Integer> ranks) {
+
+		ArrayList<String[]> pairs = new ArrayList<String[]>();
+
+		for(Long tile : tiles)
+			for(String buildingId : this.placedBuildingCells.get(tile)) {
+
+				// A building overlapping several tiles is handled by the tile of
+				// the minimum corner of its extent.
+
+				double[] extent = extent(buildingId);
+
+				if(!tile.equals(cellKey(cellCoordinate(extent[0]), cellCoordinate(extent[1]))))
+					continue;
+
+				for(String otherId : findNeighbors(buildingId, ranks))
+					pairs.add(new String[] {buildingId, otherId});
+			}
+
+		return pairs;
+	}
+
+	/**
+	 * Run tasks on a thread pool of the configured size, or on the calling
+	 * thread if the parallelism is one.
+	 * 
+	 * @param tasks
+	 *            The tasks.
+	 * @return The results of the tasks, in the same order.
+	 */
+	protected <T> List<T> runTasks(List<Callable<T>> tasks) {
+
+		ArrayList<T> results = new ArrayList<T>();
+
+		try {
+
+			if(this.parallelism == 1 || tasks.size() < 2) {
+
+				for(Callable<T> task : tasks)
+					results.add(task.call());
+
+				return results;
+			}
+
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.parallelism, tasks.size()));
+
+			try {
+
+				for(Future<T> future : executor.invokeAll(tasks))
+					results.add(future.get());
+			}
+			finally {
+
+				executor.shutdownNow();
+			}
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException("neighborhood computation interrupted");
+		}
+		catch (ExecutionException e) {
+
+			throw new RuntimeException("neighborhood computation failed", e.getCause());
+		}
+		catch (RuntimeException e) {
+
+			throw e;
+		}
+		catch (Exception e) {
+
+			throw new RuntimeException(e);
+		}
+
+		return results;
+	}
+
+	/**
+	 * Give the coordinate of the cell containing a coordinate along one axis.
+	 * 
+	 * @param coordinate
+	 *            The coordinate.
+	 * @return The cell coordinate.
+	 */
+	protected long cellCoordinate(double coordinate) {
+
+		// A null radius has no neighbor at all, any cell size fits.
+
+		double cellSize = this.radius > 0 ? this.radius : 1;
+
+		return (long)Math.floor(coordinate / cellSize);
+	}
+
+	/**
+	 * Give the key of a cell in the record of placed buildings.
+	 * 
+	 * @param cellX
+	 *            The x-axis coordinate of the cell.
+	 * @param cellY
+	 *            The y-axis coordinate of the cell.
+	 * @return The key.
+	 */
+	protected Long cellKey(long cellX, long cellY) {
 
-		for(Entry<String, Coordinate> idPosPair : placedBuildings.entrySet())
-			if(centroid.distance(idPosPair.getValue()) < this.radius)
-				sendEdgeAdded(this.id, buildingId + idPosPair.getKey(), buildingId, idPosPair.getKey(), false);
+		return (cellX << 32) ^ (cellY & 0xFFFFFFFFL);
 	}
 
 }
@@ -32,9 +32,12 @@
 package org.graphstream.geography.osm;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import org.graphstream.geography.AttributeFilter;
+import org.graphstream.geography.Element;
 import org.graphstream.geography.ElementDescriptor;
 import org.graphstream.geography.ElementDiff;
 import org.graphstream.geography.ElementShape;
@@ -43,16 +46,36 @@ import org.graphstream.geography.FileDescriptor;
 import org.graphstream.geography.Line;
 import org.graphstream.geography.Vertex;
 
-import com.vividsolutions.jts.geom.Coordinate;
-
 /**
  * This geographical source implementation produces a road network from an
  * OpenStreetMap XML file.
  * 
+ * By default, every point of a road becomes a node and every segment an edge.
+ * In the simplified topology, the nodes are only placed at the junctions (the
+ * end points of the roads and the points shared by several roads or met twice
+ * by the same road) and each edge stands for the chain of segments between two
+ * junctions. Such an edge carries the points of the chain, including its two
+ * ends, as a "geometry" array of alternating x and y coordinates (longitude
+ * and latitude), and the sum of the great-circle lengths of the segments as a
+ * "length" attribute, in meters.
+ * The junctions are found once over all the roads at all the dates, so that
+ * they do not change during the playback.
+ * 
+ * When the shape of a road changes, only the edges that differ between the old
+ * and the new shape are removed and added. The nodes are counted by the edges
+ * using them (in the record of the emitted elements), and a node is removed at
+ * the end of a step once no edge of any road uses it anymore. A node that
+ * stays in the graph while its point moves gets its new position.
+ * 
  * @author Merwan Achibet
  */
 public class GeoSourceOSM_RoadNetwork extends GeoSourceOSM {
 
+	/**
+	 * The mean radius of the Earth, in meters.
+	 */
+	protected static final double EARTH_RADIUS = 6371008.8;
+
 	/**
 	 * The descriptor matching geographic objects with representations of roads.
 	 */
@@ -64,14 +87,26 @@ public class GeoSourceOSM_RoadNetwork extends GeoSourceOSM {
 	protected AttributeFilter roadAttributeFilter;
 
 	/**
-	 * A record of nodes already added to the output graph.
+	 * The edges shaping each road in the output graph.
+	 */
+	protected HashMap<String, List<RoadEdge>> roadEdges;
+
+	/**
+	 * The IDs of the nodes that lost an edge during the current step, which
+	 * are removed at the end of the step if no edge uses them anymore.
+	 */
+	protected ArrayList<String> releasedNodeIds;
+
+	/**
+	 * Whether only the junctions become nodes.
 	 */
-	protected List<String> addedNodeIds;
+	protected boolean simplifiedTopology;
 
 	/**
-	 * A record of edges already added to the output graph.
+	 * The IDs of the points that are junctions in the simplified topology, or
+	 * null if they have not been found yet.
 	 */
-	protected List<String> addedEdgeIds;
+	protected HashSet<String> junctions;
 
 	/**
 	 * Instantiate a new OpenStreetMap source producing a road network graph.
@@ -82,8 +117,8 @@ public class GeoSourceOSM_RoadNetwork extends GeoSourceOSM {
 	public GeoSourceOSM_RoadNetwork(String... fileNames) {
 		super(fileNames);
 
-		this.addedNodeIds = new ArrayList<String>();
-		this.addedEdgeIds = new ArrayList<String>();
+		this.roadEdges = new HashMap<String, List<RoadEdge>>();
+		this.releasedNodeIds = new ArrayList<String>();
 
 		// By default, there are no attribute worth keeping.
 
@@ -129,87 +164,396 @@ public class GeoSourceOSM_RoadNetwork extends GeoSourceOSM {
 		return this.roadAttributeFilter;
 	}
 
+	/**
+	 * Only place nodes at the junctions between roads (or not). This must be
+	 * chosen before the playback.
+	 * 
+	 * @param simplifiedTopology
+	 *            True to contract the chains of road points between junctions
+	 *            into single edges, false to keep one edge per segment.
+	 */
+	public void setSimplifiedTopology(boolean simplifiedTopology) {
+
+		this.simplifiedTopology = simplifiedTopology;
+	}
+
+	/**
+	 * Check if only the junctions between roads become nodes.
+	 * 
+	 * @return True if the topology is simplified, false otherwise.
+	 */
+	public boolean isSimplifiedTopology() {
+
+		return this.simplifiedTopology;
+	}
+
 	@Override
 	protected void nextEvents() {
 
-		ArrayList<ElementDiff> roadDiffsAtStep = getElementDiffsAtStep(this.currentTimeStep);
+		diffEvents(getElementDiffsAtStep(this.currentTimeStep));
+	}
+
+	@Override
+	protected void diffEvents(List<ElementDiff> roadDiffs) {
+
+		if(this.simplifiedTopology && this.junctions == null)
+			findJunctions();
+
+		for(ElementDiff roadDiff : roadDiffs) {
 
-		for(ElementDiff roadDiff : roadDiffsAtStep) {
+			String roadId = roadDiff.getElementId();
 
-			// If the road is deleted, remove it from the graph.
+			// If the road is deleted, remove its edges from the graph.
 
 			if(roadDiff.isDeleted()) {
 
-				// TODO
+				List<RoadEdge> edges = this.roadEdges.remove(roadId);
+
+				if(edges != null)
+					for(RoadEdge edge : edges)
+						removeEdge(edge);
 			}
 
 			// If the diff is a base, insert the road for the first time.
 
 			else if(roadDiff.isBase()) {
 
-				Line line = (Line)roadDiff.getShape();
-				Vertex[][] pointPairs = line.getVertexPairs();
+				List<RoadEdge> edges = new ArrayList<RoadEdge>();
+				this.roadEdges.put(roadId, edges);
 
-				for(int i = 0, l = pointPairs.length; i < l; ++i) {
+				for(List<Vertex> chain : getEdgeChains((Line)roadDiff.getShape())) {
 
-					Vertex from = pointPairs[i][0];
-					Vertex to = pointPairs[i][1];
+					RoadEdge edge = addEdge(roadId, chain);
 
-					addNode(from);
-					addNode(to);
+					// Send every attribute from the road element to each of
+					// the edges shaping it in the output graph.
 
-					String edgeId = line.getElementId() + "_" + from.getId() + "_" + to.getId();
-					if(!this.addedEdgeIds.contains(edgeId)) {
-						sendEdgeAdded(this.id, edgeId, from.getId(), to.getId(), false);
-						this.addedEdgeIds.add(edgeId);
-					}
+					replicateEdgeAttributes(edge.id, roadDiff);
 
-					// Send every attribute from the road element to each of the
-					// edges shaping it in the output graph.
-					
-					replicateEdgeAttributes(edgeId, roadDiff);
+					edges.add(edge);
 				}
 			}
 
-			// Otherwise, update the road.
+			// If the shape of the road changed, replace the edges that differ.
+
+			else if(roadDiff.getShape() != null)
+				reshapeRoad(roadDiff);
+
+			// Otherwise, send every attribute change of the road element to
+			// each of the edges shaping it in the output graph.
 
 			else {
 
-				ElementView elementAtStep = getElementViewAtStep(roadDiff.getElementId(), this.currentTimeStep);
+				List<RoadEdge> edges = this.roadEdges.get(roadId);
+
+				if(edges != null)
+					for(RoadEdge edge : edges)
+						replicateEdgeAttributes(edge.id, roadDiff);
+			}
+		}
+
+		removeReleasedNodes();
+	}
+
+	/**
+	 * Update the edges of a road which shape changed. The edges following the
+	 * same points as before are kept, the others are removed and the new ones
+	 * are added.
+	 * 
+	 * @param roadDiff
+	 *            The diff of the road.
+	 */
+	protected void reshapeRoad(ElementDiff roadDiff) {
+
+		String roadId = roadDiff.getElementId();
+
+		// Index the current edges of the road by their first node.
+
+		HashMap<String, List<RoadEdge>> previousEdges = new HashMap<String, List<RoadEdge>>();
+
+		List<RoadEdge> edges = this.roadEdges.get(roadId);
+
+		if(edges != null)
+			for(RoadEdge edge : edges) {
+
+				List<RoadEdge> sameStart = previousEdges.get(edge.chain.get(0).getId());
+
+				if(sameStart == null) {
+
+					sameStart = new ArrayList<RoadEdge>();
+					previousEdges.put(edge.chain.get(0).getId(), sameStart);
+				}
+
+				sameStart.add(edge);
+			}
+
+		// Keep the edges that are still there and the attribute changes of the
+		// road apply to them.
+
+		List<RoadEdge> nextEdges = new ArrayList<RoadEdge>();
+		List<List<Vertex>> addedChains = new ArrayList<List<Vertex>>();
+
+		for(List<Vertex> chain : getEdgeChains((Line)roadDiff.getShape())) {
+
+			RoadEdge keptEdge = null;
+
+			List<RoadEdge> sameStart = previousEdges.get(chain.get(0).getId());
+
+			if(sameStart != null)
+				for(int i = 0, l = sameStart.size(); i < l && keptEdge == null; ++i)
+					if(isSameChain(sameStart.get(i).chain, chain))
+						keptEdge = sameStart.remove(i);
+
+			if(keptEdge != null) {
+
+				replicateEdgeAttributes(keptEdge.id, roadDiff);
+
+				nextEdges.add(keptEdge);
+			}
+			else
+				addedChains.add(chain);
+		}
+
+		// Remove the edges that disappeared before adding the new ones, as a
+		// new edge may get the same ID as an old one.
+
+		for(List<RoadEdge> sameStart : previousEdges.values())
+			for(RoadEdge edge : sameStart)
+				removeEdge(edge);
+
+		// The new edges get all the attributes of the road.
+
+		ElementView roadView = addedChains.isEmpty() ? null : getElementViewAtStep(roadId, this.currentTimeStep);
+
+		for(List<Vertex> chain : addedChains) {
+
+			RoadEdge edge = addEdge(roadId, chain);
+
+			replicateEdgeAttributes(edge.id, roadView);
+
+			nextEdges.add(edge);
+		}
+
+		this.roadEdges.put(roadId, nextEdges);
+	}
+
+	/**
+	 * Give the chains of points of a road that become edges: from a node of
+	 * the output graph to the next one along the road.
+	 * 
+	 * A road going twice from the same node to another one in the same
+	 * direction is only given one edge.
+	 * 
+	 * @param line
+	 *            The shape of the road.
+	 * @return The chains of points, as views of the list of points of the road.
+	 */
+	protected List<List<Vertex>> getEdgeChains(Line line) {
+
+		ArrayList<Vertex> vertices = line.getVertices();
+
+		List<List<Vertex>> chains = new ArrayList<List<Vertex>>();
+
+		for(int start = 0, end = 1, l = vertices.size(); end < l; ++end) {
+
+			if(end < l - 1 && !isNode(vertices.get(end)))
+				continue;
+
+			List<Vertex> chain = vertices.subList(start, end + 1);
+
+			boolean repeated = false;
+
+			for(int i = 0, c = chains.size(); i < c && !repeated; ++i) {
+
+				List<Vertex> otherChain = chains.get(i);
+
+				repeated = otherChain.get(0).getId().equals(vertices.get(start).getId()) && otherChain.get(otherChain.size() - 1).getId().equals(vertices.get(end).getId());
+			}
+
+			if(!repeated)
+				chains.add(chain);
 
-				Line line = (Line)elementAtStep.getShape();
-				Vertex[][] pointPairs = line.getVertexPairs();
+			start = end;
+		}
+
+		return chains;
+	}
+
+	/**
+	 * Check if two chains of points are the same, with the same point IDs at
+	 * the same positions.
+	 * 
+	 * @param chain
+	 *            A chain.
+	 * @param otherChain
+	 *            The other chain.
+	 * @return True if the chains are the same, false otherwise.
+	 */
+	protected boolean isSameChain(List<Vertex> chain, List<Vertex> otherChain) {
+
+		if(chain.size() != otherChain.size())
+			return false;
+
+		for(int i = 0, l = chain.size(); i < l; ++i) {
+
+			Vertex vertex = chain.get(i);
+			Vertex otherVertex = otherChain.get(i);
+
+			if(!vertex.getId().equals(otherVertex.getId()) || !vertex.equals(otherVertex))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Add an edge following a chain of points of a road to the output graph,
+	 * with its two nodes if necessary.
+	 * 
+	 * @param roadId
+	 *            The ID of the road.
+	 * @param chain
+	 *            The chain of points.
+	 * @return The new edge.
+	 */
+	protected RoadEdge addEdge(String roadId, List<Vertex> chain) {
+
+		Vertex from = chain.get(0);
+		Vertex to = chain.get(chain.size() - 1);
+
+		addNode(from);
+		addNode(to);
+
+		RoadEdge edge = new RoadEdge(this.edgeIds.newEdgeId(roadId, from.getId(), to.getId()), chain);
+
+		sendEdgeAdded(this.id, edge.id, from.getId(), to.getId(), false);
+
+		if(this.simplifiedTopology)
+			sendEdgeGeometry(edge.id, chain);
+
+		return edge;
+	}
+
+	/**
+	 * Remove an edge of a road from the output graph. Its nodes are released
+	 * and removed at the end of the step if no other edge uses them.
+	 * 
+	 * @param edge
+	 *            The edge.
+	 */
+	protected void removeEdge(RoadEdge edge) {
+
+		sendEdgeRemoved(this.id, edge.id);
+
+		releaseNode(edge.chain.get(0).getId());
+		releaseNode(edge.chain.get(edge.chain.size() - 1).getId());
+	}
+
+	/**
+	 * Check if a point of a road becomes a node of the output graph.
+	 * 
+	 * @param vertex
+	 *            The point.
+	 * @return True if the point is a node, false if it is only part of the
+	 *         shape of an edge.
+	 */
+	protected boolean isNode(Vertex vertex) {
+
+		return !this.simplifiedTopology || this.junctions.contains(vertex.getId());
+	}
+
+	/**
+	 * Find the junctions of the simplified topology, over all the states of all
+	 * the roads: the end points of the roads, the points shared by several
+	 * roads and the points met twice along the same road.
+	 */
+	protected void findJunctions() {
+
+		this.junctions = new HashSet<String>();
+
+		// The state of road in which each point was last met.
+
+		HashMap<String, ElementDiff> lastMetIn = new HashMap<String, ElementDiff>();
+
+		for(Element element : this.elements.values())
+			for(ElementDiff diff : element.getDiffs().values()) {
 
-				for(int i = 0, l = pointPairs.length; i < l; ++i) {
+				if(diff == null || !(diff.getShape() instanceof Line))
+					continue;
 
-					Vertex from = pointPairs[i][0];
-					Vertex to = pointPairs[i][1];
+				ArrayList<Vertex> vertices = ((Line)diff.getShape()).getVertices();
 
-					String edgeId = line.getElementId() + "_" + from.getId() + "_" + to.getId();
+				for(int i = 0, l = vertices.size(); i < l; ++i) {
 
-					// Send every attribute from the road element to each of the
-					// edges shaping it in the output graph.
-					
-					replicateEdgeAttributes(edgeId, roadDiff);
+					String vertexId = vertices.get(i).getId();
+
+					ElementDiff previous = lastMetIn.put(vertexId, diff);
+
+					if(i == 0 || i == l - 1 || previous == diff || (previous != null && !previous.getElementId().equals(diff.getElementId())))
+						this.junctions.add(vertexId);
 				}
 			}
+	}
+
+	/**
+	 * Give an edge of the simplified topology the points and the length, in
+	 * meters, of the chain of segments it stands for.
+	 * 
+	 * @param edgeId
+	 *            The ID of the edge.
+	 * @param chain
+	 *            The points of the chain.
+	 */
+	protected void sendEdgeGeometry(String edgeId, List<Vertex> chain) {
+
+		double[] geometry = new double[2 * chain.size()];
+
+		double length = 0;
+
+		for(int i = 0, l = chain.size(); i < l; ++i) {
+
+			Vertex vertex = chain.get(i);
+
+			geometry[2 * i] = vertex.getX();
+			geometry[2 * i + 1] = vertex.getY();
 
-			/*
-			 * TODO
-			 * 
-			 * Finish to take time into account.
-			 * 
-			 * This means watching for new roads, watching for deleted roads,
-			 * watching for roads which shape may have changed (may be a bit
-			 * tricky). The addition/change/removal of attributes is already
-			 * done (but that was the easiest part!).
-			 */
+			if(i > 0)
+				length += getDistance(geometry[2 * i - 2], geometry[2 * i - 1], vertex.getX(), vertex.getY());
 		}
 
+		sendEdgeAttributeAdded(this.id, edgeId, "geometry", geometry);
+		sendEdgeAttributeAdded(this.id, edgeId, "length", length);
 	}
 
 	/**
-	 * Add a node representing part of a road to the output graph.
+	 * Give the great-circle distance between two points, with the haversine
+	 * formula. The degrees of longitude shrink towards the poles, so the
+	 * planar distance between the coordinates would distort the lengths
+	 * depending on the direction of the roads.
+	 * 
+	 * @param lon1
+	 *            The longitude of the first point, in degrees.
+	 * @param lat1
+	 *            The latitude of the first point, in degrees.
+	 * @param lon2
+	 *            The longitude of the second point, in degrees.
+	 * @param lat2
+	 *            The latitude of the second point, in degrees.
+	 * @return The distance, in meters.
+	 */
+	public static double getDistance(double lon1, double lat1, double lon2, double lat2) {
+
+		double sinLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+		double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+
+		double h = sinLat * sinLat + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+
+		return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+	}
+
+	/**
+	 * Add a node representing part of a road to the output graph, or count one
+	 * more edge end at the node if it is already there.
 	 * 
 	 * @param point
 	 *            The point to transfer to the graph.
@@ -219,19 +563,83 @@ public class GeoSourceOSM_RoadNetwork extends GeoSourceOSM {
 		String nodeId = point.getId();
 
 		// Add the node if it has not already been done in the process of
-		// creating another road (as some points/crossroads are shared).
+		// creating another road (as some points/crossroads are shared). A node
+		// released during the step is still there.
 
-		if(!this.addedNodeIds.contains(nodeId)) {
+		boolean added = !this.emitted.containsNode(nodeId);
 
+		if(added)
 			sendNodeAdded(this.id, nodeId);
 
-			this.addedNodeIds.add(nodeId);
+		this.emitted.addNodeReference(nodeId);
+
+		// Place the new node at an appropriate position. The vertex already
+		// carries the position of the node, which does not need to be looked
+		// up again (and is not known anyway if the import was loaded from the
+		// cache). A node that is already there is moved if its point moved
+		// since it was placed.
+
+		if(!this.emitted.setNodePosition(nodeId, point.getX(), point.getY()))
+			return;
+
+		if(added) {
+
+			sendNodeAttributeAdded(this.id, nodeId, "x", point.getX());
+			sendNodeAttributeAdded(this.id, nodeId, "y", point.getY());
+		}
+		else {
+
+			sendNodeAttributeChanged(this.id, nodeId, "x", null, point.getX());
+			sendNodeAttributeChanged(this.id, nodeId, "y", null, point.getY());
+		}
+	}
+
+	/**
+	 * Count one less edge end at a node.
+	 * 
+	 * @param nodeId
+	 *            The ID of the node.
+	 */
+	protected void releaseNode(String nodeId) {
+
+		if(this.emitted.removeNodeReference(nodeId) == 0)
+			this.releasedNodeIds.add(nodeId);
+	}
+
+	/**
+	 * Remove the nodes that have been released during the step and that no
+	 * edge uses anymore. This is only done at the end of the step so that a
+	 * node passed from a road to another is not removed and added again.
+	 */
+	protected void removeReleasedNodes() {
+
+		for(String nodeId : this.releasedNodeIds)
+			if(this.emitted.getNodeReferenceCount(nodeId) == 0)
+				sendNodeRemoved(this.id, nodeId);
+
+		this.releasedNodeIds.clear();
+	}
+
+	/**
+	 * An edge of the output graph shaping part of a road.
+	 */
+	protected static class RoadEdge {
+
+		/**
+		 * The ID of the edge.
+		 */
+		protected String id;
+
+		/**
+		 * The points of the road followed by the edge, from its first node to
+		 * its second one.
+		 */
+		protected List<Vertex> chain;
 
-			// Place the new node at an appropriate position.
+		public RoadEdge(String id, List<Vertex> chain) {
 
-			Coordinate position = getNodePosition(nodeId);
-			sendNodeAttributeAdded(this.id, nodeId, "x", position.x);
-			sendNodeAttributeAdded(this.id, nodeId, "y", position.y);
+			this.id = id;
+			this.chain = chain;
 		}
 	}
 
@@ -46,6 +46,7 @@ import org.graphstream.geography.ElementDescriptor;
 import org.graphstream.geography.FileDescriptor;
 import org.graphstream.geography.GeoSource;
 import org.graphstream.geography.Vertex;
+import org.graphstream.geography.metrics.GeoSourceMetrics.Counter;
 import org.opengis.feature.Property;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -100,6 +101,8 @@ public class AggregatorSHP extends Aggregator {
 
 			SimpleFeature feature = this.iterator.next();
 
+			this.source.getMetrics().increment(Counter.FEATURES_SCANNED);
+
 			for(ElementDescriptor descriptor : fileDescriptor.getDescriptors()) {
 				
 				if(descriptor.matches(feature, this)) {
@@ -33,11 +33,13 @@ package org.graphstream.geography.shp;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.graphstream.geography.AttributeFilter;
 import org.graphstream.geography.Element;
 import org.graphstream.geography.ElementDescriptor;
+import org.graphstream.geography.ElementDiff;
 import org.graphstream.geography.ElementShape;
 import org.graphstream.geography.ElementView;
 import org.graphstream.geography.FileDescriptor;
@@ -76,11 +78,6 @@ public class GeoSourceNavteq extends GeoSourceSHP {
 	 */
 	protected AttributeFilter roadAttributeFilter;
 
-	/**
-	 * A record of nodes already added to the output graph.
-	 */
-	protected ArrayList<String> addedNodeIds;
-
 	/**
 	 * Instantiate a new Navteq source producing a road network.
 	 * 
@@ -116,6 +113,12 @@ public class GeoSourceNavteq extends GeoSourceSHP {
 
 		this.zDescriptor.sendElementsToSpatialIndex();
 
+		// Z-level points share the exact coordinates of the road vertices, so
+		// a tight offset keeps the other end of the same link out of the
+		// results.
+
+		this.index.setDistanceOffset(0.000001);
+
 		zFileDescriptor.addDescriptor(this.zDescriptor);
 
 		// Second: select and filter the road points.
@@ -179,7 +182,7 @@ public class GeoSourceNavteq extends GeoSourceSHP {
 	@Override
 	public void nextEvents() {
 
-		this.addedNodeIds = new ArrayList<String>();
+		this.emitted.clear();
 
 		ArrayList<ElementView> roads = getElementViewsAtStep(0);
 
@@ -211,6 +214,37 @@ public class GeoSourceNavteq extends GeoSourceSHP {
 		}
 	}
 
+	/**
+	 * The network is built from the roads of the first time step whatever the
+	 * step played, so moving from one step to another only changes the output
+	 * graph when it goes from no step to a step (the network is built) or back
+	 * (the network is removed).
+	 */
+	@Override
+	protected void diffEvents(List<ElementDiff> diffs) {
+
+		boolean built = this.emitted.getNodeCount() > 0 || this.emitted.getEdgeCount() > 0;
+
+		if(this.currentTimeStep >= 0 && !built)
+			nextEvents();
+		else if(this.currentTimeStep < 0 && built)
+			removeNetwork();
+	}
+
+	/**
+	 * Remove all the edges and nodes of the network from the output graph.
+	 */
+	protected void removeNetwork() {
+
+		for(Element element : this.elements.values())
+			if(element.isCategory("ROAD") && this.emitted.containsEdge(element.getId()))
+				sendEdgeRemoved(this.id, element.getId());
+
+		for(Element element : this.elements.values())
+			if(element.isCategory("Z") && this.emitted.containsNode(element.getId()))
+				sendNodeRemoved(this.id, element.getId());
+	}
+
 	/**
 	 * Add a node that represents an intersection to the output graph.
 	 * 
@@ -260,7 +294,7 @@ public class GeoSourceNavteq extends GeoSourceSHP {
 		ElementView alreadyHerePoint = null;
 
 		for(ElementView zPointView : zPointViews)
-			if(zPointView.getAttribute("Z_LEVEL").equals(zLevel) && this.addedNodeIds.contains(zPointView.getId())) {
+			if(zPointView.getAttribute("Z_LEVEL").equals(zLevel) && this.emitted.containsNode(zPointView.getId())) {
 				alreadyHerePoint = zPointView;
 				break;
 			}
@@ -273,8 +307,6 @@ public class GeoSourceNavteq extends GeoSourceSHP {
 
 			sendNodeAdded(this.id, alreadyHerePoint.getId());
 
-			this.addedNodeIds.add(alreadyHerePoint.getId());
-
 			// Place the new node at an appropriate position.
 
 			Coordinate pos = ((Point)alreadyHerePoint.getShape()).getPosition();
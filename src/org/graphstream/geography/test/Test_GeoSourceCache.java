@@ -0,0 +1,182 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementDescriptor;
+import org.graphstream.geography.FileDescriptor;
+import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.index.SpatialIndex;
+import org.graphstream.geography.index.SpatialIndexQuery;
+import org.graphstream.geography.index.SpatialIndexVisitor;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.MultiGraph;
+
+/**
+ * Check that an import loaded from the cache plays and queries the same way
+ * as the import it was stored from.
+ * 
+ * @author Merwan Achibet
+ */
+public class Test_GeoSourceCache {
+
+	public static void main(String args[]) throws IOException {
+
+		File directory = File.createTempFile("geography", "cache");
+
+		directory.delete();
+
+		test(SpatialIndex.Type.QUADTREE, directory);
+		test(SpatialIndex.Type.RTREE, directory);
+		test(SpatialIndex.Type.GRID, directory);
+
+		for(File file : directory.listFiles())
+			file.delete();
+
+		directory.delete();
+	}
+
+	protected static void test(SpatialIndex.Type type, File directory) {
+
+		// The first source reads its inputs and stores them, the second one
+		// loads them.
+
+		GeoSource stored = source(type, directory);
+		GeoSource loaded = source(type, directory);
+
+		Test_Seek.check(type + " : loaded from the cache", stored.getMetrics().getCacheLoadTime() == 0 && loaded.getMetrics().getCacheLoadTime() > 0);
+
+		// The same steps are played forward, then backward with the inverse
+		// diffs.
+
+		Graph storedGraph = new MultiGraph("stored", false, true);
+		Graph loadedGraph = new MultiGraph("loaded", false, true);
+
+		stored.addSink(storedGraph);
+		loaded.addSink(loadedGraph);
+
+		ArrayList<String> steps = new ArrayList<String>();
+
+		boolean same = true;
+		boolean more;
+
+		do {
+
+			more = stored.next();
+			loaded.next();
+
+			steps.add(Test_Seek.describe(storedGraph));
+
+			same &= Test_Seek.describe(loadedGraph).equals(steps.get(steps.size() - 1));
+
+		} while(more);
+
+		Test_Seek.check(type + " : same steps", same);
+
+		same = true;
+
+		for(int step = steps.size() - 2; step >= 0; --step) {
+
+			loaded.previous();
+
+			same &= Test_Seek.describe(loadedGraph).equals(steps.get(step));
+		}
+
+		Test_Seek.check(type + " : same steps backward", same);
+
+		// The spatial index gets back the same entries.
+
+		Test_Seek.check(type + " : same spatial index", describe(stored.getSpatialIndex(), steps.size()).equals(describe(loaded.getSpatialIndex(), steps.size())));
+		Test_Seek.check(type + " : same snapshot", describe(stored.getSpatialIndexSnapshot(), steps.size()).equals(describe(loaded.getSpatialIndexSnapshot(), steps.size())));
+	}
+
+	protected static GeoSource source(SpatialIndex.Type type, File directory) {
+
+		GeoSource src = Test_Seek.neighborhood();
+
+		for(FileDescriptor fileDescriptor : src.getFileDescriptors())
+			for(ElementDescriptor descriptor : fileDescriptor.getDescriptors())
+				descriptor.sendElementsToSpatialIndex(type);
+
+		src.setCacheDirectory(directory.getPath());
+
+		src.read();
+
+		return src;
+	}
+
+	/**
+	 * Give a description of the answers of an index to a range query and to
+	 * nearest neighbour queries at each step.
+	 */
+	protected static String describe(SpatialIndexQuery index, int stepCount) {
+
+		final TreeSet<String> lines = new TreeSet<String>();
+
+		Element[] elements = new Element[8];
+		double[] distances = new double[8];
+
+		for(int step = 0; step < stepCount; ++step) {
+
+			final int s = step;
+
+			index.visitElementsIn(-180, -90, 180, 90, step, new SpatialIndexVisitor() {
+
+				public boolean visit(Element element) {
+
+					lines.add(s + " in " + element.getId());
+
+					return true;
+				}
+			});
+
+			for(int i = 0; i < 10; ++i) {
+
+				double x = 0.07 + i * 0.002;
+				double y = 49.5 + i * 0.002;
+
+				int found = index.getNearestElements(x, y, step, elements.length, elements, distances);
+
+				for(int j = 0; j < found; ++j)
+					lines.add(s + " near " + i + " " + distances[j] + " " + elements[j].getId());
+			}
+		}
+
+		return lines.toString();
+	}
+
+}
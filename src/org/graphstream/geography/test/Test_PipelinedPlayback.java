@@ -0,0 +1,137 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.test;
+
+import java.util.ArrayList;
+
+import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.PipelinedPlayback;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.implementations.MultiGraph;
+
+/**
+ * Check that a pipelined playback gives the same graph as a direct playback
+ * at each time step, and that the source can be played directly again once
+ * the playback is closed.
+ * 
+ * @author Merwan Achibet
+ */
+public class Test_PipelinedPlayback {
+
+	public static void main(String args[]) {
+
+		ArrayList<String> steps = play(Test_Seek.neighborhood());
+
+		// Play all the steps through the pipeline.
+
+		GeoSource src = Test_Seek.neighborhood();
+
+		Graph graph = new MultiGraph("pipelined", false, true);
+
+		src.addSink(graph);
+
+		src.read();
+
+		PipelinedPlayback playback = new PipelinedPlayback(src, 2);
+
+		boolean same = true;
+		boolean more;
+
+		do {
+
+			more = playback.next();
+
+			same &= Test_Seek.describe(graph).equals(steps.get(playback.getCurrentStep()));
+
+		} while(more);
+
+		playback.close();
+
+		Test_Seek.check("pipelined playback", same);
+
+		// Close the pipeline after the first step, while the producer is
+		// ahead, and go on directly.
+
+		src = Test_Seek.neighborhood();
+
+		graph = new MultiGraph("closed", false, true);
+
+		src.addSink(graph);
+
+		src.read();
+
+		playback = new PipelinedPlayback(src, 2);
+
+		playback.next();
+		playback.close();
+
+		same = Test_Seek.describe(graph).equals(steps.get(0));
+
+		for(int step = 1; step < steps.size(); ++step) {
+
+			src.next();
+
+			same &= Test_Seek.describe(graph).equals(steps.get(step));
+		}
+
+		Test_Seek.check("direct playback after closing", same);
+	}
+
+	/**
+	 * Play all the steps of a source directly.
+	 * 
+	 * @return The description of the graph at each step.
+	 */
+	protected static ArrayList<String> play(GeoSource src) {
+
+		Graph graph = new MultiGraph("direct", false, true);
+
+		src.addSink(graph);
+
+		src.read();
+
+		ArrayList<String> steps = new ArrayList<String>();
+
+		boolean more;
+
+		do {
+
+			more = src.next();
+
+			steps.add(Test_Seek.describe(graph));
+
+		} while(more);
+
+		return steps;
+	}
+
+}
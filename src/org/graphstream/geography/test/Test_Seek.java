@@ -0,0 +1,170 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.test;
+
+import java.util.ArrayList;
+import java.util.TreeSet;
+
+import org.graphstream.geography.GeoSource;
+import org.graphstream.geography.osm.GeoSourceOSM_Neighborhood;
+import org.graphstream.geography.osm.GeoSourceOSM_RoadNetwork;
+import org.graphstream.graph.Edge;
+import org.graphstream.graph.Graph;
+import org.graphstream.graph.Node;
+import org.graphstream.graph.implementations.MultiGraph;
+
+/**
+ * Check that seeking to any time step and undoing the time steps give the
+ * same graph as playing the steps forward.
+ * 
+ * @author Merwan Achibet
+ */
+public class Test_Seek {
+
+	public static void main(String args[]) {
+
+		test("road network", roadNetwork());
+		test("neighborhood", neighborhood());
+	}
+
+	public static GeoSource roadNetwork() {
+
+		GeoSourceOSM_RoadNetwork src = new GeoSourceOSM_RoadNetwork("data/roads_t0.osm", "data/roads_t1.osm", "data/roads_t2.osm");
+
+		src.timeDependsOnFile();
+
+		src.getRoadAttributeFilter().addAttribute("highway");
+
+		return src;
+	}
+
+	public static GeoSource neighborhood() {
+
+		GeoSource src = new GeoSourceOSM_Neighborhood(0.0003, "data/neighborhood_t0.osm", "data/neighborhood_t1.osm", "data/neighborhood_t2.osm");
+
+		src.timeDependsOnFile();
+
+		return src;
+	}
+
+	protected static void test(String name, GeoSource src) {
+
+		Graph graph = new MultiGraph(name, false, true);
+
+		src.addSink(graph);
+
+		src.read();
+
+		// Play the steps forward to get the reference graphs.
+
+		ArrayList<String> steps = new ArrayList<String>();
+
+		boolean more;
+
+		do {
+
+			more = src.next();
+
+			steps.add(describe(graph));
+
+		} while(more);
+
+		// Seek to every step, from every step.
+
+		for(int from = 0; from < steps.size(); ++from)
+			for(int to = 0; to < steps.size(); ++to) {
+
+				src.seek(from);
+				src.seek(to);
+
+				check(name + " : seek from step " + from + " to step " + to, describe(graph).equals(steps.get(to)));
+			}
+
+		// Undo the steps one by one, down to the empty graph.
+
+		src.seek(steps.size() - 1);
+
+		for(int step = steps.size() - 2; step >= 0; --step) {
+
+			src.previous();
+
+			check(name + " : undo to step " + step, describe(graph).equals(steps.get(step)));
+		}
+
+		src.previous();
+
+		check(name + " : undo the first step", graph.getNodeCount() == 0 && graph.getEdgeCount() == 0);
+
+		// Play again after undoing.
+
+		src.next();
+
+		check(name + " : replay the first step", describe(graph).equals(steps.get(0)));
+	}
+
+	/**
+	 * Give a description of the nodes, the edges and their attributes that
+	 * does not depend on the order of the events.
+	 */
+	public static String describe(Graph graph) {
+
+		TreeSet<String> lines = new TreeSet<String>();
+
+		for(Node node : graph) {
+
+			TreeSet<String> attributes = new TreeSet<String>();
+
+			for(String key : node.getAttributeKeySet())
+				attributes.add(key + "=" + node.getAttribute(key));
+
+			lines.add("node " + node.getId() + " " + attributes);
+		}
+
+		for(Edge edge : graph.getEachEdge()) {
+
+			TreeSet<String> attributes = new TreeSet<String>();
+
+			for(String key : edge.getAttributeKeySet())
+				attributes.add(key + "=" + edge.getAttribute(key));
+
+			lines.add("edge " + edge.getId() + " " + edge.getNode0().getId() + " " + edge.getNode1().getId() + " " + attributes);
+		}
+
+		return lines.toString();
+	}
+
+	public static void check(String test, boolean result) {
+
+		System.out.println(test + (result ? " : ok" : " : FAILED"));
+	}
+
+}
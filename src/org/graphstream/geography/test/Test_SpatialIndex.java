@@ -33,8 +33,8 @@ package org.graphstream.geography.test;
 
 import java.util.Random;
 
+import org.graphstream.geography.Element;
 import org.graphstream.geography.index.SpatialIndex;
-import org.graphstream.geography.index.SpatialIndexPoint;
 
 /**
  * Basic test of the spatial index structure.
@@ -45,29 +45,27 @@ public class Test_SpatialIndex {
 
 	public static void main(String[] args) {
 
-		// Instantiate the spatial index.
+		test(SpatialIndex.create(SpatialIndex.Type.QUADTREE));
+		test(SpatialIndex.create(SpatialIndex.Type.RTREE));
+		test(SpatialIndex.create(SpatialIndex.Type.GRID));
+	}
 
-		SpatialIndex index = new SpatialIndex();
+	protected static void test(SpatialIndex index) {
 
 		// Add a lot of randomly placed points.
 
 		Random rnd = new Random(12345);
 
-		for(int i = 0; i < 1000; ++i) {
-			SpatialIndexPoint p = new SpatialIndexPoint(null, ""+rnd.nextDouble(), rnd.nextDouble() * 100, rnd.nextDouble() * 100);
-			index.addPoint(p);
-		}
+		for(int i = 0; i < 1000; ++i)
+			index.addPoint(new Element(""+rnd.nextDouble()), rnd.nextDouble() * 100, rnd.nextDouble() * 100);
 
 		// Add specific points.
 
-		SpatialIndexPoint a = new SpatialIndexPoint(null, "A", 0, 0);
-		index.addPoint(a);
+		index.addPoint(new Element("A"), 0, 0);
 
-		SpatialIndexPoint b = new SpatialIndexPoint(null, "B", 0.00001, 0.00001);
-		index.addPoint(b);
+		index.addPoint(new Element("B"), 0.00001, 0.00001);
 
-		SpatialIndexPoint c = new SpatialIndexPoint(null, "C", 1, 1);
-		index.addPoint(c);
+		index.addPoint(new Element("C"), 1, 1);
 
 		System.out.println(index.size());
 
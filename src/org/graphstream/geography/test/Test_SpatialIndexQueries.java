@@ -0,0 +1,213 @@
+/*
+ * Copyright 2006 - 2012 
+ *     Julien Baudry	<julien.baudry@graphstream-project.org>
+ *     Antoine Dutot	<antoine.dutot@graphstream-project.org>
+ *     Yoann Pigné		<yoann.pigne@graphstream-project.org>
+ *     Guilhelm Savin	<guilhelm.savin@graphstream-project.org>
+ * 
+ * This file is part of GraphStream <http://graphstream-project.org>.
+ * 
+ * GraphStream is a library whose purpose is to handle static or dynamic
+ * graph, create them from scratch, file or any source and display them.
+ * 
+ * This program is free software distributed under the terms of two licenses, the
+ * CeCILL-C license that fits European law, and the GNU Lesser General Public
+ * License. You can  use, modify and/ or redistribute the software under the terms
+ * of the CeCILL-C license as circulated by CEA, CNRS and INRIA at the following
+ * URL <http://www.cecill.info> or under the terms of the GNU LGPL as published by
+ * the Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * The fact that you are presently reading this means that you have had
+ * knowledge of the CeCILL-C and LGPL licenses and that you accept their terms.
+ */
+
+package org.graphstream.geography.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.graphstream.geography.Element;
+import org.graphstream.geography.ElementShape;
+import org.graphstream.geography.Point;
+import org.graphstream.geography.index.SpatialIndex;
+import org.graphstream.geography.index.SpatialIndexQuery;
+import org.graphstream.geography.index.SpatialIndexVisitor;
+
+/**
+ * Check the range, radius and nearest neighbour queries of the spatial indexes
+ * and of their snapshots against a linear scan of the points, at every time
+ * step.
+ * 
+ * @author Merwan Achibet
+ */
+public class Test_SpatialIndexQueries {
+
+	protected static final int STEPS = 6;
+
+	public static void main(String[] args) {
+
+		test(SpatialIndex.create(SpatialIndex.Type.QUADTREE));
+		test(SpatialIndex.create(SpatialIndex.Type.RTREE));
+		test(SpatialIndex.create(SpatialIndex.Type.GRID));
+	}
+
+	protected static void test(SpatialIndex index) {
+
+		Random rnd = new Random(12345);
+
+		// Bulk load most of the points, each one valid during a random
+		// interval of steps, then add the others one by one.
+
+		ArrayList<ElementShape> points = new ArrayList<ElementShape>();
+
+		int[] births = new int[3000];
+		int[] deaths = new int[3000];
+
+		for(int i = 0; i < births.length; ++i) {
+
+			Point point = new Point(new Element("p" + i));
+
+			point.setPosition(rnd.nextDouble() * 100, rnd.nextDouble() * 100);
+
+			points.add(point);
+
+			births[i] = rnd.nextInt(STEPS);
+			deaths[i] = rnd.nextBoolean() ? Integer.MAX_VALUE : births[i] + 1 + rnd.nextInt(STEPS);
+		}
+
+		index.bulkLoad(points.subList(0, 2500), births, deaths);
+
+		for(int i = 2500; i < points.size(); ++i)
+			index.add(points.get(i), births[i], deaths[i]);
+
+		String name = index.getClass().getSimpleName();
+
+		test(name, index, points, births, deaths, rnd);
+		test(name + " snapshot", index.snapshot(), points, births, deaths, rnd);
+	}
+
+	protected static void test(String name, SpatialIndexQuery index, ArrayList<ElementShape> points, int[] births, int[] deaths, Random rnd) {
+
+		boolean range = true;
+		boolean radius = true;
+		boolean nearest = true;
+
+		Element[] elements = new Element[10];
+		double[] distances = new double[10];
+
+		for(int step = -1; step < STEPS; ++step) {
+
+			int s = step == -1 ? SpatialIndex.ALL_STEPS : step;
+
+			for(int i = 0; i < 50; ++i) {
+
+				double x = rnd.nextDouble() * 100;
+				double y = rnd.nextDouble() * 100;
+				double r = rnd.nextDouble() * 20;
+
+				// Range query.
+
+				TreeSet<String> expected = new TreeSet<String>();
+
+				for(int p = 0; p < points.size(); ++p)
+					if(isAlive(births[p], deaths[p], s) && Math.abs(x(points, p) - x) <= r && Math.abs(y(points, p) - y) <= r)
+						expected.add(points.get(p).getElement().getId());
+
+				range &= expected.equals(visitIn(index, x - r, y - r, x + r, y + r, s));
+
+				// Radius query.
+
+				expected.clear();
+
+				for(int p = 0; p < points.size(); ++p)
+					if(isAlive(births[p], deaths[p], s) && Math.hypot(x(points, p) - x, y(points, p) - y) <= r)
+						expected.add(points.get(p).getElement().getId());
+
+				radius &= expected.equals(visitWithin(index, x, y, r, s));
+
+				// Nearest neighbour query, compared on the distances since
+				// several points can be at the same distance.
+
+				double[] all = new double[points.size()];
+				int alive = 0;
+
+				for(int p = 0; p < points.size(); ++p)
+					if(isAlive(births[p], deaths[p], s))
+						all[alive++] = Math.hypot(x(points, p) - x, y(points, p) - y);
+
+				Arrays.sort(all, 0, alive);
+
+				int found = index.getNearestElements(x, y, s, elements.length, elements, distances);
+
+				nearest &= found == Math.min(alive, elements.length);
+
+				for(int j = 0; j < found; ++j)
+					nearest &= Math.abs(distances[j] - all[j]) < 1e-9;
+			}
+		}
+
+		Test_Seek.check(name + " : range queries", range);
+		Test_Seek.check(name + " : radius queries", radius);
+		Test_Seek.check(name + " : nearest neighbour queries", nearest);
+	}
+
+	protected static TreeSet<String> visitIn(SpatialIndexQuery index, double minX, double minY, double maxX, double maxY, int step) {
+
+		final TreeSet<String> ids = new TreeSet<String>();
+
+		index.visitElementsIn(minX, minY, maxX, maxY, step, new SpatialIndexVisitor() {
+
+			public boolean visit(Element element) {
+
+				ids.add(element.getId());
+
+				return true;
+			}
+		});
+
+		return ids;
+	}
+
+	protected static TreeSet<String> visitWithin(SpatialIndexQuery index, double x, double y, double radius, int step) {
+
+		final TreeSet<String> ids = new TreeSet<String>();
+
+		index.visitElementsWithin(x, y, radius, step, new SpatialIndexVisitor() {
+
+			public boolean visit(Element element) {
+
+				ids.add(element.getId());
+
+				return true;
+			}
+		});
+
+		return ids;
+	}
+
+	protected static double x(ArrayList<ElementShape> points, int p) {
+
+		return points.get(p).getPointX(0);
+	}
+
+	protected static double y(ArrayList<ElementShape> points, int p) {
+
+		return points.get(p).getPointY(0);
+	}
+
+	protected static boolean isAlive(int birth, int death, int step) {
+
+		return step == SpatialIndex.ALL_STEPS || (birth <= step && step < death);
+	}
+
+}